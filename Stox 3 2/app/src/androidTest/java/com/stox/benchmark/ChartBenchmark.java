@@ -0,0 +1,98 @@
+package com.stox.benchmark;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.stox.data.Downsampler;
+import com.stox.data.TickSeries;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * On-device timings of building the chart model, the part of the chart path that needs the Android
+ * charting library and so can't run in the JMH module. Results are logged under the BENCHMARK tag.
+ *
+ * Run against a release-like build: a debuggable app runs noticeably slower on ART.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChartBenchmark {
+
+    private static final int[] SIZES = {1000, 10000, 50000};
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 15;
+    // the screen budget MainActivity downsamples to on a 1080 pixel wide display
+    private static final int POINTS = 540;
+
+    @Test
+    public void buildEveryEntry() {
+        for (final int size : SIZES) {
+            final TickSeries series = series(size);
+            measure("buildEveryEntry/" + size, () -> {
+                final List<Entry> entries = new ArrayList<>(series.size());
+                final long origin = series.getTime(0);
+                for (int i = 0; i < series.size(); i++) {
+                    entries.add(new Entry(series.getTime(i) - origin, (float) series.getClose(i)));
+                }
+                new LineData(new LineDataSet(entries, "Stock price"));
+            });
+        }
+    }
+
+    @Test
+    public void buildDownsampledEntries() {
+        for (final int size : SIZES) {
+            final TickSeries series = series(size);
+            final int[] indices = new int[POINTS];
+            measure("buildDownsampledEntries/" + size, () -> {
+                final int count = Downsampler.largestTriangleThreeBuckets(series, 0, series.size(), POINTS, indices, 0);
+                final List<Entry> entries = new ArrayList<>(count);
+                final long origin = series.getTime(0);
+                for (int i = 0; i < count; i++) {
+                    entries.add(new Entry(series.getTime(indices[i]) - origin, (float) series.getClose(indices[i])));
+                }
+                new LineData(new LineDataSet(entries, "Stock price"));
+            });
+        }
+    }
+
+    /**
+     * Runs the block a few times to warm up, then logs the median and minimum of the measured runs.
+     */
+    private static void measure(final String name, final Runnable block) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            block.run();
+        }
+        final long[] nanos = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            final long start = System.nanoTime();
+            block.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        Log.i("BENCHMARK", name + " median=" + nanos[MEASURED_RUNS / 2] / 1000 + "us min=" + nanos[0] / 1000 + "us");
+    }
+
+    /**
+     * A random walk of one minute bars, like the JMH module's fixtures.
+     */
+    private static TickSeries series(final int bars) {
+        final Random random = new Random(bars);
+        final TickSeries.Builder builder = new TickSeries.Builder(bars);
+        double close = 120;
+        for (int i = 0; i < bars; i++) {
+            final double open = close;
+            close = Math.max(1, open + random.nextGaussian() * 0.05);
+            builder.add(1557480600L + i * 60L, open, Math.max(open, close), Math.min(open, close), close, 1000);
+        }
+        return builder.build();
+    }
+}
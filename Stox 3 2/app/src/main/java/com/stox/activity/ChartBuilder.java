@@ -0,0 +1,536 @@
+package com.stox.activity;
+
+import android.os.Process;
+
+import com.github.mikephil.charting.components.YAxis;
+import com.github.mikephil.charting.utils.ColorTemplate;
+import com.stox.data.ComparisonSeries;
+import com.stox.data.Downsampler;
+import com.stox.data.Indicator;
+import com.stox.data.IndicatorPipeline;
+import com.stox.data.Metrics;
+import com.stox.data.RollingStatistics;
+import com.stox.data.SeriesStatistics;
+import com.stox.data.TickSeries;
+import com.stox.data.Timeframe;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Builds the main chart off the UI thread.
+ *
+ * The chart's series, statistics, indicators and comparisons live on a thread of their own and are
+ * updated incrementally as bars arrive, in primitive ChartLines. Every change is queued as a command;
+ * once a burst of commands has run, the lines are copied into a ChartModel that is handed to the UI
+ * thread, which only has to swap it in and redraw. Each model comes back through recycle() once it
+ * is off the screen, so the chart is double buffered: one model is drawn while the other is filled.
+ * As long as bars are only appended and every bar fits on the chart, e.g. in live mode, a model only
+ * carries the points added since the last one, and the UI thread appends them to the chart.
+ *
+ * Comparisons and indicators are drawn at the bars the main line was downsampled to.
+ */
+final class ChartBuilder {
+
+    // roughly how many pixels of chart width each point of the main line gets
+    private static final int PIXELS_PER_CHART_POINT = 2;
+    private static final int MIN_CHART_POINTS = 100;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        // below the UI thread, but ahead of the fetches
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE);
+        runnable.run();
+    }, "ChartBuilder"));
+    private final Executor mainThreadExecutor;
+    private final Consumer<ChartModel> listener;
+    // commands queued but not yet run, a model is built when the last of a burst has run
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+    // the model that came off the screen last, filled by the next build
+    private final AtomicReference<ChartModel> spare = new AtomicReference<>();
+    private final int budget;
+
+    // everything below is only touched on the builder's thread
+
+    // the symbol on the chart, its timeframe and the full resolution series behind the main line
+    private String symbol;
+    private Timeframe interval;
+    private TickSeries series;
+    // timestamp (in TickSeries encoding) that the x values are relative to
+    private long origin;
+    // index of the series' first bar on the chart and the timestamp of its newest
+    private int firstIndex;
+    private long lastTime;
+
+    // the main line is a downsampled selection of the series' bars, taken for the viewport
+    private final ChartLine mainLine = new ChartLine(null, ColorTemplate.getHoloBlue(), 2f, true, YAxis.AxisDependency.LEFT);
+    private int[] sampledIndices = new int[0];
+    private boolean fullyZoomedOut = true;
+    private float lowestVisibleX;
+    private float highestVisibleX;
+
+    // whether the lines changed in other ways than new points since the last model, which has to be
+    // filled afresh then; otherwise each line's size in the last model and whether it had every bar
+    private boolean layoutChanged = true;
+    private int[] publishedSizes = new int[0];
+    private boolean publishedEveryBar;
+
+    // day and week statistics of the symbol most recently fed to them
+    private final SeriesStatistics seriesStatistics = new SeriesStatistics();
+    private String statisticsSymbol;
+
+    // compare mode plots every comparison as its percent change, next to the chart's symbol
+    private boolean compareMode;
+    // the close the chart's symbol's percent changes are relative to in compare mode
+    private double referenceClose;
+    private final Map<String, ComparisonSeries> comparisons = new LinkedHashMap<>();
+    private final Map<String, ChartLine> comparisonLines = new LinkedHashMap<>();
+    private int nextComparisonColor;
+
+    // technical indicators drawn over the chart, each bar is fed to them once as it arrives
+    private final IndicatorPipeline indicatorPipeline = new IndicatorPipeline();
+    // the indicator shown for each key, and the line of each of its values
+    private final Map<Integer, Indicator> shownIndicators = new LinkedHashMap<>();
+    private final Map<Indicator, ChartLine[]> indicatorLines = new LinkedHashMap<>();
+    private int nextIndicatorColor;
+
+    /**
+     * @param widthPixels the chart's width, which decides how many points the main line gets
+     * @param mainThreadExecutor runs the listener on the UI thread
+     * @param listener receives every model that has been built, and should swap it in
+     */
+    ChartBuilder(final int widthPixels, final Executor mainThreadExecutor, final Consumer<ChartModel> listener) {
+        this.budget = Math.max(MIN_CHART_POINTS, widthPixels / PIXELS_PER_CHART_POINT);
+        this.mainThreadExecutor = mainThreadExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * Hands back a model that is no longer on the screen, to be filled by the next build.
+     */
+    void recycle(final ChartModel model) {
+        spare.set(model);
+    }
+
+    /**
+     * Stops building. Commands that are still queued are dropped.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Feed the day and week statistics with a symbol's one minute bars. Only the bars that arrived
+     * since the last update are visited, unless the symbol changed.
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
+     * @param oneMinute the symbol's one minute bars
+     */
+    void updateStatistics(final String stockSymbol, final TickSeries oneMinute) {
+        submit(() -> {
+            final Metrics.Timer timer = Metrics.getInstance().start("chart.statistics");
+            if (!stockSymbol.equals(statisticsSymbol)) {
+                seriesStatistics.clear();
+                statisticsSymbol = stockSymbol;
+            }
+            seriesStatistics.update(oneMinute);
+            timer.stop();
+        });
+    }
+
+    /**
+     * Draw a symbol's bars at a timeframe: the most recent day of one minute bars, or every bar of a
+     * coarser timeframe. Newer bars of the symbol already on the chart are appended to it.
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
+     * @param barInterval the timeframe of the bars
+     * @param tickSeries the symbol's bars, must not be empty
+     */
+    void setSeries(final String stockSymbol, final Timeframe barInterval, final TickSeries tickSeries) {
+        submit(() -> {
+            final long newestTime = tickSeries.getLastTime();
+            // timestamps are in exchange time, so the most recent day starts at a whole multiple of a day
+            final long windowStart = barInterval == Timeframe.ONE_MIN
+                    ? Math.floorDiv(newestTime, TickSeries.SECONDS_PER_DAY) * TickSeries.SECONDS_PER_DAY
+                    : Math.floorDiv(tickSeries.getTime(0), TickSeries.SECONDS_PER_DAY) * TickSeries.SECONDS_PER_DAY;
+            if (stockSymbol.equals(symbol) && barInterval == interval && windowStart == origin
+                    && newestTime >= lastTime) {
+                append(tickSeries);
+            } else {
+                symbol = stockSymbol;
+                interval = barInterval;
+                // a new x axis, whatever was zoomed into doesn't apply to it
+                fullyZoomedOut = true;
+                restart(tickSeries, windowStart);
+            }
+            lastTime = newestTime;
+        });
+    }
+
+    /**
+     * Resample the main line for what the chart shows now, after it was zoomed or panned.
+     * @param zoomedOut whether the whole series is visible
+     * @param lowestX the lowest visible x value
+     * @param highestX the highest visible x value
+     */
+    void setViewport(final boolean zoomedOut, final float lowestX, final float highestX) {
+        submit(() -> {
+            layoutChanged = true;
+            fullyZoomedOut = zoomedOut;
+            lowestVisibleX = lowestX;
+            highestVisibleX = highestX;
+        });
+    }
+
+    /**
+     * Switch compare mode on or off, drawing the chart's symbol as percent change or close.
+     * Comparisons are dropped either way.
+     */
+    void setCompareMode(final boolean enabled) {
+        submit(() -> {
+            compareMode = enabled;
+            comparisons.clear();
+            comparisonLines.clear();
+            nextComparisonColor = 0;
+            // overlays are in the same unit as the chart's symbol
+            refillIndicatorLines();
+        });
+    }
+
+    /**
+     * Add a symbol to the comparison: a single merge-join over the chart's grid and one more line.
+     * Ignored outside compare mode and for symbols that are already compared.
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
+     * @param tickSeries the symbol's bars at the chart's timeframe
+     */
+    void addComparison(final String stockSymbol, final TickSeries tickSeries) {
+        submit(() -> {
+            if (!compareMode || comparisons.containsKey(stockSymbol)) {
+                return;
+            }
+            final ComparisonSeries comparison = new ComparisonSeries(tickSeries);
+            final ChartLine line = new ChartLine(stockSymbol,
+                    ColorTemplate.COLORFUL_COLORS[nextComparisonColor++ % ColorTemplate.COLORFUL_COLORS.length],
+                    1f, false, YAxis.AxisDependency.LEFT);
+            comparisons.put(stockSymbol, comparison);
+            comparisonLines.put(stockSymbol, line);
+            layoutChanged = true;
+            if (series != null) {
+                joinComparison(comparison, line, firstIndex);
+            }
+        });
+    }
+
+    /**
+     * Take every comparison off the chart.
+     */
+    void clearComparisons() {
+        submit(() -> {
+            comparisons.clear();
+            comparisonLines.clear();
+            nextComparisonColor = 0;
+            layoutChanged = true;
+        });
+    }
+
+    /**
+     * Show an indicator on the chart, unless one is already shown for the key.
+     * @param key identifies the indicator, e.g. its menu item
+     * @param indicatorFactory creates the indicator, on the builder's thread
+     */
+    void showIndicator(final int key, final Supplier<Indicator> indicatorFactory) {
+        submit(() -> {
+            if (shownIndicators.containsKey(key)) {
+                return;
+            }
+            final Indicator indicator = indicatorFactory.get();
+            final ChartLine[] lines = new ChartLine[indicator.getLineCount()];
+            for (int line = 0; line < lines.length; line++) {
+                lines[line] = new ChartLine(indicator.getLineName(line),
+                        ColorTemplate.JOYFUL_COLORS[nextIndicatorColor++ % ColorTemplate.JOYFUL_COLORS.length],
+                        1f, false, indicator.isOverlay() ? YAxis.AxisDependency.LEFT : YAxis.AxisDependency.RIGHT);
+            }
+            shownIndicators.put(key, indicator);
+            indicatorLines.put(indicator, lines);
+            // adding an indicator starts the pipeline over, all indicators are refilled
+            indicatorPipeline.add(indicator);
+            refillIndicatorLines();
+        });
+    }
+
+    /**
+     * Take the indicator shown for a key off the chart.
+     * @param key identifies the indicator, e.g. its menu item
+     */
+    void hideIndicator(final int key) {
+        submit(() -> {
+            final Indicator indicator = shownIndicators.remove(key);
+            if (indicator != null) {
+                indicatorPipeline.remove(indicator);
+                indicatorLines.remove(indicator);
+                layoutChanged = true;
+            }
+        });
+    }
+
+    private void submit(final Runnable command) {
+        pendingCommands.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                command.run();
+            } finally {
+                // a model per burst of commands rather than per command, e.g. statistics and bars
+                if (pendingCommands.decrementAndGet() == 0) {
+                    publish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Fill a model with the current lines and hand it to the UI thread.
+     */
+    private void publish() {
+        final Metrics.Timer timer = Metrics.getInstance().start("chart.model");
+        ChartModel model = spare.getAndSet(null);
+        if (model == null) {
+            // the UI thread hasn't swapped in the last model yet, or this is the first one
+            model = new ChartModel();
+        }
+
+        final List<ChartLine> lines = new ArrayList<>();
+        boolean everyBar = false;
+        if (series != null) {
+            everyBar = sampleMainLine();
+            mainLine.setLabel(symbol);
+            lines.add(mainLine);
+            // the other lines keep every bar, they are drawn at the bars the main line was sampled at
+            for (final ChartLine line : comparisonLines.values()) {
+                lines.add(line.sampledAt(mainLine));
+            }
+            boolean anyOscillator = false;
+            for (final ChartLine[] indicatorLine : indicatorLines.values()) {
+                for (final ChartLine line : indicatorLine) {
+                    lines.add(line.sampledAt(mainLine));
+                    anyOscillator |= line.getAxisDependency() == YAxis.AxisDependency.RIGHT;
+                }
+            }
+            model.setOrigin(origin);
+            model.setShowRightAxis(anyOscillator);
+            model.setShowLegend(compareMode || !indicatorPipeline.isEmpty());
+            final long dayStart = Math.floorDiv(lastTime, TickSeries.SECONDS_PER_DAY) * TickSeries.SECONDS_PER_DAY;
+            model.setDescription(symbol + (interval == Timeframe.ONE_MIN ? " on " : " until ")
+                    + formatExchangeTime("dd MMM yyyy", dayStart));
+        }
+        if (onlyAppended(lines, everyBar)) {
+            final int[] from = new int[lines.size()];
+            for (int i = 0; i < from.length; i++) {
+                from[i] = Math.max(0, publishedSizes[i] - 1);
+            }
+            model.fillAppended(lines, from);
+        } else {
+            model.fill(lines);
+        }
+        layoutChanged = lines.isEmpty();
+        publishedEveryBar = everyBar;
+        publishedSizes = new int[lines.size()];
+        for (int i = 0; i < publishedSizes.length; i++) {
+            publishedSizes[i] = lines.get(i).size();
+        }
+
+        if (statisticsSymbol != null) {
+            final RollingStatistics day = seriesStatistics.getDay();
+            final RollingStatistics week = seriesStatistics.getWeek();
+            model.setStatistics((float) day.getMin(), (float) day.getMax(), (float) week.getMin(), (float) week.getMax());
+        }
+        timer.stop();
+
+        final ChartModel built = model;
+        mainThreadExecutor.execute(() -> listener.accept(built));
+    }
+
+    /**
+     * Whether the lines are the ones of the last model with only points added to them, apart from
+     * a revised last point. That takes the same lines and no resampling: with every bar on the
+     * chart, the main line and the lines sampled at it only grow as bars are appended.
+     * @param lines the lines to draw
+     * @param everyBar whether the main line has every bar of the chart's window
+     */
+    private boolean onlyAppended(final List<ChartLine> lines, final boolean everyBar) {
+        if (layoutChanged || !everyBar || !publishedEveryBar || lines.size() != publishedSizes.length) {
+            return false;
+        }
+        for (int i = 0; i < publishedSizes.length; i++) {
+            if (lines.get(i).size() < publishedSizes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start the chart over with a series, from the start of the chart's window on.
+     * @param tickSeries the symbol's bars
+     * @param windowStart the start of the first day on the chart in TickSeries encoding
+     */
+    private void restart(final TickSeries tickSeries, final long windowStart) {
+        // x values are relative to the start of the window, since a float can't hold epoch seconds to the minute
+        layoutChanged = true;
+        origin = windowStart;
+        series = tickSeries;
+        firstIndex = tickSeries.indexAtOrAfter(windowStart);
+        referenceClose = tickSeries.getClose(firstIndex);
+        // a new grid, every comparison has to be joined onto it again
+        for (final Map.Entry<String, ComparisonSeries> comparison : comparisons.entrySet()) {
+            joinComparison(comparison.getValue(), comparisonLines.get(comparison.getKey()), firstIndex);
+        }
+        refillIndicatorLines();
+    }
+
+    /**
+     * Carry the chart on with newer bars of the same symbol and window.
+     * @param tickSeries the symbol's bars
+     */
+    private void append(final TickSeries tickSeries) {
+        series = tickSeries;
+        firstIndex = tickSeries.indexAtOrAfter(origin);
+        // the grid only grew, the comparisons carry on joining where they left off
+        int from = tickSeries.indexAtOrAfter(lastTime);
+        if (from < tickSeries.size() && tickSeries.getTime(from) == lastTime) {
+            from++;
+        }
+        for (final Map.Entry<String, ComparisonSeries> comparison : comparisons.entrySet()) {
+            joinComparison(comparison.getValue(), comparisonLines.get(comparison.getKey()), from);
+        }
+        appendIndicatorLines();
+    }
+
+    /**
+     * Fill the main line with a downsampled selection of the series' bars. The visible range gets
+     * about one point per couple of pixels, the rest of the series just enough points to keep its
+     * shape while it is panned into view.
+     * @return true if every bar made it onto the line
+     */
+    private boolean sampleMainLine() {
+        final TickSeries tickSeries = series;
+        final int from = firstIndex;
+        final int to = tickSeries.size();
+        if (sampledIndices.length < 2 * budget) {
+            sampledIndices = new int[2 * budget];
+        }
+
+        int count;
+        if (fullyZoomedOut) {
+            count = Downsampler.largestTriangleThreeBuckets(tickSeries, from, to, budget, sampledIndices, 0);
+        } else {
+            // one bar beyond each edge of the viewport, so that the line runs off the screen
+            final int visibleFrom = Math.max(from,
+                    tickSeries.indexAtOrAfter(origin + (long) Math.floor(lowestVisibleX)) - 1);
+            final int visibleTo = Math.min(to,
+                    tickSeries.indexAtOrAfter(origin + (long) Math.ceil(highestVisibleX)) + 1);
+            count = Downsampler.largestTriangleThreeBuckets(tickSeries, from, visibleFrom, budget / 4, sampledIndices, 0);
+            count = Downsampler.largestTriangleThreeBuckets(tickSeries, visibleFrom, visibleTo, budget, sampledIndices, count);
+            count = Downsampler.largestTriangleThreeBuckets(tickSeries, visibleTo, to, budget / 4, sampledIndices, count);
+        }
+
+        mainLine.clear();
+        for (int slot = 0; slot < count; slot++) {
+            final int i = sampledIndices[slot];
+            mainLine.add(tickSeries.getTime(i) - origin, chartValue(tickSeries.getClose(i)));
+        }
+        return count == to - from;
+    }
+
+    /**
+     * @return the chart's y value for a price: the price itself, or in compare mode its percent change
+     */
+    private float chartValue(final double price) {
+        return (float) (compareMode ? (price / referenceClose - 1) * 100 : price);
+    }
+
+    /**
+     * Join a comparison onto the chart's grid, from the given bar of the series on. Starting at the
+     * chart's first bar starts the comparison over, anything later continues it.
+     */
+    private void joinComparison(final ComparisonSeries comparison, final ChartLine line, final int from) {
+        if (from == firstIndex) {
+            comparison.reset();
+            line.clear();
+        }
+        final TickSeries grid = series;
+        for (int i = from; i < grid.size(); i++) {
+            final long time = grid.getTime(i);
+            final double percentChange = comparison.percentChangeAt(time);
+            if (!Double.isNaN(percentChange)) {
+                line.add(time - origin, (float) percentChange);
+            }
+        }
+    }
+
+    /**
+     * Feed the whole series to the indicators again and refill their lines. The bars before the
+     * chart's window are fed too, so the indicators are warmed up where the chart starts.
+     */
+    private void refillIndicatorLines() {
+        layoutChanged = true;
+        indicatorPipeline.clear();
+        for (final ChartLine[] lines : indicatorLines.values()) {
+            for (final ChartLine line : lines) {
+                line.clear();
+            }
+        }
+        appendIndicatorLines();
+    }
+
+    /**
+     * Feed the series' bars that the indicators haven't seen yet, plus the newest one they have in
+     * case it was revised, and add their values to the indicator lines. Only the new bars are
+     * visited, however long the series is.
+     */
+    private void appendIndicatorLines() {
+        if (indicatorPipeline.isEmpty() || series == null) {
+            return;
+        }
+        final TickSeries tickSeries = series;
+        for (int i = tickSeries.indexAtOrAfter(indicatorPipeline.getLastTime()); i < tickSeries.size(); i++) {
+            final long time = tickSeries.getTime(i);
+            indicatorPipeline.update(time, tickSeries.getClose(i));
+            if (i < firstIndex) {
+                continue;
+            }
+            final float x = time - origin;
+            for (final Map.Entry<Indicator, ChartLine[]> shown : indicatorLines.entrySet()) {
+                final Indicator indicator = shown.getKey();
+                final ChartLine[] lines = shown.getValue();
+                for (int line = 0; line < lines.length; line++) {
+                    final double value = indicator.getValue(line);
+                    if (!Double.isNaN(value)) {
+                        lines[line].add(x, indicator.isOverlay() ? chartValue(value) : (float) value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Formats a TickSeries timestamp as the exchange's wall clock time.
+     * @param pattern a SimpleDateFormat pattern
+     * @param time timestamp in TickSeries encoding
+     * @return the formatted time
+     */
+    private static String formatExchangeTime(final String pattern, final long time) {
+        final SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time * 1000));
+    }
+}
@@ -0,0 +1,117 @@
+package com.stox.activity;
+
+import com.github.mikephil.charting.components.YAxis;
+
+import java.util.Arrays;
+
+/**
+ * The points of one line on the main chart as primitive floats, together with how the line is
+ * drawn. ChartBuilder keeps lines up to date off the UI thread without allocating per point, a
+ * ChartModel turns them into the chart's entries.
+ */
+final class ChartLine {
+
+    private String label;
+    private final int color;
+    private final float lineWidth;
+    private final boolean drawCircles;
+    private final YAxis.AxisDependency axisDependency;
+
+    private float[] xs = new float[64];
+    private float[] ys = new float[64];
+    private int size;
+    // this line thinned out to the main line's points, reused by every sampledAt
+    private ChartLine sampled;
+
+    ChartLine(final String label, final int color, final float lineWidth, final boolean drawCircles,
+              final YAxis.AxisDependency axisDependency) {
+        this.label = label;
+        this.color = color;
+        this.lineWidth = lineWidth;
+        this.drawCircles = drawCircles;
+        this.axisDependency = axisDependency;
+    }
+
+    /**
+     * Adds a point after the last one, or revises the last one if it has the same x value.
+     */
+    void add(final float x, final float y) {
+        if (size > 0 && xs[size - 1] == x) {
+            ys[size - 1] = y;
+            return;
+        }
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * Picks this line's points at the x values of another line's points, e.g. a full resolution
+     * indicator line at the bars the main line was downsampled to. X values this line has no
+     * point at are skipped.
+     * @param grid a line whose x values ascend like this line's
+     * @return the picked points, in a line that is reused by the next call
+     */
+    ChartLine sampledAt(final ChartLine grid) {
+        if (sampled == null) {
+            sampled = new ChartLine(label, color, lineWidth, drawCircles, axisDependency);
+        }
+        sampled.label = label;
+        sampled.clear();
+        int from = 0;
+        for (int point = 0; point < grid.size && from < size; point++) {
+            final int index = Arrays.binarySearch(xs, from, size, grid.xs[point]);
+            if (index >= 0) {
+                sampled.add(xs[index], ys[index]);
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+        return sampled;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    float getX(final int index) {
+        return xs[index];
+    }
+
+    float getY(final int index) {
+        return ys[index];
+    }
+
+    String getLabel() {
+        return label;
+    }
+
+    void setLabel(final String label) {
+        this.label = label;
+    }
+
+    int getColor() {
+        return color;
+    }
+
+    float getLineWidth() {
+        return lineWidth;
+    }
+
+    boolean isDrawCircles() {
+        return drawCircles;
+    }
+
+    YAxis.AxisDependency getAxisDependency() {
+        return axisDependency;
+    }
+}
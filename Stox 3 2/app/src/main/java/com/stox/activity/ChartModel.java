@@ -0,0 +1,242 @@
+package com.stox.activity;
+
+import android.graphics.Color;
+
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
+import com.github.mikephil.charting.utils.ColorTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One buffer of the main chart's double buffer: the LineData the chart draws and what is shown
+ * around it. ChartBuilder fills a model off the UI thread and the UI thread swaps it in whole. The
+ * model that was on screen before is handed back to be filled next, so rebuilding the chart
+ * reuses its Entry objects instead of allocating one per point.
+ *
+ * While bars are only being appended to the chart, e.g. in live mode, a model carries just the new
+ * points instead, and the UI thread appends them to the model on the screen.
+ */
+final class ChartModel {
+
+    private final List<LineDataSet> dataSets = new ArrayList<>();
+    private LineData lineData;
+
+    // timestamp (in TickSeries encoding) that the x values are relative to
+    private long origin;
+    private String description;
+    private boolean showLegend;
+    private boolean showRightAxis;
+
+    // set for a model that only carries the points appended since the last model, see fillAppended
+    private boolean append;
+    // per line, the index of its first carried point, the number of points and the points as x, y pairs
+    private int[] appendFrom = new int[0];
+    private int[] appendedCounts = new int[0];
+    private float[][] appendedPoints = new float[0][];
+
+    private boolean hasStatistics;
+    private float dayLow;
+    private float dayHigh;
+    private float weekLow;
+    private float weekHigh;
+
+    /**
+     * Fills the model's datasets with the given lines, one dataset per line in the same order, and
+     * works out their ranges so that the chart doesn't have to.
+     * @param lines the lines to draw, the model has no LineData if there are none
+     */
+    void fill(final List<ChartLine> lines) {
+        append = false;
+        while (dataSets.size() > lines.size()) {
+            dataSets.remove(dataSets.size() - 1);
+        }
+        if (lines.isEmpty()) {
+            lineData = null;
+            return;
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            final ChartLine line = lines.get(i);
+            if (i == dataSets.size()) {
+                dataSets.add(createDataSet(new ArrayList<>()));
+            }
+            final LineDataSet dataSet = dataSets.get(i);
+            dataSet.setLabel(line.getLabel());
+            dataSet.setColor(line.getColor());
+            dataSet.setLineWidth(line.getLineWidth());
+            dataSet.setDrawCircles(line.isDrawCircles());
+            dataSet.setAxisDependency(line.getAxisDependency());
+
+            final List<Entry> entries = dataSet.getValues();
+            final int count = line.size();
+            while (entries.size() > count) {
+                entries.remove(entries.size() - 1);
+            }
+            for (int point = 0; point < count; point++) {
+                if (point < entries.size()) {
+                    final Entry entry = entries.get(point);
+                    entry.setX(line.getX(point));
+                    entry.setY(line.getY(point));
+                } else {
+                    entries.add(new Entry(line.getX(point), line.getY(point)));
+                }
+            }
+            dataSet.notifyDataSetChanged();
+        }
+        lineData = new LineData(new ArrayList<ILineDataSet>(dataSets));
+        lineData.setValueTextColor(Color.WHITE);
+    }
+
+    /**
+     * Makes this a model that only carries each line's points from the given index on, to be
+     * appended to the model on the screen rather than swapped in. The lines must be the ones of
+     * the last model in the same order, and may only have grown since, apart from their last point.
+     * @param lines the lines to draw
+     * @param from per line, the index of the last point it had in the last model
+     */
+    void fillAppended(final List<ChartLine> lines, final int[] from) {
+        append = true;
+        if (appendFrom.length != lines.size()) {
+            appendFrom = new int[lines.size()];
+            appendedCounts = new int[lines.size()];
+            appendedPoints = Arrays.copyOf(appendedPoints, lines.size());
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            final ChartLine line = lines.get(i);
+            final int count = line.size() - from[i];
+            if (appendedPoints[i] == null || appendedPoints[i].length < 2 * count) {
+                appendedPoints[i] = new float[Math.max(16, 2 * count)];
+            }
+            final float[] points = appendedPoints[i];
+            for (int point = 0; point < count; point++) {
+                points[2 * point] = line.getX(from[i] + point);
+                points[2 * point + 1] = line.getY(from[i] + point);
+            }
+            appendFrom[i] = from[i];
+            appendedCounts[i] = count;
+        }
+    }
+
+    /**
+     * @return true if the model only carries appended points, see fillAppended
+     */
+    boolean isAppend() {
+        return append;
+    }
+
+    /**
+     * Appends the points an appending model carries to this model, which is on the screen, so it
+     * must be called on the UI thread. Only the new points get entries of their own.
+     * @param appended a model filled by fillAppended after this one was filled
+     */
+    void append(final ChartModel appended) {
+        for (int i = 0; i < appended.appendFrom.length; i++) {
+            final LineDataSet dataSet = dataSets.get(i);
+            final List<Entry> entries = dataSet.getValues();
+            final float[] points = appended.appendedPoints[i];
+            for (int point = 0; point < appended.appendedCounts[i]; point++) {
+                final int index = appended.appendFrom[i] + point;
+                if (index < entries.size()) {
+                    final Entry entry = entries.get(index);
+                    entry.setX(points[2 * point]);
+                    entry.setY(points[2 * point + 1]);
+                } else {
+                    entries.add(new Entry(points[2 * point], points[2 * point + 1]));
+                }
+            }
+            // a revised value can shrink the range, so it has to be recalculated
+            dataSet.notifyDataSetChanged();
+        }
+        lineData.notifyDataChanged();
+        description = appended.description;
+    }
+
+    /**
+     * @return the data for the chart, null if there is nothing to draw yet
+     */
+    LineData getLineData() {
+        return lineData;
+    }
+
+    long getOrigin() {
+        return origin;
+    }
+
+    void setOrigin(final long origin) {
+        this.origin = origin;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    void setDescription(final String description) {
+        this.description = description;
+    }
+
+    boolean isShowLegend() {
+        return showLegend;
+    }
+
+    void setShowLegend(final boolean showLegend) {
+        this.showLegend = showLegend;
+    }
+
+    boolean isShowRightAxis() {
+        return showRightAxis;
+    }
+
+    void setShowRightAxis(final boolean showRightAxis) {
+        this.showRightAxis = showRightAxis;
+    }
+
+    boolean hasStatistics() {
+        return hasStatistics;
+    }
+
+    float getDayLow() {
+        return dayLow;
+    }
+
+    float getDayHigh() {
+        return dayHigh;
+    }
+
+    float getWeekLow() {
+        return weekLow;
+    }
+
+    float getWeekHigh() {
+        return weekHigh;
+    }
+
+    void setStatistics(final float dayLow, final float dayHigh, final float weekLow, final float weekHigh) {
+        this.hasStatistics = true;
+        this.dayLow = dayLow;
+        this.dayHigh = dayHigh;
+        this.weekLow = weekLow;
+        this.weekHigh = weekHigh;
+    }
+
+    /**
+     * Creates and configures a new LineDataSet object for the main chart.
+     * @param entries the list backing the dataset, the dataset reads it directly
+     * @return a configured LineDataSet
+     */
+    private static LineDataSet createDataSet(final List<Entry> entries) {
+        final LineDataSet set = new LineDataSet(entries, null);
+        set.setCircleColor(Color.WHITE);
+        set.setCircleRadius(1f);
+        set.setFillAlpha(65);
+        set.setFillColor(ColorTemplate.getHoloBlue());
+        set.setHighLightColor(Color.rgb(244, 117, 117));
+        set.setValueTextColor(Color.WHITE);
+        set.setValueTextSize(9f);
+        set.setDrawValues(false);
+        return set;
+    }
+}
@@ -1,25 +1,31 @@
 package com.stox.activity;
 
 import android.Manifest;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Color;
-import android.os.StrictMode;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.support.annotation.NonNull;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.os.Build;
 import android.os.Bundle;
+import android.text.InputType;
 import android.view.KeyEvent;
 import android.view.Menu;
+import android.view.MotionEvent;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.WindowManager;
 import android.view.inputmethod.EditorInfo;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
 import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -28,40 +34,130 @@ import com.github.mikephil.charting.charts.LineChart;
 import com.github.mikephil.charting.components.AxisBase;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
-import com.github.mikephil.charting.data.Entry;
-import com.github.mikephil.charting.data.LineData;
-import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.IAxisValueFormatter;
-import com.github.mikephil.charting.interfaces.datasets.ILineDataSet;
-import com.github.mikephil.charting.utils.ColorTemplate;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+import com.stox.BuildConfig;
 import com.stox.R;
+import com.stox.data.Alert;
+import com.stox.data.BollingerBands;
+import com.stox.data.ExponentialMovingAverage;
+import com.stox.data.Histogram;
+import com.stox.data.Indicator;
+import com.stox.data.LivePoller;
+import com.stox.data.MarketDataException;
+import com.stox.data.Metrics;
+import com.stox.data.MovingAverageConvergenceDivergence;
+import com.stox.data.PrefetchWorker;
+import com.stox.data.Quote;
+import com.stox.data.RelativeStrengthIndex;
+import com.stox.data.ReplaySource;
+import com.stox.data.SimpleMovingAverage;
 import com.stox.data.TickFetcher;
-
-import org.patriques.input.timeseries.Interval;
-import org.patriques.output.timeseries.data.StockData;
-
+import com.stox.data.TickSeries;
+import com.stox.data.TickStore;
+import com.stox.data.TickerIndex;
+import com.stox.data.Timeframe;
+import com.stox.data.WatchlistRefresher;
+import com.stox.data.WatchlistStore;
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.text.SimpleDateFormat;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.Calendar;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
-public class MainActivity extends AppCompatActivity implements ActivityCompat.OnRequestPermissionsResultCallback, TextView.OnEditorActionListener, AdapterView.OnItemSelectedListener {
+public class MainActivity extends AppCompatActivity implements ActivityCompat.OnRequestPermissionsResultCallback, TextView.OnEditorActionListener, AdapterView.OnItemSelectedListener, OnChartGestureListener {
 
     private LineChart lineChart;
-    private EditText stockSymbolEditText;
+    private AutoCompleteTextView stockSymbolEditText;
     private Spinner favoritesSpinner;
     private TextView dayHighTextView;
     private TextView dayLowTextView;
     private TextView weekHighTextView;
     private TextView weekLowTextView;
+    private TextView performanceOverlay;
+
+    // runs fetch callbacks on the UI thread
+    private final Executor mainThreadExecutor = new Handler(Looper.getMainLooper())::post;
+    // the symbol most recently requested for the chart, older responses are dropped
+    private String requestedSymbol;
+    // whether the chart already shows fresh data for the requested symbol
+    private boolean requestedSymbolRefreshed;
+
+    // builds the chart's data off the UI thread, and the model of it that is on screen
+    private ChartBuilder chartBuilder;
+    private ChartModel chartModel;
+
+    // polls the requested symbol while live mode is on
+    private final LivePoller livePoller = new LivePoller(TickFetcher.getInstance(), mainThreadExecutor);
+    private boolean liveMode;
+
+    // compare mode plots every favorite as its percent change, next to the chart's symbol
+    private boolean compareMode;
+
+    // every listed symbol, to suggest symbols as they are typed and reject unknown ones without a
+    // network call; empty until it has been opened, or if it couldn't be downloaded
+    private TickerIndex tickerIndex = TickerIndex.empty();
+
+    // preference with the symbol that was last on the chart, drawn from disk on the next launch
+    private static final String LAST_SYMBOL = "lastSymbol";
+    // preference with the watchlist the spinner shows
+    private static final String WATCHLIST = "watchlist";
+    // false until the spinner has reported its initial selection, which isn't the user's doing
+    private boolean favoritesSpinnerSettled;
+
+    // the user's watchlists, null until they are opened, the one the spinner shows and the adapter showing it
+    private WatchlistStore watchlistStore;
+    private String watchlistName;
+    private WatchlistAdapter watchlistAdapter;
+    // the store reports changes on whichever thread made them, quotes usually on a fetch thread
+    private final WatchlistStore.Listener watchlistListener = new WatchlistStore.Listener() {
+        @Override
+        public void onWatchlistChanged(final String name) {
+            mainThreadExecutor.execute(() -> {
+                if (name.equals(watchlistName) && !isDestroyed()) {
+                    showWatchlist();
+                }
+            });
+        }
+
+        @Override
+        public void onQuoteChanged(final String stockSymbol, final Quote quote) {
+            mainThreadExecutor.execute(() -> watchlistAdapter.setQuote(stockSymbol, quote));
+        }
+    };
+
+    // when the symbol on the chart was requested, for timing how long it takes to show up
+    private long requestedNanos;
+    // redraws the performance overlay once a second while it is shown
+    private final Handler overlayHandler = new Handler(Looper.getMainLooper());
+    private final Runnable overlayUpdater = new Runnable() {
+        @Override
+        public void run() {
+            updatePerformanceOverlay();
+            overlayHandler.postDelayed(this, 1000);
+        }
+    };
+
+    // intent extra with the speed to replay stored ticks at, see setUpReplay()
+    private static final String EXTRA_REPLAY_SPEED = "replaySpeed";
 
+    // the timeframe on the chart, and how its x axis labels the bars
+    private Timeframe chartInterval = Timeframe.ONE_MIN;
+    private final SimpleDateFormat chartTimeFormat = new SimpleDateFormat("HH:mm", Locale.US);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -69,16 +165,74 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, WindowManager.LayoutParams.FLAG_FULLSCREEN);
         setContentView(R.layout.activity_main);
 
-        // allow any action on the main thread
-        StrictMode.ThreadPolicy policy = new StrictMode.ThreadPolicy.Builder().permitAll().build();
-        StrictMode.setThreadPolicy(policy);
-
         setTitle("Stox");
 
+        TickFetcher.getInstance().initialize(this);
+        if (savedInstanceState == null) {
+            setUpReplay();
+        }
+
         setUpTextViews();
         setUpMainChart();
         setUpStockSymbolEditText();
         setUpFavoritesSpinner();
+        showLastSymbol();
+        PrefetchWorker.schedule();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (liveMode && requestedSymbol != null) {
+            startLivePolling(requestedSymbol);
+        }
+        if (performanceOverlay.getVisibility() == View.VISIBLE) {
+            overlayHandler.post(overlayUpdater);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // no point spending battery and quota on a chart nobody is looking at
+        livePoller.stop();
+        overlayHandler.removeCallbacks(overlayUpdater);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        chartBuilder.shutdown();
+        livePoller.shutdown();
+        if (watchlistStore != null) {
+            watchlistStore.removeListener(watchlistListener);
+        }
+    }
+
+    /**
+     * In debug builds, replays the ticks the app has stored so far instead of calling AlphaVantage
+     * when started with a replay speed, e.g.
+     * adb shell am start -n com.stox/.activity.MainActivity --ef replaySpeed 100
+     * A speed of Infinity replays as fast as possible.
+     */
+    private void setUpReplay() {
+        final float replaySpeed = getIntent().getFloatExtra(EXTRA_REPLAY_SPEED, 0);
+        if (!BuildConfig.DEBUG || !(replaySpeed > 0)) {
+            return;
+        }
+        // the replayed bars get a scratch store, emptied so every run starts from the recording
+        final File replayDirectory = new File(getFilesDir(), "replay");
+        final File[] oldFiles = replayDirectory.listFiles();
+        if (oldFiles != null) {
+            for (final File file : oldFiles) {
+                file.delete();
+            }
+        }
+        TickFetcher.getInstance().setMarketDataSource(
+                new ReplaySource(new TickStore(new File(getFilesDir(), "ticks")), replaySpeed),
+                new TickStore(replayDirectory));
+        Toast.makeText(getApplicationContext(), "Replaying stored ticks at " + replaySpeed + "x",
+                Toast.LENGTH_SHORT).show();
     }
 
     /**
@@ -89,6 +243,7 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
         dayLowTextView = findViewById(R.id.dayLowTextView);
         weekHighTextView = findViewById(R.id.weekHighTextView);
         weekLowTextView = findViewById(R.id.weekLowTextView);
+        performanceOverlay = findViewById(R.id.performanceOverlay);
     }
 
     /**
@@ -105,11 +260,11 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
         lineChart.setPinchZoom(true);
         lineChart.setBackgroundColor(getResources().getColor(R.color.colorPrimary, null));
         lineChart.getLegend().setEnabled(false);
+        lineChart.setOnChartGestureListener(this);
 
-        final LineData data = new LineData();
-        data.setValueTextColor(Color.WHITE);
-
-        lineChart.setData(data);
+        // the chart gets its data from the builder, see showChartModel()
+        chartBuilder = new ChartBuilder(getResources().getDisplayMetrics().widthPixels, mainThreadExecutor,
+                this::showChartModel);
 
         final XAxis xAxis = lineChart.getXAxis();
         xAxis.setTextColor(getResources().getColor(R.color.colorSecondary, null));
@@ -117,15 +272,15 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
         xAxis.setAvoidFirstLastClipping(true);
         xAxis.setEnabled(true);
         xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
-        // we need to convert the x value (seconds since epoch) to a human readable format
+        // we need to convert the x value (seconds since the chart's origin) to a human readable format
+        // timestamps are exchange time encoded as UTC
+        chartTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
         xAxis.setValueFormatter(new IAxisValueFormatter() {
-            private final SimpleDateFormat format = new SimpleDateFormat("HH:mm", Locale.US);
-
             @Override
             public String getFormattedValue(float value, AxisBase axis) {
-                final long epochSecond = (long) value;
+                final long epochSecond = (chartModel == null ? 0 : chartModel.getOrigin()) + (long) value;
                 final Date date = new Date(epochSecond * 1000);
-                return format.format(date);
+                return chartTimeFormat.format(date);
             }
         });
 
@@ -133,7 +288,10 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
         yAxis.setTextColor(getResources().getColor(R.color.colorSecondary, null));
         yAxis.setDrawGridLines(true);
 
+        // the right axis is for oscillators like RSI and MACD, shown only while one of them is
         final YAxis rightAxis = lineChart.getAxisRight();
+        rightAxis.setTextColor(getResources().getColor(R.color.colorSecondary, null));
+        rightAxis.setDrawGridLines(false);
         rightAxis.setEnabled(false);
     }
 
@@ -143,137 +301,377 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
     private void setUpStockSymbolEditText() {
         stockSymbolEditText = findViewById(R.id.editText);
         stockSymbolEditText.setOnEditorActionListener(this);
+
+        final TickerAdapter adapter = new TickerAdapter(this);
+        stockSymbolEditText.setAdapter(adapter);
+        stockSymbolEditText.setOnItemClickListener((parent, view, position, id) ->
+                populateChart(adapter.getItem(position).getSymbol()));
+        TickFetcher.getInstance().getTickerIndex()
+                .thenAcceptAsync(index -> {
+                    tickerIndex = index;
+                    adapter.setTickerIndex(index);
+                }, mainThreadExecutor);
     }
 
     /**
-     * Configure the Spinner widget that holds favorite stocks.
+     * Configure the Spinner widget that holds favorite stocks, the symbols of the current watchlist.
+     * The watchlists are opened on the fetcher's disk thread, the spinner fills once they are open
+     * and then refreshes its symbols.
      */
     private void setUpFavoritesSpinner() {
         favoritesSpinner = findViewById(R.id.spinner);
+        watchlistName = getSharedPreferences("Stox", MODE_PRIVATE).getString(WATCHLIST, TickFetcher.DEFAULT_WATCHLIST);
+        watchlistAdapter = new WatchlistAdapter(this);
+        favoritesSpinner.setAdapter(watchlistAdapter);
+        TickFetcher.getInstance().openWatchlistStore().thenAcceptAsync(store -> {
+            if (isDestroyed()) {
+                return;
+            }
+            watchlistStore = store;
+            showWatchlist();
+            // start on the favorite that was on the chart last time rather than the first one
+            final int lastPosition = watchlistAdapter.indexOf(
+                    getSharedPreferences("Stox", MODE_PRIVATE).getString(LAST_SYMBOL, null));
+            if (lastPosition >= 0) {
+                favoritesSpinner.setSelection(lastPosition, false);
+            }
+            favoritesSpinner.setOnItemSelectedListener(this);
+            store.addListener(watchlistListener);
+            refreshFavorites();
+        }, mainThreadExecutor);
+    }
 
-        // retrieve the favorites from the "Stox" shared preferences map
-        final Set<String> favoriteStocks = getSharedPreferences("Stox", MODE_PRIVATE).getStringSet("favorites", null);
-        // empty by default
-        String[] favorites = {};
-        // if we have existing preferences, replace the empty array
-        if (favoriteStocks != null && !favoriteStocks.isEmpty()) {
-            favorites = favoriteStocks.toArray(new String[favoriteStocks.size()]);
+    /**
+     * Bring the spinner up to date with the current watchlist, keeping the chart's symbol selected
+     * so that a change to the list doesn't switch the chart to another symbol.
+     */
+    private void showWatchlist() {
+        if (watchlistStore == null) {
+            return;
+        }
+        final List<String> stockSymbols = watchlistStore.getSymbols(watchlistName);
+        final Map<String, Quote> quotes = new HashMap<>();
+        for (final String stockSymbol : stockSymbols) {
+            final Quote quote = watchlistStore.getQuote(stockSymbol);
+            if (quote != null) {
+                quotes.put(stockSymbol, quote);
+            }
+        }
+        if (watchlistAdapter.setSymbols(stockSymbols, quotes)) {
+            final int position = watchlistAdapter.indexOf(requestedSymbol);
+            if (position >= 0) {
+                favoritesSpinner.setSelection(position, false);
+            }
+        }
+    }
+
+    /**
+     * Draw the symbol that was on the chart when the app was last used. Its bars are read from disk
+     * right away, usually in time for the first frame, instead of after the spinner's first layout
+     * and a network call; the background prefetch keeps them recent.
+     */
+    private void showLastSymbol() {
+        final String lastSymbol = getSharedPreferences("Stox", MODE_PRIVATE).getString(LAST_SYMBOL, null);
+        if (lastSymbol != null) {
+            stockSymbolEditText.setText(lastSymbol, false);
+            populateChart(lastSymbol);
+        }
+    }
+
+    /**
+     * Refresh every favorite in the background so that switching between them is served from memory.
+     * The fetches are paced to the API quota, the symbol on screen goes first.
+     */
+    private void refreshFavorites() {
+        if (watchlistStore == null) {
+            return;
         }
-        // create a new String adapter to provide data to the Spinner
-        final ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                this,
-                R.layout.favorites_spinner_item,
-                favorites
-        );
-        adapter.setDropDownViewResource(R.layout.favorites_spinner_dropdown_item);
-        favoritesSpinner.setAdapter(adapter);
-        favoritesSpinner.setOnItemSelectedListener(this);
+        final List<String> favoriteStocks = watchlistStore.getSymbols(watchlistName);
+        if (favoriteStocks.isEmpty()) {
+            return;
+        }
+        // the spinner shows its first favorite until the user picks another
+        final Object visibleSymbol = favoritesSpinner.getSelectedItem();
+        new WatchlistRefresher(TickFetcher.getInstance())
+                .refresh(favoriteStocks, visibleSymbol == null ? null : visibleSymbol.toString(),
+                        Timeframe.ONE_MIN)
+                .thenAccept(refreshed -> Log.d("WATCHLIST", "refreshed " + refreshed.size()
+                        + " of " + favoriteStocks.size() + " favorites"));
     }
 
     /**
-     * Populate the chart with the given stock symbol's data.
+     * Draw the given stock symbol's stored data straight away, then refresh it in the background
+     * and populate the chart again once the fresh data arrives.
      * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
      */
     private void populateChart(final String stockSymbol) {
-        // get one minute data for the given stock
-        final List<StockData> stockDataList = TickFetcher.getInstance().getData(stockSymbol, Interval.ONE_MIN);
-        if (stockDataList == null || stockDataList.isEmpty()) {
-            Toast.makeText(getApplicationContext(), "Stock symbol not found.",
-                    Toast.LENGTH_SHORT).show();
+        if (!tickerIndex.isEmpty() && !tickerIndex.contains(stockSymbol)) {
+            // every listed symbol is in the index, there is no point asking AlphaVantage about this one
+            Toast.makeText(getApplicationContext(), "Stock symbol not found.", Toast.LENGTH_SHORT).show();
             return;
         }
+        requestedSymbol = stockSymbol;
+        requestedSymbolRefreshed = false;
+        requestedNanos = System.nanoTime();
+        final TickFetcher tickFetcher = TickFetcher.getInstance();
+        final Timeframe interval = chartInterval;
+        if (liveMode) {
+            startLivePolling(stockSymbol);
+        }
+        if (compareMode) {
+            // the other symbols are compared against this one now, and maybe at another timeframe
+            chartBuilder.clearComparisons();
+            loadComparisons();
+        }
 
-        // sort the data based on timestamps
-        Collections.sort(stockDataList, (stockData, t1) -> stockData.getDateTime().compareTo(t1.getDateTime()));
-
-        // create a new dataset for the chart
-        final LineData data = lineChart.getData();
-        final ILineDataSet dataSet = createDataSet();
-        data.removeDataSet(0);
-        data.addDataSet(dataSet);
+        // whatever we have on disk is better than an empty chart while we wait for the network
+        tickFetcher.getStoredData(stockSymbol, interval)
+                .thenAcceptAsync(tickSeries -> {
+                    if (isCurrent(stockSymbol, interval) && !requestedSymbolRefreshed && !tickSeries.isEmpty()) {
+                        if (interval == Timeframe.ONE_MIN) {
+                            populateChart(stockSymbol, tickSeries);
+                        } else {
+                            chartBuilder.setSeries(stockSymbol, interval, tickSeries);
+                        }
+                        Metrics.getInstance().record("chart.fromDisk", System.nanoTime() - requestedNanos);
+                    }
+                }, mainThreadExecutor);
 
-        // get the most recent day in the stock data
-        final int dayOfYear = stockDataList.get(stockDataList.size() - 1).getDateTime().getDayOfYear();
+        // get one minute data for the given stock, coarser timeframes are rolled up from it
+        tickFetcher.getData(stockSymbol, Timeframe.ONE_MIN)
+                .whenCompleteAsync((tickSeries, throwable) -> {
+                    // ignore the response if the user has moved on to another symbol in the meantime
+                    if (!stockSymbol.equals(requestedSymbol) || isDestroyed()) {
+                        return;
+                    }
+                    if (throwable != null || tickSeries.isEmpty()) {
+                        if (throwable != null) {
+                            Log.w("CHART", "could not fetch " + stockSymbol, throwable);
+                        }
+                        Toast.makeText(getApplicationContext(), fetchErrorMessage(throwable),
+                                Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    requestedSymbolRefreshed = true;
+                    getSharedPreferences("Stox", MODE_PRIVATE).edit().putString(LAST_SYMBOL, stockSymbol).apply();
+                    populateChart(stockSymbol, tickSeries);
+                    Metrics.getInstance().record("chart.fromNetwork", System.nanoTime() - requestedNanos);
+                }, mainThreadExecutor);
+    }
 
-        float dayLow = Float.MAX_VALUE;
-        float dayHigh = 0.0f;
-        float weekLow = Float.MAX_VALUE;
-        float weekHigh = 0.0f;
+    /**
+     * Populate the statistics with the given stock symbol's one minute bars, and the chart with
+     * either those bars or the chart's timeframe rolled up from them.
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
+     * @param oneMinute the symbol's one minute bars, must not be empty
+     */
+    private void populateChart(final String stockSymbol, final TickSeries oneMinute) {
+        chartBuilder.updateStatistics(stockSymbol, oneMinute);
+        if (chartInterval == Timeframe.ONE_MIN) {
+            chartBuilder.setSeries(stockSymbol, Timeframe.ONE_MIN, oneMinute);
+            return;
+        }
 
-        for (final StockData stockData : stockDataList) {
+        final Timeframe interval = chartInterval;
+        TickFetcher.getInstance().getAggregatedData(stockSymbol, interval)
+                .thenAcceptAsync(tickSeries -> {
+                    if (isCurrent(stockSymbol, interval) && !tickSeries.isEmpty()) {
+                        chartBuilder.setSeries(stockSymbol, interval, tickSeries);
+                    }
+                }, mainThreadExecutor);
+    }
 
-            final float close = (float) stockData.getClose();
+    /**
+     * @return whether the chart is still meant to show the given symbol at the given timeframe
+     */
+    private boolean isCurrent(final String stockSymbol, final Timeframe interval) {
+        return stockSymbol.equals(requestedSymbol) && interval == chartInterval && !isDestroyed();
+    }
 
-            if (stockData.getDateTime().compareTo(LocalDateTime.now().minusDays(7)) >= 0) {
-                if (close < weekLow) {
-                    weekLow = close;
-                }
+    /**
+     * Tells apart why a fetch failed, so that a missing connection or a used up quota isn't
+     * reported as an unknown symbol.
+     * @param throwable what the fetch failed with, possibly wrapped by a dependent future, or null
+     *                  if it came back without bars
+     * @return the message to show
+     */
+    private static String fetchErrorMessage(final Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause == null) {
+            return "Stock symbol not found.";
+        }
+        if (cause instanceof MarketDataException) {
+            return ((MarketDataException) cause).isRateLimited()
+                    ? "Too many requests, try again in a minute." : "Stock symbol not found.";
+        }
+        if (cause instanceof RejectedExecutionException) {
+            return "Too many requests waiting, try again shortly.";
+        }
+        if (cause instanceof SocketTimeoutException) {
+            return "The connection timed out, try again.";
+        }
+        if (cause instanceof IOException) {
+            return "Network error, check your connection.";
+        }
+        return "Could not load the stock symbol.";
+    }
 
-                if (close > weekHigh) {
-                    weekHigh = close;
-                }
+    /**
+     * Swap a model the chart builder has just filled in for the one on screen, and redraw. The
+     * builder has already worked out the datasets' ranges, so all that is left here is the chart's
+     * layout. The model that comes off the screen goes back to the builder to be filled next. A
+     * model that only carries appended points is added to the one on the screen instead.
+     * @param model the newly built model
+     */
+    private void showChartModel(final ChartModel model) {
+        if (isDestroyed()) {
+            return;
+        }
+        final Metrics.Timer timer = Metrics.getInstance().start("chart.swap");
+        if (model.hasStatistics()) {
+            dayLowTextView.setText("Day low: " + model.getDayLow());
+            dayHighTextView.setText("Day high: " + model.getDayHigh());
+            weekLowTextView.setText("Week low: " + model.getWeekLow());
+            weekHighTextView.setText("Week high: " + model.getWeekHigh());
+        }
+        if (model.isAppend()) {
+            // only new points, they are added to the model on the screen instead of swapping it
+            if (chartModel != null) {
+                chartModel.append(model);
+                lineChart.getDescription().setText(chartModel.getDescription());
+                lineChart.notifyDataSetChanged();
+                lineChart.invalidate();
             }
-            // if the data is from the most recent day
-            if (stockData.getDateTime().getDayOfYear() == dayOfYear) {
-                // add it to the chart dataset using seconds since epoch (chart only takes numbers, not dates)
+            chartBuilder.recycle(model);
+            timer.stop();
+            return;
+        }
+        if (model.getLineData() == null) {
+            // nothing to draw yet, only statistics
+            chartBuilder.recycle(model);
+            timer.stop();
+            return;
+        }
 
+        final ChartModel previous = chartModel;
+        chartModel = model;
+        lineChart.getAxisRight().setEnabled(model.isShowRightAxis());
+        lineChart.getLegend().setEnabled(model.isShowLegend());
+        lineChart.getDescription().setText(model.getDescription());
+        lineChart.getDescription().setEnabled(true);
+        // the chart works out its axes here, it draws on the next frame (see TimedLineChart)
+        lineChart.setData(model.getLineData());
+        lineChart.invalidate();
+        if (previous != null) {
+            chartBuilder.recycle(previous);
+        }
+        timer.stop();
+    }
 
-                if (close < dayLow) {
-                    dayLow = close;
-                }
+    /**
+     * Switch the chart to another timeframe. Everything but one minute bars is rolled up locally,
+     * so switching never costs an API call of its own.
+     * @param item the timeframe's menu item
+     * @param interval the timeframe's interval
+     */
+    private void selectTimeframe(final MenuItem item, final Timeframe interval) {
+        item.setChecked(true);
+        if (interval == chartInterval) {
+            return;
+        }
+        chartInterval = interval;
+        chartTimeFormat.applyPattern(interval == Timeframe.ONE_MIN ? "HH:mm"
+                : interval == Timeframe.DAILY ? "dd MMM" : "dd MMM HH:mm");
+        if (requestedSymbol != null) {
+            populateChart(requestedSymbol);
+        }
+    }
 
-                if (close > dayHigh) {
-                    dayHigh = close;
-                }
+    /**
+     * Show the indicator of a menu item on the chart, or take it off if it was shown.
+     * @param item the indicator's menu item
+     * @param indicatorFactory creates the indicator
+     */
+    private void toggleIndicator(final MenuItem item, final Supplier<Indicator> indicatorFactory) {
+        item.setChecked(!item.isChecked());
+        if (item.isChecked()) {
+            chartBuilder.showIndicator(item.getItemId(), indicatorFactory);
+        } else {
+            chartBuilder.hideIndicator(item.getItemId());
+        }
+    }
 
-                final LocalDateTime localDateTime = stockData.getDateTime();
-                final ZonedDateTime zonedDateTime = localDateTime.atZone(ZoneId.systemDefault());
-                final long epochSecond = zonedDateTime.toEpochSecond();
-                data.addEntry(new Entry(epochSecond, close), 0);
+    /**
+     * Start comparing the chart's symbol with every favorite. The favorites are fetched in
+     * parallel and each one joins the chart on its own as soon as it arrives, without touching
+     * the others.
+     */
+    private void loadComparisons() {
+        if (requestedSymbol == null || watchlistStore == null) {
+            return;
+        }
+        final List<String> favoriteStocks = watchlistStore.getSymbols(watchlistName);
+        final TickFetcher tickFetcher = TickFetcher.getInstance();
+        final String baseSymbol = requestedSymbol;
+        final Timeframe interval = chartInterval;
+        for (final String favorite : favoriteStocks) {
+            final String stockSymbol = favorite.trim().toUpperCase(Locale.US);
+            if (stockSymbol.equals(baseSymbol.trim().toUpperCase(Locale.US))) {
+                continue;
             }
+            final CompletableFuture<TickSeries> future = interval == Timeframe.ONE_MIN
+                    ? tickFetcher.getData(stockSymbol, interval)
+                    : tickFetcher.getAggregatedData(stockSymbol, interval);
+            future.thenAcceptAsync(tickSeries -> {
+                if (compareMode && isCurrent(baseSymbol, interval) && !tickSeries.isEmpty()) {
+                    chartBuilder.addComparison(stockSymbol, tickSeries);
+                }
+            }, mainThreadExecutor);
         }
+    }
 
-        dayLowTextView.setText("Day low: " + dayLow);
-        dayHighTextView.setText("Day high: " + dayHigh);
-        weekLowTextView.setText("Week low: " + weekLow);
-        weekHighTextView.setText("Week high: " + weekHigh);
-
-        data.notifyDataChanged();
-
-        // get a human readable string for the date that the data is from
-        final Calendar calendar = Calendar.getInstance();
-        calendar.set(Calendar.DAY_OF_YEAR, dayOfYear);
-        final String dateString = new SimpleDateFormat("dd MMM yyyy", Locale.US).format(calendar.getTime());
-
-        lineChart.notifyDataSetChanged();
-        lineChart.getDescription().setText(stockSymbol + " on " + dateString);
-        lineChart.getDescription().setEnabled(true);
-        lineChart.invalidate();
+    /**
+     * Switch compare mode on or off, redrawing the chart's symbol as percent change or close.
+     * @param enabled whether to compare the chart's symbol with the favorites
+     */
+    private void setCompareMode(final boolean enabled) {
+        compareMode = enabled;
+        chartBuilder.setCompareMode(enabled);
+        if (enabled) {
+            loadComparisons();
+        }
     }
 
     /**
-     * Creates and configures a new LineDataSet object for the main chart.
-     * @return an empty, but configured LineDataSet
+     * Start polling the given symbol and feed every update into the chart.
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
      */
-    private LineDataSet createDataSet() {
-        final LineDataSet set = new LineDataSet(null, null);
-        set.setAxisDependency(YAxis.AxisDependency.LEFT);
-        set.setColor(ColorTemplate.getHoloBlue());
-        set.setCircleColor(Color.WHITE);
-        set.setLineWidth(2f);
-        set.setCircleRadius(1f);
-        set.setFillAlpha(65);
-        set.setFillColor(ColorTemplate.getHoloBlue());
-        set.setHighLightColor(Color.rgb(244, 117, 117));
-        set.setValueTextColor(Color.WHITE);
-        set.setValueTextSize(9f);
-        set.setDrawValues(false);
-        return set;
+    private void startLivePolling(final String stockSymbol) {
+        livePoller.start(stockSymbol, Timeframe.ONE_MIN, new LivePoller.Listener() {
+            @Override
+            public void onUpdate(final TickSeries tickSeries) {
+                if (liveMode && stockSymbol.equals(requestedSymbol) && !isDestroyed() && !tickSeries.isEmpty()) {
+                    requestedSymbolRefreshed = true;
+                    populateChart(stockSymbol, tickSeries);
+                }
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                // the poller backs off and tries again, the chart keeps showing what it has
+            }
+        });
     }
 
     @Override
     public boolean onCreateOptionsMenu(final Menu menu) {
         getMenuInflater().inflate(R.menu.realtime, menu);
+        // the overlay is for development, the export also works on field devices
+        menu.findItem(R.id.actionPerformanceOverlay).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -286,6 +684,81 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
             case R.id.actionUnfavorite:
                 removeFavorite();
                 break;
+            case R.id.actionMoveFavoriteToTop:
+                moveFavoriteToTop();
+                break;
+            case R.id.actionWatchlists:
+                chooseWatchlist();
+                break;
+            case R.id.actionLive:
+                liveMode = !item.isChecked();
+                item.setChecked(liveMode);
+                if (liveMode && requestedSymbol != null) {
+                    startLivePolling(requestedSymbol);
+                } else {
+                    livePoller.stop();
+                }
+                break;
+            case R.id.actionCompare:
+                item.setChecked(!item.isChecked());
+                setCompareMode(item.isChecked());
+                break;
+            case R.id.actionAddAlert:
+                addAlert();
+                break;
+            case R.id.actionRemoveAlerts:
+                removeAlerts();
+                break;
+            case R.id.actionIndicatorSma:
+                toggleIndicator(item, () -> new SimpleMovingAverage(20));
+                break;
+            case R.id.actionIndicatorEma:
+                toggleIndicator(item, () -> new ExponentialMovingAverage(20));
+                break;
+            case R.id.actionIndicatorBollinger:
+                toggleIndicator(item, () -> new BollingerBands(20, 2));
+                break;
+            case R.id.actionIndicatorRsi:
+                toggleIndicator(item, () -> new RelativeStrengthIndex(14));
+                break;
+            case R.id.actionIndicatorMacd:
+                toggleIndicator(item, () -> new MovingAverageConvergenceDivergence(12, 26, 9));
+                break;
+            case R.id.actionTimeframeOneMin:
+                selectTimeframe(item, Timeframe.ONE_MIN);
+                break;
+            case R.id.actionTimeframeFiveMin:
+                selectTimeframe(item, Timeframe.FIVE_MIN);
+                break;
+            case R.id.actionTimeframeFifteenMin:
+                selectTimeframe(item, Timeframe.FIFTEEN_MIN);
+                break;
+            case R.id.actionTimeframeThirtyMin:
+                selectTimeframe(item, Timeframe.THIRTY_MIN);
+                break;
+            case R.id.actionTimeframeSixtyMin:
+                selectTimeframe(item, Timeframe.SIXTY_MIN);
+                break;
+            case R.id.actionTimeframeDaily:
+                selectTimeframe(item, Timeframe.DAILY);
+                break;
+            case R.id.actionPerformanceOverlay:
+                item.setChecked(!item.isChecked());
+                performanceOverlay.setVisibility(item.isChecked() ? View.VISIBLE : View.GONE);
+                overlayHandler.removeCallbacks(overlayUpdater);
+                if (item.isChecked()) {
+                    overlayHandler.post(overlayUpdater);
+                }
+                break;
+            case R.id.actionExportMetrics:
+                exportMetrics();
+                break;
+            case R.id.actionExportSeries:
+                exportSeries();
+                break;
+            case R.id.actionImportSeries:
+                importSeries();
+                break;
             case R.id.actionSave:
                 if (ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE) == PackageManager.PERMISSION_GRANTED) {
                     saveToGallery();
@@ -299,63 +772,298 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
     }
 
     /**
-     * Adds the current stock symbol to the user's favorites
+     * Adds the current stock symbol to the end of the current watchlist. The spinner hears about
+     * it from the store.
      */
     private void addFavorite() {
-        // get the "Stox" shared preference map
-        final SharedPreferences sharedPreferences = getSharedPreferences("Stox", MODE_PRIVATE);
-        // get the "favorites" set from the "Stox" map
-        Set<String> favoriteStocks = sharedPreferences.getStringSet("favorites", null);
-        // if it doesn't exist, create a new set
-        if (favoriteStocks == null) {
-            favoriteStocks = new HashSet<>();
+        final String stockSymbol = stockSymbolEditText.getText().toString().trim();
+        if (stockSymbol.isEmpty()) {
+            Toast.makeText(getApplicationContext(), "Enter a stock symbol first.", Toast.LENGTH_SHORT).show();
+            return;
         }
+        final String name = watchlistName;
+        changeWatchlists("add " + stockSymbol, store -> store.add(name, stockSymbol));
+    }
 
-        // and add the current symbol to it
-        favoriteStocks.add(stockSymbolEditText.getText().toString());
+    /**
+     * Removes the current stock symbol from the current watchlist.
+     */
+    private void removeFavorite() {
+        final String name = watchlistName;
+        final String stockSymbol = stockSymbolEditText.getText().toString();
+        changeWatchlists("remove " + stockSymbol, store -> store.remove(name, stockSymbol));
+    }
 
-        // then we reset the adapter that provides data to the spinner
-        final String[] favorites = favoriteStocks.toArray(new String[favoriteStocks.size()]);
-        final ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                this,
-                R.layout.favorites_spinner_item,
-                favorites
-        );
-        adapter.setDropDownViewResource(R.layout.favorites_spinner_dropdown_item);
-        favoritesSpinner.setAdapter(adapter);
+    /**
+     * Moves the current stock symbol to the top of the current watchlist.
+     */
+    private void moveFavoriteToTop() {
+        final String name = watchlistName;
+        final String stockSymbol = stockSymbolEditText.getText().toString();
+        changeWatchlists("move " + stockSymbol, store -> store.move(name, stockSymbol, 0));
+    }
 
-        // and apply the changes to the shared preferences map
-        sharedPreferences.edit().putStringSet("favorites", favoriteStocks).apply();
+    /**
+     * Changes the watchlists on the fetcher's disk thread, where they are written, and tells the
+     * user on the UI thread if that failed. The spinner hears about the change from the store.
+     * @param what what the change does, for the log
+     * @param change the change to make
+     * @return a future that completes with the change's result, on the UI thread
+     */
+    private <T> CompletableFuture<T> changeWatchlists(final String what, final TickFetcher.WatchlistChange<T> change) {
+        return TickFetcher.getInstance().changeWatchlists(change).whenCompleteAsync((result, throwable) -> {
+            if (throwable != null) {
+                Log.e("WATCHLIST", "could not " + what, throwable);
+                Toast.makeText(getApplicationContext(), "Saving FAILED!", Toast.LENGTH_SHORT).show();
+            }
+        }, mainThreadExecutor);
     }
 
     /**
-     * Removes the current stock symbol from the user's favorites.
+     * Lets the user switch to another watchlist, create a new one, or delete the current one.
      */
-    private void removeFavorite() {
-        // get the "Stox" shared preference map
-        final SharedPreferences sharedPreferences = getSharedPreferences("Stox", MODE_PRIVATE);
-        // get the "favorites" set from the "Stox" map
-        Set<String> favoriteStocks = sharedPreferences.getStringSet("favorites", null);
-        // if it exists, and there is a stock currently typed on the screen, and it exists in the set
-        if (favoriteStocks != null
-                && stockSymbolEditText.getText() != null
-                && favoriteStocks.contains(stockSymbolEditText.getText().toString())) {
-            // remove it
-            favoriteStocks.remove(stockSymbolEditText.getText().toString());
+    private void chooseWatchlist() {
+        if (watchlistStore == null) {
+            // still opening, there is nothing to choose from yet
+            return;
+        }
+        final List<String> names = watchlistStore.getWatchlistNames();
+        if (!names.contains(watchlistName)) {
+            names.add(0, watchlistName);
+        }
+        final List<String> choices = new ArrayList<>(names);
+        choices.add(getString(R.string.watchlistNew));
+        choices.add(getString(R.string.watchlistDelete, watchlistName));
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.actionWatchlists)
+                .setSingleChoiceItems(choices.toArray(new String[0]), names.indexOf(watchlistName), (dialog, which) -> {
+                    dialog.dismiss();
+                    if (which < names.size()) {
+                        selectWatchlist(names.get(which));
+                    } else if (which == names.size()) {
+                        createWatchlist();
+                    } else {
+                        deleteWatchlist();
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void createWatchlist() {
+        final EditText nameEditText = new EditText(this);
+        nameEditText.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_CAP_WORDS);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.watchlistNew)
+                .setView(nameEditText)
+                .setPositiveButton(android.R.string.ok, (dialog, which) -> {
+                    final String name = nameEditText.getText().toString().trim();
+                    if (name.isEmpty()) {
+                        return;
+                    }
+                    changeWatchlists("create " + name, store -> store.createWatchlist(name))
+                            .thenRun(() -> selectWatchlist(name));
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    private void deleteWatchlist() {
+        final String name = watchlistName;
+        changeWatchlists("delete " + name, store -> {
+            store.deleteWatchlist(name);
+            return store.getWatchlistNames();
+        }).thenAccept(names -> selectWatchlist(names.isEmpty() ? TickFetcher.DEFAULT_WATCHLIST : names.get(0)));
+    }
+
+    /**
+     * Shows the given watchlist in the spinner and refreshes its symbols.
+     * @param name the watchlist's name, it may not exist until a symbol is added to it
+     */
+    private void selectWatchlist(final String name) {
+        watchlistName = name;
+        getSharedPreferences("Stox", MODE_PRIVATE).edit().putString(WATCHLIST, name).apply();
+        showWatchlist();
+        refreshFavorites();
+        if (compareMode) {
+            chartBuilder.clearComparisons();
+            loadComparisons();
+        }
+    }
+
+    /**
+     * Asks for a new price alert on the current stock symbol. Alerts are checked whenever the
+     * symbol's bars are fetched, by live updates or the background prefetch of favorites.
+     */
+    private void addAlert() {
+        final String stockSymbol = stockSymbolEditText.getText().toString().trim();
+        if (stockSymbol.isEmpty()) {
+            Toast.makeText(getApplicationContext(), "Enter a stock symbol first.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // the spinner's entries are in the order of Alert.Type
+        final Spinner typeSpinner = new Spinner(this);
+        typeSpinner.setAdapter(new ArrayAdapter<>(this, android.R.layout.simple_spinner_dropdown_item,
+                getResources().getStringArray(R.array.alertTypes)));
+        final EditText valueEditText = new EditText(this);
+        valueEditText.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL
+                | InputType.TYPE_NUMBER_FLAG_SIGNED);
+        valueEditText.setHint(R.string.alertValueHint);
+        final LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(typeSpinner);
+        layout.addView(valueEditText);
+
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.actionAddAlert) + ": " + stockSymbol)
+                .setView(layout)
+                .setPositiveButton(android.R.string.ok, (dialog, which) -> {
+                    final Alert.Type type = Alert.Type.values()[typeSpinner.getSelectedItemPosition()];
+                    double value = 0;
+                    if (type == Alert.Type.PRICE_CROSS || type == Alert.Type.PERCENT_MOVE) {
+                        try {
+                            value = Double.parseDouble(valueEditText.getText().toString());
+                        } catch (final NumberFormatException e) {
+                            Toast.makeText(getApplicationContext(), "Enter a price or a percent change.",
+                                    Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                    }
+                    final TickFetcher tickFetcher = TickFetcher.getInstance();
+                    tickFetcher.getAlertEngine().add(stockSymbol, type, value);
+                    tickFetcher.saveAlerts();
+                    Toast.makeText(getApplicationContext(), "Alert added for " + stockSymbol + ".",
+                            Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Removes every alert on the current stock symbol that hasn't fired yet.
+     */
+    private void removeAlerts() {
+        final TickFetcher tickFetcher = TickFetcher.getInstance();
+        final List<Alert> alerts = tickFetcher.getAlertEngine().getAlerts(stockSymbolEditText.getText().toString());
+        for (final Alert alert : alerts) {
+            tickFetcher.getAlertEngine().remove(alert);
+        }
+        tickFetcher.saveAlerts();
+        Toast.makeText(getApplicationContext(), "Removed " + alerts.size() + " alerts.", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Show the p50, p95 and p99 of every timed stage over the chart, in milliseconds.
+     */
+    private void updatePerformanceOverlay() {
+        final StringBuilder text = new StringBuilder("stage                 n    p50    p95    p99");
+        for (final Map.Entry<String, Metrics.Stage> stage : Metrics.getInstance().getStages().entrySet()) {
+            final Histogram latency = stage.getValue().getLatency();
+            text.append(String.format(Locale.US, "\n%-17s %5d %6.1f %6.1f %6.1f", stage.getKey(), latency.getCount(),
+                    latency.getPercentile(50) / 1e6, latency.getPercentile(95) / 1e6, latency.getPercentile(99) / 1e6));
         }
+        performanceOverlay.setText(text);
+    }
+
+    /**
+     * Write the stage timings to a file in the app's external files directory, together with the
+     * device they were measured on, so that they can be pulled off field devices and compared.
+     * The file is written on the fetcher's disk thread.
+     */
+    private void exportMetrics() {
+        final File directory = getExternalFilesDir(null);
+        final File file = new File(directory != null ? directory : getFilesDir(),
+                "stox-metrics-" + System.currentTimeMillis() + ".csv");
+        final String device = Build.MANUFACTURER + " " + Build.MODEL + ", Android " + Build.VERSION.RELEASE
+                + " (API " + Build.VERSION.SDK_INT + "), Stox " + BuildConfig.VERSION_NAME;
+        TickFetcher.getInstance().exportMetrics(file, device)
+                .whenCompleteAsync((result, throwable) -> {
+                    if (throwable != null) {
+                        Toast.makeText(getApplicationContext(), "Export FAILED!", Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(getApplicationContext(), "Saved " + file, Toast.LENGTH_LONG).show();
+                    }
+                }, mainThreadExecutor);
+    }
 
-        // then reset the adapter that provides data to the spinner
-        final String[] favorites = favoriteStocks.toArray(new String[favoriteStocks.size()]);
-        final ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                this,
-                R.layout.favorites_spinner_item,
-                favorites
-        );
-        adapter.setDropDownViewResource(R.layout.favorites_spinner_dropdown_item);
-        favoritesSpinner.setAdapter(adapter);
+    /**
+     * Asks whether to export the current symbol or every favorite, compact or as CSV, then writes
+     * their stored one minute bars (and the chart's timeframe, if it isn't one minute) to a file in
+     * the app's external files directory, where Import Data finds it on this or another device.
+     */
+    private void exportSeries() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.actionExportSeries)
+                .setItems(R.array.exportSeriesChoices, (dialog, which) -> {
+                    final List<String> stockSymbols = new ArrayList<>();
+                    if (which < 2) {
+                        if (requestedSymbol != null) {
+                            stockSymbols.add(requestedSymbol);
+                        }
+                    } else if (watchlistStore != null) {
+                        stockSymbols.addAll(watchlistStore.getSymbols(watchlistName));
+                    }
+                    if (stockSymbols.isEmpty()) {
+                        Toast.makeText(getApplicationContext(), "Nothing to export.", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    final boolean csv = which % 2 == 1;
+                    final List<Timeframe> intervals = new ArrayList<>();
+                    intervals.add(Timeframe.ONE_MIN);
+                    if (chartInterval != Timeframe.ONE_MIN) {
+                        intervals.add(chartInterval);
+                    }
+                    final File directory = getExternalFilesDir(null);
+                    final File file = new File(directory != null ? directory : getFilesDir(),
+                            "stox-series-" + System.currentTimeMillis() + (csv ? ".csv" : ".stxa"));
+                    TickFetcher.getInstance().exportSeries(stockSymbols, intervals, file, csv)
+                            .whenCompleteAsync((bars, throwable) -> {
+                                if (throwable != null) {
+                                    Toast.makeText(getApplicationContext(), "Export FAILED!", Toast.LENGTH_SHORT).show();
+                                } else {
+                                    Toast.makeText(getApplicationContext(), "Saved " + bars + " bars to " + file,
+                                            Toast.LENGTH_LONG).show();
+                                }
+                            }, mainThreadExecutor);
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
 
-        // and apply the changes to the shared preferences map
-        sharedPreferences.edit().putStringSet("favorites", favoriteStocks).apply();
+    /**
+     * Lists the exports in the app's external files directory and imports the chosen one, then
+     * redraws the chart from the merged store.
+     */
+    private void importSeries() {
+        final File directory = getExternalFilesDir(null);
+        final File[] files = (directory != null ? directory : getFilesDir()).listFiles(
+                (dir, name) -> name.endsWith(".stxa") || (name.startsWith("stox-series-") && name.endsWith(".csv")));
+        if (files == null || files.length == 0) {
+            Toast.makeText(getApplicationContext(), "No exported data found.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // newest first
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        final String[] names = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            names[i] = files[i].getName();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.actionImportSeries)
+                .setItems(names, (dialog, which) -> TickFetcher.getInstance().importSeries(files[which])
+                        .whenCompleteAsync((stockSymbols, throwable) -> {
+                            if (throwable != null) {
+                                Toast.makeText(getApplicationContext(), "Import FAILED!", Toast.LENGTH_SHORT).show();
+                                return;
+                            }
+                            Toast.makeText(getApplicationContext(), "Imported " + String.join(", ", stockSymbols) + ".",
+                                    Toast.LENGTH_LONG).show();
+                            if (requestedSymbol != null && !isDestroyed()) {
+                                populateChart(requestedSymbol);
+                            }
+                        }, mainThreadExecutor))
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
     }
 
     /**
@@ -411,6 +1119,7 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
     @Override
     public boolean onEditorAction(TextView textView, int actionId, KeyEvent keyEvent) {
         if ((actionId & EditorInfo.IME_MASK_ACTION) != 0) {
+            stockSymbolEditText.dismissDropDown();
             populateChart(textView.getText().toString());
             return true;
         }
@@ -424,7 +1133,13 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
     @Override
     public void onItemSelected(AdapterView<?> adapterView, View view, int i, long l) {
         final String selectedSymbol = favoritesSpinner.getSelectedItem().toString();
-        stockSymbolEditText.setText(selectedSymbol);
+        final boolean initialSelection = !favoritesSpinnerSettled;
+        favoritesSpinnerSettled = true;
+        if (selectedSymbol.equals(requestedSymbol) || (initialSelection && requestedSymbol != null)) {
+            // the spinner's first layout selects a favorite, but showLastSymbol() is already drawing one
+            return;
+        }
+        stockSymbolEditText.setText(selectedSymbol, false);
         populateChart(selectedSymbol);
     }
 
@@ -432,4 +1147,55 @@ public class MainActivity extends AppCompatActivity implements ActivityCompat.On
     public void onNothingSelected(AdapterView<?> adapterView) {
         // do nothing
     }
+
+    /**********************************************************************************
+     * Chart gesture listener methods                                                 *
+     *********************************************************************************/
+    @Override
+    public void onChartGestureEnd(MotionEvent motionEvent, ChartTouchListener.ChartGesture chartGesture) {
+        // re-sample only once the gesture is over, so that zooming and panning stay smooth
+        if (chartModel != null
+                && (chartGesture == ChartTouchListener.ChartGesture.X_ZOOM
+                || chartGesture == ChartTouchListener.ChartGesture.PINCH_ZOOM
+                || chartGesture == ChartTouchListener.ChartGesture.DOUBLE_TAP
+                || chartGesture == ChartTouchListener.ChartGesture.DRAG)) {
+            chartBuilder.setViewport(lineChart.isFullyZoomedOut(), lineChart.getLowestVisibleX(),
+                    lineChart.getHighestVisibleX());
+        }
+    }
+
+    @Override
+    public void onChartGestureStart(MotionEvent motionEvent, ChartTouchListener.ChartGesture chartGesture) {
+        // do nothing
+    }
+
+    @Override
+    public void onChartLongPressed(MotionEvent motionEvent) {
+        // do nothing
+    }
+
+    @Override
+    public void onChartDoubleTapped(MotionEvent motionEvent) {
+        // do nothing
+    }
+
+    @Override
+    public void onChartSingleTapped(MotionEvent motionEvent) {
+        // do nothing
+    }
+
+    @Override
+    public void onChartFling(MotionEvent motionEvent, MotionEvent motionEvent1, float v, float v1) {
+        // do nothing
+    }
+
+    @Override
+    public void onChartScale(MotionEvent motionEvent, float v, float v1) {
+        // do nothing
+    }
+
+    @Override
+    public void onChartTranslate(MotionEvent motionEvent, float v, float v1) {
+        // do nothing
+    }
 }
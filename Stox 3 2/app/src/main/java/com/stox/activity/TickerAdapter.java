@@ -0,0 +1,100 @@
+package com.stox.activity;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import com.stox.R;
+import com.stox.data.Metrics;
+import com.stox.data.TickerIndex;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Type-ahead suggestions for the stock symbol field, searched in the ticker index as the user
+ * types. Filtering runs on the filter's own thread; the index is memory mapped and searched in
+ * place, so a keystroke costs well under a millisecond.
+ */
+class TickerAdapter extends BaseAdapter implements Filterable {
+
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final LayoutInflater inflater;
+    private volatile TickerIndex tickerIndex = TickerIndex.empty();
+    private List<TickerIndex.Listing> listings = Collections.emptyList();
+
+    TickerAdapter(final Context context) {
+        this.inflater = LayoutInflater.from(context);
+    }
+
+    /**
+     * Searches the given index from now on, e.g. once it has been opened or downloaded.
+     */
+    void setTickerIndex(final TickerIndex tickerIndex) {
+        this.tickerIndex = tickerIndex;
+    }
+
+    @Override
+    public int getCount() {
+        return listings.size();
+    }
+
+    @Override
+    public TickerIndex.Listing getItem(final int position) {
+        return listings.get(position);
+    }
+
+    @Override
+    public long getItemId(final int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(final int position, final View convertView, final ViewGroup parent) {
+        final TextView view = convertView != null ? (TextView) convertView
+                : (TextView) inflater.inflate(R.layout.ticker_dropdown_item, parent, false);
+        view.setText(getItem(position).toString());
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return new Filter() {
+            @Override
+            protected FilterResults performFiltering(final CharSequence constraint) {
+                final Metrics.Timer timer = Metrics.getInstance().start("tickers.search");
+                final List<TickerIndex.Listing> found = constraint == null
+                        ? Collections.emptyList()
+                        : tickerIndex.search(constraint.toString(), MAX_SUGGESTIONS);
+                timer.stop();
+                final FilterResults results = new FilterResults();
+                results.values = found;
+                results.count = found.size();
+                return results;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            protected void publishResults(final CharSequence constraint, final FilterResults results) {
+                listings = (List<TickerIndex.Listing>) results.values;
+                if (results.count > 0) {
+                    notifyDataSetChanged();
+                } else {
+                    notifyDataSetInvalidated();
+                }
+            }
+
+            @Override
+            public CharSequence convertResultToString(final Object resultValue) {
+                // the field takes the symbol, the company name is only there to recognise it by
+                return ((TickerIndex.Listing) resultValue).getSymbol();
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.stox.activity;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+
+import com.github.mikephil.charting.charts.LineChart;
+import com.stox.data.Metrics;
+
+/**
+ * The main chart, timing how long it takes to draw itself. Everything else about a chart update
+ * is timed where it happens, but the drawing only happens on the next frame.
+ */
+public class TimedLineChart extends LineChart {
+
+    public TimedLineChart(final Context context) {
+        super(context);
+    }
+
+    public TimedLineChart(final Context context, final AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public TimedLineChart(final Context context, final AttributeSet attrs, final int defStyle) {
+        super(context, attrs, defStyle);
+    }
+
+    @Override
+    protected void onDraw(final Canvas canvas) {
+        final Metrics.Timer timer = Metrics.getInstance().start("chart.draw");
+        super.onDraw(canvas);
+        timer.stop();
+    }
+}
@@ -0,0 +1,160 @@
+package com.stox.activity;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import com.stox.R;
+import com.stox.data.Quote;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The symbols of a watchlist with their latest quotes, for the favorites spinner.
+ *
+ * A new list of symbols is compared with the current one and the spinner is only told to rebuild
+ * its rows if they actually changed; rows keep their ids and quotes across changes. A new quote
+ * only rewrites the text of the views currently showing its symbol, so quotes streaming in for a
+ * long watchlist never rebind the whole list.
+ */
+class WatchlistAdapter extends BaseAdapter {
+
+    private static final class Row {
+        final String stockSymbol;
+        final long id;
+        Quote quote;
+
+        Row(final String stockSymbol, final long id) {
+            this.stockSymbol = stockSymbol;
+            this.id = id;
+        }
+    }
+
+    private final LayoutInflater inflater;
+    private List<Row> rows = new ArrayList<>();
+    private final Map<String, Row> rowsBySymbol = new HashMap<>();
+    // the views bound to each row, the spinner's own and the dropdown's, forgotten once recycled
+    private final Map<TextView, Row> boundViews = new WeakHashMap<>();
+    private long nextId;
+
+    WatchlistAdapter(final Context context) {
+        this.inflater = LayoutInflater.from(context);
+    }
+
+    /**
+     * Shows the given symbols, rebuilding the rows only if they differ from the ones shown.
+     * @param stockSymbols the watchlist's symbols in order
+     * @param quotes the latest quote of each symbol, where there is one
+     * @return true if the rows changed
+     */
+    boolean setSymbols(final List<String> stockSymbols, final Map<String, Quote> quotes) {
+        boolean changed = stockSymbols.size() != rows.size();
+        final List<Row> newRows = new ArrayList<>(stockSymbols.size());
+        final Map<String, Row> oldRows = new HashMap<>(rowsBySymbol);
+        rowsBySymbol.clear();
+        for (int i = 0; i < stockSymbols.size(); i++) {
+            final String stockSymbol = stockSymbols.get(i);
+            Row row = oldRows.get(stockSymbol);
+            if (row == null) {
+                row = new Row(stockSymbol, nextId++);
+            }
+            if (!changed && rows.get(i) != row) {
+                changed = true;
+            }
+            final Quote quote = quotes.get(stockSymbol);
+            if (quote != null) {
+                row.quote = quote;
+            }
+            newRows.add(row);
+            rowsBySymbol.put(stockSymbol, row);
+        }
+        rows = newRows;
+        if (changed) {
+            notifyDataSetChanged();
+        }
+        return changed;
+    }
+
+    /**
+     * Shows a symbol's new quote in the views that show the symbol, if any.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param quote its latest quote
+     */
+    void setQuote(final String stockSymbol, final Quote quote) {
+        final Row row = rowsBySymbol.get(stockSymbol);
+        if (row == null) {
+            return;
+        }
+        row.quote = quote;
+        for (final Map.Entry<TextView, Row> view : boundViews.entrySet()) {
+            if (view.getValue() == row) {
+                bind(view.getKey(), row);
+            }
+        }
+    }
+
+    /**
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @return the symbol's position, or -1 if it isn't shown
+     */
+    int indexOf(final String stockSymbol) {
+        final Row row = stockSymbol == null ? null : rowsBySymbol.get(stockSymbol.trim().toUpperCase(Locale.US));
+        return row == null ? -1 : rows.indexOf(row);
+    }
+
+    @Override
+    public int getCount() {
+        return rows.size();
+    }
+
+    /**
+     * @return the symbol at the position, which is what the spinner's listener reads back
+     */
+    @Override
+    public String getItem(final int position) {
+        return rows.get(position).stockSymbol;
+    }
+
+    @Override
+    public long getItemId(final int position) {
+        return rows.get(position).id;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(final int position, final View convertView, final ViewGroup parent) {
+        return bind(convertView, parent, R.layout.favorites_spinner_item, position);
+    }
+
+    @Override
+    public View getDropDownView(final int position, final View convertView, final ViewGroup parent) {
+        return bind(convertView, parent, R.layout.favorites_spinner_dropdown_item, position);
+    }
+
+    private View bind(final View convertView, final ViewGroup parent, final int layout, final int position) {
+        final TextView view = convertView != null ? (TextView) convertView
+                : (TextView) inflater.inflate(layout, parent, false);
+        final Row row = rows.get(position);
+        boundViews.put(view, row);
+        bind(view, row);
+        return view;
+    }
+
+    private static void bind(final TextView view, final Row row) {
+        final Quote quote = row.quote;
+        view.setText(quote == null ? row.stockSymbol : String.format(Locale.US, "%s  %.2f  %+.2f%%",
+                row.stockSymbol, quote.getLastPrice(), quote.getChangePercent()));
+    }
+}
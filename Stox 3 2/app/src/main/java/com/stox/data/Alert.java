@@ -0,0 +1,78 @@
+package com.stox.data;
+
+/**
+ * A price alert on one symbol. Alerts are one-shot: once an alert has fired it is gone.
+ */
+public final class Alert {
+
+    public enum Type {
+        // the close crosses a price level, in either direction
+        PRICE_CROSS,
+        // the close crosses a percent change since the previous session's close, in either direction
+        PERCENT_MOVE,
+        // the close makes a new high or low of the day, or of the seven days leading up to it
+        NEW_DAY_HIGH,
+        NEW_DAY_LOW,
+        NEW_WEEK_HIGH,
+        NEW_WEEK_LOW
+    }
+
+    private final long id;
+    private final String stockSymbol;
+    private final Type type;
+    private final double value;
+
+    /**
+     * @param id a number that tells alerts with the same symbol, type and value apart
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
+     * @param type what the alert watches for
+     * @param value the price level or percent change, ignored for highs and lows
+     */
+    public Alert(final long id, final String stockSymbol, final Type type, final double value) {
+        this.id = id;
+        this.stockSymbol = stockSymbol;
+        this.type = type;
+        this.value = value;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getStockSymbol() {
+        return stockSymbol;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return a human readable description of what fired the alert, e.g. "AMZN crossed 1850.0"
+     */
+    public String describe() {
+        switch (type) {
+            case PRICE_CROSS:
+                return stockSymbol + " crossed " + (float) value;
+            case PERCENT_MOVE:
+                return stockSymbol + " moved " + (value > 0 ? "+" : "") + (float) value + "%";
+            case NEW_DAY_HIGH:
+                return stockSymbol + " made a new day high";
+            case NEW_DAY_LOW:
+                return stockSymbol + " made a new day low";
+            case NEW_WEEK_HIGH:
+                return stockSymbol + " made a new week high";
+            default:
+                return stockSymbol + " made a new week low";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Alert#" + id + "(" + describe() + ")";
+    }
+}
@@ -0,0 +1,292 @@
+package com.stox.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Evaluates price alerts against incoming one minute bars.
+ *
+ * Each symbol's price and percent alerts are kept in sorted maps keyed by their level, so a bar
+ * that moves the close from one value to another finds the alerts it crossed with a single range
+ * query: O(log n + matches) per bar, however many alerts there are. Highs and lows are checked
+ * against the symbol's day and week statistics, which are kept up to date incrementally.
+ *
+ * Like the other incremental structures, each evaluation only looks at the bars that arrived since
+ * the previous one, plus the newest bar seen in case it was revised. The first evaluation of a
+ * symbol only primes its state, so the history we already had never fires an alert.
+ */
+public class AlertEngine {
+
+    private final Map<String, SymbolAlerts> bySymbol = new HashMap<>();
+    private long nextId = 1;
+
+    /**
+     * Adds a new alert.
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
+     * @param type what the alert watches for
+     * @param value the price level or percent change, ignored for highs and lows
+     * @return the alert
+     */
+    public synchronized Alert add(final String stockSymbol, final Alert.Type type, final double value) {
+        final Alert alert = new Alert(nextId++, normalize(stockSymbol), type, value);
+        index(alert);
+        return alert;
+    }
+
+    /**
+     * Adds alerts that were created earlier, e.g. read back from an AlertStore. An alert whose id
+     * is taken already, by one that was added before these were read back, gets a new id.
+     */
+    public synchronized void addAll(final Collection<Alert> alerts) {
+        final Set<Long> ids = new HashSet<>();
+        for (final Alert alert : getAlerts()) {
+            ids.add(alert.getId());
+        }
+        for (final Alert alert : alerts) {
+            nextId = Math.max(nextId, alert.getId() + 1);
+        }
+        for (final Alert alert : alerts) {
+            index(ids.add(alert.getId()) ? alert
+                    : new Alert(nextId++, alert.getStockSymbol(), alert.getType(), alert.getValue()));
+        }
+    }
+
+    /**
+     * @return false if the alert wasn't there, e.g. because it has fired already
+     */
+    public synchronized boolean remove(final Alert alert) {
+        final SymbolAlerts symbolAlerts = bySymbol.get(alert.getStockSymbol());
+        if (symbolAlerts == null || !symbolAlerts.remove(alert)) {
+            return false;
+        }
+        if (symbolAlerts.isEmpty()) {
+            bySymbol.remove(alert.getStockSymbol());
+        }
+        return true;
+    }
+
+    /**
+     * @return every alert that hasn't fired yet
+     */
+    public synchronized List<Alert> getAlerts() {
+        final List<Alert> alerts = new ArrayList<>();
+        for (final SymbolAlerts symbolAlerts : bySymbol.values()) {
+            symbolAlerts.collect(alerts);
+        }
+        return alerts;
+    }
+
+    /**
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
+     * @return the alerts on the symbol that haven't fired yet
+     */
+    public synchronized List<Alert> getAlerts(final String stockSymbol) {
+        final List<Alert> alerts = new ArrayList<>();
+        final SymbolAlerts symbolAlerts = bySymbol.get(normalize(stockSymbol));
+        if (symbolAlerts != null) {
+            symbolAlerts.collect(alerts);
+        }
+        return alerts;
+    }
+
+    /**
+     * Checks the symbol's bars that arrived since the last evaluation against its alerts.
+     * @param stockSymbol the stock symbol (AMZN, MSFT, etc.)
+     * @param oneMinute the symbol's one minute bars, sorted by ascending timestamp
+     * @return the alerts that fired, they have been removed
+     */
+    public synchronized List<Alert> evaluate(final String stockSymbol, final TickSeries oneMinute) {
+        final List<Alert> fired = new ArrayList<>();
+        final String key = normalize(stockSymbol);
+        final SymbolAlerts symbolAlerts = bySymbol.get(key);
+        if (symbolAlerts == null || oneMinute.isEmpty()) {
+            return fired;
+        }
+        if (oneMinute.getLastTime() < symbolAlerts.statistics.getLastTime()) {
+            // not a newer version of the series we've seen, start over without firing
+            symbolAlerts.resetState();
+        }
+        final boolean primed = symbolAlerts.statistics.getLastTime() != Long.MIN_VALUE;
+        final int from = primed ? oneMinute.indexAtOrAfter(symbolAlerts.statistics.getLastTime()) : 0;
+        for (int i = from; i < oneMinute.size(); i++) {
+            symbolAlerts.update(oneMinute, i, primed ? fired : null);
+        }
+        if (symbolAlerts.isEmpty()) {
+            bySymbol.remove(key);
+        }
+        return fired;
+    }
+
+    private void index(final Alert alert) {
+        SymbolAlerts symbolAlerts = bySymbol.get(alert.getStockSymbol());
+        if (symbolAlerts == null) {
+            symbolAlerts = new SymbolAlerts();
+            bySymbol.put(alert.getStockSymbol(), symbolAlerts);
+        }
+        symbolAlerts.add(alert);
+    }
+
+    private static String normalize(final String stockSymbol) {
+        return stockSymbol.trim().toUpperCase(Locale.US);
+    }
+
+    /**
+     * The alerts on one symbol and what we know about its recent bars.
+     */
+    private static class SymbolAlerts {
+        final NavigableMap<Double, List<Alert>> levels = new TreeMap<>();
+        final NavigableMap<Double, List<Alert>> percentMoves = new TreeMap<>();
+        final Map<Alert.Type, List<Alert>> extremes = new EnumMap<>(Alert.Type.class);
+        final SeriesStatistics statistics = new SeriesStatistics();
+        double lastClose = Double.NaN;
+        // the previous session's close that percent moves are relative to
+        double referenceClose = Double.NaN;
+        long currentDay = Long.MIN_VALUE;
+
+        void add(final Alert alert) {
+            final List<Alert> alerts;
+            switch (alert.getType()) {
+                case PRICE_CROSS:
+                    alerts = levels.computeIfAbsent(alert.getValue(), value -> new ArrayList<>(1));
+                    break;
+                case PERCENT_MOVE:
+                    alerts = percentMoves.computeIfAbsent(alert.getValue(), value -> new ArrayList<>(1));
+                    break;
+                default:
+                    alerts = extremes.computeIfAbsent(alert.getType(), type -> new ArrayList<>(1));
+                    break;
+            }
+            alerts.add(alert);
+        }
+
+        boolean remove(final Alert alert) {
+            switch (alert.getType()) {
+                case PRICE_CROSS:
+                    return remove(levels, alert);
+                case PERCENT_MOVE:
+                    return remove(percentMoves, alert);
+                default:
+                    final List<Alert> alerts = extremes.get(alert.getType());
+                    return alerts != null && alerts.removeIf(other -> other.getId() == alert.getId());
+            }
+        }
+
+        private static boolean remove(final NavigableMap<Double, List<Alert>> index, final Alert alert) {
+            final List<Alert> alerts = index.get(alert.getValue());
+            if (alerts == null || !alerts.removeIf(other -> other.getId() == alert.getId())) {
+                return false;
+            }
+            if (alerts.isEmpty()) {
+                index.remove(alert.getValue());
+            }
+            return true;
+        }
+
+        boolean isEmpty() {
+            if (!levels.isEmpty() || !percentMoves.isEmpty()) {
+                return false;
+            }
+            for (final List<Alert> alerts : extremes.values()) {
+                if (!alerts.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void collect(final List<Alert> into) {
+            for (final List<Alert> alerts : levels.values()) {
+                into.addAll(alerts);
+            }
+            for (final List<Alert> alerts : percentMoves.values()) {
+                into.addAll(alerts);
+            }
+            for (final List<Alert> alerts : extremes.values()) {
+                into.addAll(alerts);
+            }
+        }
+
+        void resetState() {
+            statistics.clear();
+            lastClose = Double.NaN;
+            referenceClose = Double.NaN;
+            currentDay = Long.MIN_VALUE;
+        }
+
+        /**
+         * Moves on to a bar, collecting the alerts it fires unless fired is null.
+         */
+        void update(final TickSeries oneMinute, final int index, final List<Alert> fired) {
+            final long time = oneMinute.getTime(index);
+            final double close = oneMinute.getClose(index);
+            final long day = Math.floorDiv(time, TickSeries.SECONDS_PER_DAY);
+            final boolean sameDay = day == currentDay;
+            if (!sameDay) {
+                // the first session we see has no previous close, its open will have to do
+                referenceClose = Double.isNaN(lastClose) ? oneMinute.getOpen(index) : lastClose;
+                currentDay = day;
+            }
+
+            if (fired != null) {
+                fireCrossed(levels, lastClose, close, fired);
+                fireCrossed(percentMoves, percentChange(lastClose), percentChange(close), fired);
+                // compare with the extremes before this bar is part of them
+                final RollingStatistics dayStatistics = statistics.getDay();
+                final RollingStatistics weekStatistics = statistics.getWeek();
+                if (sameDay && close > dayStatistics.getMax()) {
+                    fireAll(Alert.Type.NEW_DAY_HIGH, fired);
+                }
+                if (sameDay && close < dayStatistics.getMin()) {
+                    fireAll(Alert.Type.NEW_DAY_LOW, fired);
+                }
+                if (close > weekStatistics.getMax()) {
+                    fireAll(Alert.Type.NEW_WEEK_HIGH, fired);
+                }
+                if (close < weekStatistics.getMin()) {
+                    fireAll(Alert.Type.NEW_WEEK_LOW, fired);
+                }
+            }
+
+            statistics.update(time, close, oneMinute.getVolume(index));
+            lastClose = close;
+        }
+
+        private double percentChange(final double close) {
+            return (close / referenceClose - 1) * 100;
+        }
+
+        /**
+         * Fires and removes the alerts with levels the close passed on its way from one value to
+         * the other: above the old value up to and including the new one, or the other way round.
+         */
+        private static void fireCrossed(final NavigableMap<Double, List<Alert>> index, final double from,
+                                        final double to, final List<Alert> fired) {
+            if (index.isEmpty() || Double.isNaN(from) || Double.isNaN(to) || from == to) {
+                return;
+            }
+            final NavigableMap<Double, List<Alert>> crossed = from < to
+                    ? index.subMap(from, false, to, true)
+                    : index.subMap(to, true, from, false);
+            for (final List<Alert> alerts : crossed.values()) {
+                fired.addAll(alerts);
+            }
+            crossed.clear();
+        }
+
+        private void fireAll(final Alert.Type type, final List<Alert> fired) {
+            final List<Alert> alerts = extremes.remove(type);
+            if (alerts != null) {
+                fired.addAll(alerts);
+            }
+        }
+    }
+}
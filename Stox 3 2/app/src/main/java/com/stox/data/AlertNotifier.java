@@ -0,0 +1,51 @@
+package com.stox.data;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+
+import java.util.List;
+
+/**
+ * Posts a notification for each alert that fires. Tapping it opens the app.
+ */
+public class AlertNotifier {
+
+    private static final String CHANNEL_ID = "alerts";
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+
+    public AlertNotifier(final Context context) {
+        this.context = context.getApplicationContext();
+        notificationManager = (NotificationManager) this.context.getSystemService(Context.NOTIFICATION_SERVICE);
+        // creating a channel that exists already does nothing
+        notificationManager.createNotificationChannel(
+                new NotificationChannel(CHANNEL_ID, "Price alerts", NotificationManager.IMPORTANCE_HIGH));
+    }
+
+    /**
+     * @param fired the alerts that fired
+     * @param tickSeries the bars that fired them, for the latest close
+     */
+    public void notify(final List<Alert> fired, final TickSeries tickSeries) {
+        final Intent launchIntent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+        final PendingIntent contentIntent = launchIntent == null ? null
+                : PendingIntent.getActivity(context, 0, launchIntent, PendingIntent.FLAG_UPDATE_CURRENT);
+        final float lastClose = (float) tickSeries.getClose(tickSeries.size() - 1);
+        for (final Alert alert : fired) {
+            final Notification notification = new Notification.Builder(context, CHANNEL_ID)
+                    .setSmallIcon(context.getApplicationInfo().icon)
+                    .setContentTitle(alert.describe())
+                    .setContentText(alert.getStockSymbol() + " last at " + lastClose)
+                    .setContentIntent(contentIntent)
+                    .setAutoCancel(true)
+                    .build();
+            // ids only have to tell alerts apart, and an alert fires once
+            notificationManager.notify((int) alert.getId(), notification);
+        }
+    }
+}
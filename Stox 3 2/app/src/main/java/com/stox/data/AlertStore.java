@@ -0,0 +1,79 @@
+package com.stox.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps the alerts that haven't fired yet in a small binary file: a header with the number of
+ * alerts, then each alert's id, symbol, type and value. The file is rewritten as a whole.
+ */
+public class AlertStore {
+
+    private static final int MAGIC = 0x414C5431; // "ALT1"
+
+    private final File file;
+
+    public AlertStore(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the stored alerts, empty if nothing is stored
+     */
+    public synchronized List<Alert> read() throws IOException {
+        final List<Alert> alerts = new ArrayList<>();
+        if (!file.exists()) {
+            return alerts;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not an alert file: " + file);
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final long id = in.readLong();
+                final String stockSymbol = in.readUTF();
+                final String type = in.readUTF();
+                final double value = in.readDouble();
+                try {
+                    alerts.add(new Alert(id, stockSymbol, Alert.Type.valueOf(type), value));
+                } catch (final IllegalArgumentException e) {
+                    // a type this version doesn't know, skip it
+                }
+            }
+        }
+        return alerts;
+    }
+
+    /**
+     * Replaces the stored alerts. The new file is written next to the old one and renamed over it,
+     * so a crash halfway leaves the old alerts intact.
+     * @param alerts the alerts to store
+     */
+    public synchronized void write(final Collection<Alert> alerts) throws IOException {
+        final File temporary = new File(file.getPath() + ".tmp");
+        file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(alerts.size());
+            for (final Alert alert : alerts) {
+                out.writeLong(alert.getId());
+                out.writeUTF(alert.getStockSymbol());
+                out.writeUTF(alert.getType().name());
+                out.writeDouble(alert.getValue());
+            }
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("could not replace " + file);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.stox.data;
+
+import org.patriques.input.timeseries.OutputSize;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * Downloads time series from AlphaVantage and parses them straight into a TickSeries, stopping
+ * once the parser reaches bars we already have.
+ */
+public class AlphaVantageSource implements MarketDataSource {
+
+    private static final String BASE_URL = "https://www.alphavantage.co/query";
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String apiKey;
+
+    /**
+     * @param httpClient the shared HTTP client
+     * @param apiKey the AlphaVantage API key
+     */
+    public AlphaVantageSource(final HttpClient httpClient, final String apiKey) {
+        this(httpClient, BASE_URL, apiKey);
+    }
+
+    AlphaVantageSource(final HttpClient httpClient, final String baseUrl, final String apiKey) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Downloads the bars for the given series. A response that is the same as the last one for
+     * this series and output size comes back empty, since we already have its bars.
+     */
+    @Override
+    public TickSeries fetch(final SeriesKey key, final OutputSize outputSize, final long since) throws IOException {
+        final TickSeries series = httpClient.getIfChanged(urlFor(key, outputSize),
+                body -> TimeSeriesParser.parseJson(body, since));
+        return series != null ? series : TickSeries.empty();
+    }
+
+    /**
+     * Forgets the last responses for both output sizes of the given series.
+     */
+    @Override
+    public void forget(final SeriesKey key) {
+        try {
+            httpClient.forget(urlFor(key, OutputSize.COMPACT));
+            httpClient.forget(urlFor(key, OutputSize.FULL));
+        } catch (final UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Downloads every listed symbol and its company name.
+     * @return the listings, or null if they are the same as the last time they were downloaded
+     */
+    public TickerIndex.Builder fetchListings() throws IOException {
+        return httpClient.getIfChanged(listingsUrl(), body -> new TickerIndex.Builder().addListingCsv(body));
+    }
+
+    /**
+     * Makes the next fetchListings() return the listings even if they haven't changed.
+     */
+    public void forgetListings() {
+        httpClient.forget(listingsUrl());
+    }
+
+    @Override
+    public boolean isRateLimited() {
+        return true;
+    }
+
+    @Override
+    public double getSpeed() {
+        return 1;
+    }
+
+    private String listingsUrl() {
+        return baseUrl + "?function=LISTING_STATUS&apikey=" + apiKey;
+    }
+
+    private String urlFor(final SeriesKey key, final OutputSize outputSize) throws UnsupportedEncodingException {
+        final Timeframe interval = key.getInterval();
+        final StringBuilder url = new StringBuilder(baseUrl)
+                .append("?function=").append(Intervals.toFunction(interval))
+                .append("&symbol=").append(URLEncoder.encode(key.getStockSymbol(), "UTF-8"));
+        if (Intervals.toSeconds(interval) < TickSeries.SECONDS_PER_DAY) {
+            url.append("&interval=").append(Intervals.toQueryValue(interval));
+        }
+        return url.append("&outputsize=").append(outputSize == OutputSize.FULL ? "full" : "compact")
+                .append("&datatype=json")
+                .append("&apikey=").append(apiKey)
+                .toString();
+    }
+}
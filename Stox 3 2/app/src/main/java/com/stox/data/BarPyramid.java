@@ -0,0 +1,137 @@
+package com.stox.data;
+
+import java.io.IOException;
+
+/**
+ * Coarser bars rolled up locally from one minute bars, so that switching the chart's timeframe
+ * is a read from the tick store rather than another API call.
+ *
+ * Each level is aggregated from the level below it: 1 min, 5 min, 15 min, 30 min, 60 min and daily.
+ * Intraday bars are labelled with the end of their bucket like AlphaVantage's (the 5 minute bar at
+ * 09:35 covers the one minute bars 09:31 to 09:35), and hours end on the hour. Daily bars are
+ * labelled with the start of their day, which ends with the bar labelled midnight. Every bucket
+ * lies within a single day, so bringing the levels up to date only means rolling up the days that
+ * changed.
+ */
+public class BarPyramid {
+
+    // the levels above one minute, finest first
+    private static final Timeframe[] LEVELS = {
+            Timeframe.FIVE_MIN, Timeframe.FIFTEEN_MIN, Timeframe.THIRTY_MIN, Timeframe.SIXTY_MIN, Timeframe.DAILY
+    };
+
+    private final TickStore store;
+
+    public BarPyramid(final TickStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @return true if bars at the interval are rolled up from one minute bars
+     */
+    public static boolean isLevel(final Timeframe interval) {
+        for (final Timeframe level : LEVELS) {
+            if (level == interval) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rolls changed one minute bars up into every level and stores the levels' new bars.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param oneMinute every one minute bar of the symbol
+     * @param changedFrom timestamp of the first one minute bar that was added or revised
+     */
+    public void update(final String stockSymbol, final TickSeries oneMinute, final long changedFrom) throws IOException {
+        if (oneMinute.isEmpty()) {
+            return;
+        }
+        final long dayStart = bucketOf(changedFrom, Timeframe.DAILY);
+        // the first bar of the day is the one that ends a minute after midnight
+        TickSeries finer = oneMinute.slice(oneMinute.indexAtOrAfter(dayStart + 1), oneMinute.size());
+        for (final Timeframe level : LEVELS) {
+            final TickSeries coarser = aggregate(finer, level);
+            store.merge(new SeriesKey(stockSymbol, level), coarser);
+            finer = coarser;
+        }
+    }
+
+    /**
+     * Reads a level, first rolling it up from scratch if it doesn't end where the one minute bars
+     * do, e.g. because the one minute bars were stored before the levels existed.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param level one of the levels, see isLevel()
+     * @param oneMinute every one minute bar of the symbol
+     * @return the level's bars sorted by ascending timestamp
+     */
+    public TickSeries read(final String stockSymbol, final Timeframe level, final TickSeries oneMinute) throws IOException {
+        final SeriesKey key = new SeriesKey(stockSymbol, level);
+        final TickSeries stored = store.read(key);
+        if (oneMinute.isEmpty()
+                || (!stored.isEmpty() && stored.getLastTime() == bucketOf(oneMinute.getLastTime(), level))) {
+            return stored;
+        }
+        update(stockSymbol, oneMinute, oneMinute.getTime(0));
+        return store.read(key);
+    }
+
+    /**
+     * Rolls one minute bars all the way up to a level without storing anything.
+     * @param oneMinute one minute bars
+     * @param level one of the levels, see isLevel()
+     * @return the level's bars
+     */
+    public static TickSeries rollUp(final TickSeries oneMinute, final Timeframe level) {
+        TickSeries finer = oneMinute;
+        for (final Timeframe coarser : LEVELS) {
+            finer = aggregate(finer, coarser);
+            if (coarser == level) {
+                return finer;
+            }
+        }
+        throw new IllegalArgumentException("not a level: " + level);
+    }
+
+    /**
+     * Rolls bars up into bars of a coarser interval.
+     * @param finer bars of an interval that divides the coarser one
+     * @param interval the coarser interval
+     * @return one bar per bucket that holds any of the finer bars
+     */
+    static TickSeries aggregate(final TickSeries finer, final Timeframe interval) {
+        final int size = finer.size();
+        final TickSeries.Builder builder = new TickSeries.Builder(size / 2);
+        int i = 0;
+        while (i < size) {
+            final long bucket = bucketOf(finer.getTime(i), interval);
+            final double open = finer.getOpen(i);
+            double high = finer.getHigh(i);
+            double low = finer.getLow(i);
+            double close = finer.getClose(i);
+            long volume = finer.getVolume(i);
+            for (i++; i < size && bucketOf(finer.getTime(i), interval) == bucket; i++) {
+                high = Math.max(high, finer.getHigh(i));
+                low = Math.min(low, finer.getLow(i));
+                close = finer.getClose(i);
+                volume += finer.getVolume(i);
+            }
+            builder.add(bucket, open, high, low, close, volume);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the label of the bucket the bar with the given timestamp falls into
+     */
+    static long bucketOf(final long time, final Timeframe interval) {
+        if (interval == Timeframe.DAILY) {
+            // bars are labelled with their end, so one labelled midnight still belongs to the day before
+            return Math.floorDiv(time - 1, TickSeries.SECONDS_PER_DAY) * TickSeries.SECONDS_PER_DAY;
+        }
+        final long seconds = Intervals.toSeconds(interval);
+        return -Math.floorDiv(-time, seconds) * seconds;
+    }
+}
@@ -0,0 +1,52 @@
+package com.stox.data;
+
+/**
+ * Bollinger bands: the simple moving average of the last period closes, and bands a number of
+ * (population) standard deviations above and below it.
+ */
+public class BollingerBands extends Indicator {
+
+    public static final int MIDDLE_BAND = 0;
+    public static final int UPPER_BAND = 1;
+    public static final int LOWER_BAND = 2;
+
+    private final int period;
+    private final double width;
+    private final ClosingWindow window;
+
+    /**
+     * @param period the number of bars to average
+     * @param width the distance of the bands from the average, in standard deviations
+     */
+    public BollingerBands(final int period, final double width) {
+        super("BB(" + period + ", " + (float) width + ")", true, "BB(" + period + ")", "Upper band", "Lower band");
+        this.period = period;
+        this.width = width;
+        window = new ClosingWindow(period - 1);
+    }
+
+    @Override
+    void commit(final double close) {
+        window.add(close);
+    }
+
+    @Override
+    double value(final int line, final double close) {
+        if (!window.isFull()) {
+            return Double.NaN;
+        }
+        final double mean = (window.getSum() + close) / period;
+        if (line == MIDDLE_BAND) {
+            return mean;
+        }
+        final double variance = (window.getSumOfSquares() + close * close) / period - mean * mean;
+        // cancellation in the running sums can leave a tiny negative variance
+        final double deviation = width * Math.sqrt(Math.max(0, variance));
+        return line == UPPER_BAND ? mean + deviation : mean - deviation;
+    }
+
+    @Override
+    void reset() {
+        window.clear();
+    }
+}
@@ -0,0 +1,55 @@
+package com.stox.data;
+
+/**
+ * The last few committed closes of a fixed size window, with their running sum and sum of squares.
+ * Indicators over period bars keep period - 1 closes here, the newest bar is always pending.
+ */
+class ClosingWindow {
+
+    private final double[] closes;
+    private int head;
+    private int count;
+    private double sum;
+    private double sumOfSquares;
+
+    ClosingWindow(final int capacity) {
+        closes = new double[capacity];
+    }
+
+    void add(final double close) {
+        if (closes.length == 0) {
+            return;
+        }
+        if (count == closes.length) {
+            final double oldest = closes[head];
+            sum -= oldest;
+            sumOfSquares -= oldest * oldest;
+            closes[head] = close;
+            head = (head + 1) % closes.length;
+        } else {
+            closes[(head + count) % closes.length] = close;
+            count++;
+        }
+        sum += close;
+        sumOfSquares += close * close;
+    }
+
+    boolean isFull() {
+        return count == closes.length;
+    }
+
+    double getSum() {
+        return sum;
+    }
+
+    double getSumOfSquares() {
+        return sumOfSquares;
+    }
+
+    void clear() {
+        head = 0;
+        count = 0;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+}
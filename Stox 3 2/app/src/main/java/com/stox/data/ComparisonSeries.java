@@ -0,0 +1,55 @@
+package com.stox.data;
+
+/**
+ * One symbol of a comparison chart, aligned onto another symbol's time grid and expressed as the
+ * percent change since the first grid point it has a price for.
+ *
+ * The alignment is a merge-join: grid times are fed in ascending order and a cursor walks forward
+ * through the symbol's bars, so aligning a whole grid costs one pass over both. Each grid point
+ * takes the close of the symbol's last bar at or before it, which fills gaps where the symbol
+ * didn't trade in a minute the grid's symbol did.
+ */
+public class ComparisonSeries {
+
+    private final TickSeries tickSeries;
+    // index of the first bar the join hasn't passed yet
+    private int cursor;
+    private double lastClose = Double.NaN;
+    private double referenceClose = Double.NaN;
+
+    public ComparisonSeries(final TickSeries tickSeries) {
+        this.tickSeries = tickSeries;
+    }
+
+    public TickSeries getTickSeries() {
+        return tickSeries;
+    }
+
+    /**
+     * Advances the join to the given grid time.
+     * @param gridTime the next grid time, not before the previous one
+     * @return the percent change at that time, NaN if the symbol has no bar at or before it
+     */
+    public double percentChangeAt(final long gridTime) {
+        final int size = tickSeries.size();
+        while (cursor < size && tickSeries.getTime(cursor) <= gridTime) {
+            lastClose = tickSeries.getClose(cursor++);
+        }
+        if (Double.isNaN(lastClose)) {
+            return Double.NaN;
+        }
+        if (Double.isNaN(referenceClose)) {
+            referenceClose = lastClose;
+        }
+        return (lastClose / referenceClose - 1) * 100;
+    }
+
+    /**
+     * Starts the join over, for a new grid.
+     */
+    public void reset() {
+        cursor = 0;
+        lastClose = Double.NaN;
+        referenceClose = Double.NaN;
+    }
+}
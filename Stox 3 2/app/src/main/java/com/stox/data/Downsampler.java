@@ -0,0 +1,90 @@
+package com.stox.data;
+
+/**
+ * Picks the bars worth drawing when a series has more bars than the chart has pixels, using
+ * Largest-Triangle-Three-Buckets: the range is split into buckets and from each bucket the bar that
+ * forms the largest triangle with the previously picked bar and the next bucket's average is kept.
+ * That preserves the visual shape, peaks and troughs included, with a fraction of the points.
+ */
+public final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * Downsamples the closes of the bars in [from, to).
+     * @param tickSeries the series to sample
+     * @param from the first bar of the range
+     * @param to one past the last bar of the range
+     * @param threshold the most bars to pick, at least 2; the first and last bar are always picked
+     * @param out receives the indices of the picked bars in ascending order, starting at offset
+     * @param offset where in out to start writing
+     * @return offset plus the number of indices written
+     */
+    public static int largestTriangleThreeBuckets(final TickSeries tickSeries, final int from, final int to,
+                                                  final int threshold, final int[] out, final int offset) {
+        final int count = to - from;
+        int written = offset;
+        if (count <= 0) {
+            return written;
+        }
+        if (count <= threshold) {
+            for (int i = from; i < to; i++) {
+                out[written++] = i;
+            }
+            return written;
+        }
+        if (threshold < 3) {
+            out[written++] = from;
+            out[written++] = to - 1;
+            return written;
+        }
+
+        // the first and last bar get buckets of their own, the rest share threshold - 2 buckets
+        final double bucketSize = (double) (count - 2) / (threshold - 2);
+        int picked = from;
+        out[written++] = picked;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            final int bucketStart = from + 1 + (int) (bucket * bucketSize);
+            final int bucketEnd = from + 1 + (int) ((bucket + 1) * bucketSize);
+
+            // average of the next bucket, or the last bar for the final bucket
+            final int nextStart = bucketEnd;
+            final int nextEnd = Math.min(from + 1 + (int) ((bucket + 2) * bucketSize), to - 1);
+            double averageX = 0;
+            double averageY = 0;
+            if (nextStart >= nextEnd) {
+                averageX = tickSeries.getTime(to - 1);
+                averageY = tickSeries.getClose(to - 1);
+            } else {
+                // relative to the picked bar's time so the products stay small
+                for (int i = nextStart; i < nextEnd; i++) {
+                    averageX += tickSeries.getTime(i) - tickSeries.getTime(picked);
+                    averageY += tickSeries.getClose(i);
+                }
+                averageX = averageX / (nextEnd - nextStart) + tickSeries.getTime(picked);
+                averageY /= nextEnd - nextStart;
+            }
+
+            final double pickedX = tickSeries.getTime(picked);
+            final double pickedY = tickSeries.getClose(picked);
+            double maxArea = -1;
+            int next = bucketStart;
+            for (int i = bucketStart; i < bucketEnd; i++) {
+                // twice the triangle's area, the factor doesn't matter for the comparison
+                final double area = Math.abs((pickedX - averageX) * (tickSeries.getClose(i) - pickedY)
+                        - (pickedX - tickSeries.getTime(i)) * (averageY - pickedY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+            picked = next;
+            out[written++] = picked;
+        }
+
+        out[written++] = to - 1;
+        return written;
+    }
+}
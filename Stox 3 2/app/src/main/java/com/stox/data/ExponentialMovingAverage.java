@@ -0,0 +1,30 @@
+package com.stox.data;
+
+/**
+ * The exponential moving average of the closes, seeded with the simple average of the first
+ * period bars.
+ */
+public class ExponentialMovingAverage extends Indicator {
+
+    private final ExponentialSmoother smoother;
+
+    public ExponentialMovingAverage(final int period) {
+        super("EMA(" + period + ")", true);
+        smoother = ExponentialSmoother.forPeriod(period);
+    }
+
+    @Override
+    void commit(final double close) {
+        smoother.commit(close);
+    }
+
+    @Override
+    double value(final int line, final double close) {
+        return smoother.valueWith(close);
+    }
+
+    @Override
+    void reset() {
+        smoother.reset();
+    }
+}
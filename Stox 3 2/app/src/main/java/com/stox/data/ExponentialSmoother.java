@@ -0,0 +1,63 @@
+package com.stox.data;
+
+/**
+ * Exponential smoothing seeded with the simple average of the first period values, the building
+ * block of EMA, MACD and (with Wilder's factor of 1 / period) RSI.
+ */
+class ExponentialSmoother {
+
+    private final int period;
+    private final double alpha;
+    private int count;
+    private double sum;
+    private double smoothed = Double.NaN;
+
+    ExponentialSmoother(final int period, final double alpha) {
+        this.period = period;
+        this.alpha = alpha;
+    }
+
+    /**
+     * The usual EMA smoothing factor for a period, 2 / (period + 1).
+     */
+    static ExponentialSmoother forPeriod(final int period) {
+        return new ExponentialSmoother(period, 2.0 / (period + 1));
+    }
+
+    void commit(final double value) {
+        if (count < period) {
+            sum += value;
+            if (++count == period) {
+                smoothed = sum / period;
+            }
+        } else {
+            smoothed += alpha * (value - smoothed);
+        }
+    }
+
+    /**
+     * @return the smoothed value after the committed values, NaN before period of them
+     */
+    double getValue() {
+        return smoothed;
+    }
+
+    /**
+     * @return what the smoothed value would be if the given value were committed next
+     */
+    double valueWith(final double value) {
+        if (count < period - 1) {
+            return Double.NaN;
+        }
+        if (count == period - 1) {
+            return (sum + value) / period;
+        }
+        return smoothed + alpha * (value - smoothed);
+    }
+
+    void reset() {
+        count = 0;
+        sum = 0;
+        smoothed = Double.NaN;
+    }
+}
@@ -0,0 +1,108 @@
+package com.stox.data;
+
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs network fetches in priority order, no faster than the rate limiter allows. Tasks that don't
+ * call a rate limited API skip the rate limiter.
+ *
+ * Queued tasks wait in a priority queue. A dispatcher thread waits for the rate limiter to grant a
+ * call and only then hands the highest priority task at that moment to the worker pool, so a fetch
+ * the user is waiting for overtakes a batch of background refreshes even if it arrives last.
+ */
+class FetchScheduler {
+
+    /**
+     * A unit of work for the scheduler. Higher priorities run first, equal priorities in submission order.
+     */
+    abstract static class Task implements Runnable, Comparable<Task> {
+        volatile int priority;
+        long sequence;
+
+        Task(final int priority) {
+            this.priority = priority;
+        }
+
+        /**
+         * @return false if the task doesn't call a rate limited API and can run right away
+         */
+        boolean isRateLimited() {
+            return true;
+        }
+
+        @Override
+        public int compareTo(final Task other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final RateLimiter rateLimiter;
+    private final int maxQueued;
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final ExecutorService workers;
+    private final ThreadFactory threadFactory;
+    private long nextSequence;
+    private Thread dispatcher;
+
+    FetchScheduler(final RateLimiter rateLimiter, final int workerCount, final int maxQueued,
+                   final ThreadFactory threadFactory) {
+        this.rateLimiter = rateLimiter;
+        this.maxQueued = maxQueued;
+        this.threadFactory = threadFactory;
+        this.workers = Executors.newFixedThreadPool(workerCount, threadFactory);
+    }
+
+    /**
+     * Queues a task.
+     * @throws RejectedExecutionException if too many tasks are already waiting
+     */
+    synchronized void submit(final Task task) {
+        if (queue.size() >= maxQueued) {
+            throw new RejectedExecutionException("too many fetches waiting");
+        }
+        task.sequence = nextSequence++;
+        queue.add(task);
+        if (dispatcher == null) {
+            dispatcher = threadFactory.newThread(this::dispatch);
+            dispatcher.start();
+        }
+    }
+
+    /**
+     * Raises the priority of a task that is still waiting. Has no effect on a running task.
+     */
+    synchronized void raisePriority(final Task task, final int priority) {
+        if (priority > task.priority && queue.remove(task)) {
+            task.priority = priority;
+            queue.add(task);
+        }
+    }
+
+    private void dispatch() {
+        try {
+            while (true) {
+                // don't spend a token while there's nothing to do
+                final Task waiting = queue.take();
+                if (!waiting.isRateLimited()) {
+                    workers.execute(waiting);
+                    continue;
+                }
+                rateLimiter.acquire();
+                // something more important may have arrived while we waited for the token
+                queue.add(waiting);
+                workers.execute(queue.take());
+            }
+        } catch (final InterruptedException e) {
+            Log.w("SCHEDULER", "fetch dispatcher interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.stox.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A small HTTP GET client shared by every fetch, so that connections are kept alive and reused
+ * between calls instead of being set up afresh each time.
+ *
+ * Responses are requested gzip compressed and parsed as they stream in. Each URL remembers the
+ * ETag and Last-Modified of its last response, so the server can tell us a response hasn't
+ * changed, and a hash of its body, so a body the server sent again anyway is still recognised. Connection failures and server errors are retried with exponential backoff and
+ * full jitter.
+ */
+public class HttpClient {
+
+    /**
+     * Turns a response body into a result.
+     */
+    public interface BodyReader<T> {
+        T read(Reader body) throws IOException;
+    }
+
+    // upper bound for a single backoff delay
+    private static final long MAX_RETRY_DELAY_MILLIS = 30 * 1000;
+
+    private final int timeoutMillis;
+    private final int maxRetries;
+    private final long retryBaseMillis;
+    // validators of the last successfully read response per URL
+    private final ConcurrentMap<String, Validators> validators = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong unchangedCount = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * @param timeoutMillis connect and read timeout of each attempt
+     * @param maxRetries how many times a failed attempt is repeated
+     * @param retryBaseMillis the first retry waits up to this long, each further one twice as long
+     */
+    public HttpClient(final int timeoutMillis, final int maxRetries, final long retryBaseMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxRetries = maxRetries;
+        this.retryBaseMillis = retryBaseMillis;
+    }
+
+    /**
+     * GETs the given URL and reads the body, unless it is the same as the last time.
+     * @param url the URL to get
+     * @param bodyReader reads the response body, called unless the server said it hasn't changed
+     * @return the body reader's result, or null if the server said the response hasn't changed
+     *         or the body hashes to the same value as the last one read successfully
+     * @throws IOException if every attempt failed, or the body reader threw
+     */
+    public <T> T getIfChanged(final String url, final BodyReader<T> bodyReader) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return attempt(url, bodyReader);
+            } catch (final RetryableException e) {
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                retryCount.incrementAndGet();
+                sleep(ThreadLocalRandom.current().nextLong(retryDelayMillis(attempt) + 1));
+            }
+        }
+    }
+
+    private <T> T attempt(final String url, final BodyReader<T> bodyReader) throws IOException {
+        requestCount.incrementAndGet();
+        final Validators previous = validators.get(url);
+        final HttpURLConnection connection;
+        final int status;
+        // connecting, sending the request and waiting for the server to answer
+        final Metrics.Timer headersTimer = Metrics.getInstance().start("http.headers");
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            // asking for gzip ourselves means decompressing ourselves, on Android as on the JVM
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (previous != null && previous.etag != null) {
+                connection.setRequestProperty("If-None-Match", previous.etag);
+            }
+            if (previous != null && previous.lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", previous.lastModified);
+            }
+            status = connection.getResponseCode();
+        } catch (final IOException e) {
+            throw new RetryableException("request failed: " + e.getMessage(), e);
+        }
+        headersTimer.stop();
+
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            connection.getInputStream().close();
+            unchangedCount.incrementAndGet();
+            return null;
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            final InputStream error = connection.getErrorStream();
+            if (error != null) {
+                // read to the end so the connection can go back to the pool
+                drain(error);
+            }
+            final String message = "HTTP " + status;
+            if (status >= 500) {
+                throw new RetryableException(message, null);
+            }
+            throw new IOException(message);
+        }
+
+        // the body is parsed as it arrives and hashed on the way, without a copy of it in between
+        final MessageDigest digest = newDigest();
+        final T result;
+        final Metrics.Timer readTimer = Metrics.getInstance().start("http.read");
+        try (CountingInputStream wire = new CountingInputStream(connection.getInputStream())) {
+            final InputStream decoded;
+            try {
+                decoded = "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(wire) : wire;
+            } catch (final IOException e) {
+                throw new RetryableException("reading response failed: " + e.getMessage(), e);
+            }
+            final InputStream body = new DigestInputStream(new ResponseInputStream(decoded), digest);
+            result = bodyReader.read(new InputStreamReader(body, StandardCharsets.UTF_8));
+            // the reader may stop early, the hash has to cover the whole body
+            readToEnd(body);
+            bytesReceived.addAndGet(wire.count);
+        }
+        readTimer.stop();
+
+        // only remember bodies that were read successfully, an error message must not look unchanged
+        final byte[] hash = digest.digest();
+        validators.put(url, new Validators(connection.getHeaderField("ETag"),
+                connection.getHeaderField("Last-Modified"), hash));
+        if (previous != null && Arrays.equals(previous.hash, hash)) {
+            unchangedCount.incrementAndGet();
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Forgets what the last response for the given URL looked like, so that the next call reads
+     * it again. For callers that couldn't keep what they read from it.
+     * @param url the URL to forget
+     */
+    public void forget(final String url) {
+        validators.remove(url);
+    }
+
+    /**
+     * @return the number of attempts made, including retries
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of attempts that were retries
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * @return the number of responses that were recognised as unchanged and not read
+     */
+    public long getUnchangedCount() {
+        return unchangedCount.get();
+    }
+
+    /**
+     * @return the number of response body bytes received over the wire, before decompression
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + getRequestCount() + " retries=" + getRetryCount()
+                + " unchanged=" + getUnchangedCount() + " bytes=" + getBytesReceived();
+    }
+
+    private long retryDelayMillis(final int attempt) {
+        return Math.min(MAX_RETRY_DELAY_MILLIS, retryBaseMillis << Math.min(attempt, 20));
+    }
+
+    private static void sleep(final long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting to retry");
+        }
+    }
+
+    private static void drain(final InputStream in) {
+        try (InputStream stream = in) {
+            final byte[] chunk = new byte[1024];
+            while (stream.read(chunk) != -1) {
+                // discard
+            }
+        } catch (final IOException e) {
+            // the connection just won't be reused
+        }
+    }
+
+    private static void readToEnd(final InputStream in) throws IOException {
+        final byte[] chunk = new byte[8192];
+        while (in.read(chunk) != -1) {
+            // only hashed
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * What we know about the last response read from a URL.
+     */
+    private static class Validators {
+        final String etag;
+        final String lastModified;
+        final byte[] hash;
+
+        Validators(final String etag, final String lastModified, final byte[] hash) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * A failure that is worth trying again: no connection, a timeout, or a server error.
+     */
+    private static class RetryableException extends IOException {
+        RetryableException(final String message, final Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Reports failures to read the response as worth retrying, so that they can be told apart
+     * from the body reader's own errors.
+     */
+    private static class ResponseInputStream extends FilterInputStream {
+        ResponseInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (final RetryableException e) {
+                throw e;
+            } catch (final IOException e) {
+                throw new RetryableException("reading response failed: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            try {
+                return super.read(buffer, offset, length);
+            } catch (final RetryableException e) {
+                throw e;
+            } catch (final IOException e) {
+                throw new RetryableException("reading response failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+}
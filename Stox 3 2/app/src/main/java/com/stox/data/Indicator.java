@@ -0,0 +1,106 @@
+package com.stox.data;
+
+/**
+ * A technical indicator over a stream of closing prices, updated in O(1) time per bar with state
+ * that doesn't grow with the stream.
+ *
+ * Like RollingStatistics, the newest bar is held apart until a newer one arrives, because it may
+ * still be revised. Subclasses fold finished bars into their state in commit() and work out their
+ * values from that state plus the pending close, so a revision never has to undo anything.
+ *
+ * An indicator may draw several lines, MACD for instance has its signal line next to itself.
+ */
+public abstract class Indicator {
+
+    private final String name;
+    private final boolean overlay;
+    private final String[] lineNames;
+
+    // the newest bar, not yet committed
+    private boolean hasPending;
+    private long pendingTime;
+    private double pendingClose;
+
+    /**
+     * @param name the indicator's name, e.g. "SMA(20)"
+     * @param overlay whether the indicator's values are prices that can be drawn over the chart
+     * @param lineNames the name of each line, just the indicator's name if it draws only one
+     */
+    Indicator(final String name, final boolean overlay, final String... lineNames) {
+        this.name = name;
+        this.overlay = overlay;
+        this.lineNames = lineNames.length == 0 ? new String[] {name} : lineNames;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true for prices drawn against the chart's price axis, false for oscillators that
+     *         need an axis of their own
+     */
+    public boolean isOverlay() {
+        return overlay;
+    }
+
+    public int getLineCount() {
+        return lineNames.length;
+    }
+
+    public String getLineName(final int line) {
+        return lineNames[line];
+    }
+
+    /**
+     * Adds a bar, or revises the newest bar if the timestamp matches it.
+     * @param time the bar's timestamp in seconds
+     * @param close the bar's closing price
+     * @return false if the bar was older than the newest one and was ignored
+     */
+    public boolean update(final long time, final double close) {
+        if (hasPending) {
+            if (time < pendingTime) {
+                return false;
+            }
+            if (time > pendingTime) {
+                commit(pendingClose);
+            }
+        }
+        hasPending = true;
+        pendingTime = time;
+        pendingClose = close;
+        return true;
+    }
+
+    /**
+     * @param line the line to read, 0 for indicators with a single line
+     * @return the line's value at the newest bar, NaN while the indicator is still warming up
+     */
+    public double getValue(final int line) {
+        return hasPending ? value(line, pendingClose) : Double.NaN;
+    }
+
+    /**
+     * Drops every bar.
+     */
+    public void clear() {
+        hasPending = false;
+        reset();
+    }
+
+    /**
+     * Folds a bar that can't be revised any more into the indicator's state.
+     */
+    abstract void commit(double close);
+
+    /**
+     * @return a line's value with the given close as the newest bar, without changing any state
+     */
+    abstract double value(int line, double close);
+
+    /**
+     * Forgets every committed bar.
+     */
+    abstract void reset();
+}
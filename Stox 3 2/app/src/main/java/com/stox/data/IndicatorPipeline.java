@@ -0,0 +1,74 @@
+package com.stox.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Feeds each bar of a series once to a set of indicators. Bars that the pipeline has already
+ * seen are skipped, except the newest one in case it was revised, so keeping the indicators of a
+ * live chart current costs O(1) per new bar and indicator however long the series is.
+ */
+public class IndicatorPipeline {
+
+    private final List<Indicator> indicators = new ArrayList<>();
+    // timestamp of the newest bar fed to the indicators
+    private long lastTime = Long.MIN_VALUE;
+
+    /**
+     * Adds an indicator. The pipeline starts over, since the new indicator has to see every bar.
+     */
+    public void add(final Indicator indicator) {
+        indicators.add(indicator);
+        clear();
+    }
+
+    /**
+     * @return false if the indicator wasn't in the pipeline
+     */
+    public boolean remove(final Indicator indicator) {
+        return indicators.remove(indicator);
+    }
+
+    public List<Indicator> getIndicators() {
+        return Collections.unmodifiableList(indicators);
+    }
+
+    public boolean isEmpty() {
+        return indicators.isEmpty();
+    }
+
+    /**
+     * @return the timestamp of the newest bar fed to the indicators, Long.MIN_VALUE if there is none
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Feeds a bar to every indicator, or revises the newest bar if the timestamp matches it.
+     * @param time the bar's timestamp in seconds
+     * @param close the bar's closing price
+     * @return false if the bar was older than the newest one and was ignored
+     */
+    public boolean update(final long time, final double close) {
+        if (time < lastTime) {
+            return false;
+        }
+        lastTime = time;
+        for (int i = 0; i < indicators.size(); i++) {
+            indicators.get(i).update(time, close);
+        }
+        return true;
+    }
+
+    /**
+     * Drops every bar from every indicator.
+     */
+    public void clear() {
+        for (final Indicator indicator : indicators) {
+            indicator.clear();
+        }
+        lastTime = Long.MIN_VALUE;
+    }
+}
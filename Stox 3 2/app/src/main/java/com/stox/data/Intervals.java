@@ -0,0 +1,76 @@
+package com.stox.data;
+
+/**
+ * Helpers for working with timeframes and the AlphaVantage requests that serve them.
+ */
+public final class Intervals {
+
+    private Intervals() {
+    }
+
+    /**
+     * Returns the length of one bar at the given interval.
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @return the bar length in seconds, months are counted as 30 days
+     */
+    public static long toSeconds(final Timeframe interval) {
+        switch (interval) {
+            case ONE_MIN:
+                return 60;
+            case FIVE_MIN:
+                return 5 * 60;
+            case FIFTEEN_MIN:
+                return 15 * 60;
+            case THIRTY_MIN:
+                return 30 * 60;
+            case SIXTY_MIN:
+                return 60 * 60;
+            case DAILY:
+                return 24 * 60 * 60;
+            case WEEKLY:
+                return 7 * 24 * 60 * 60;
+            case MONTHLY:
+                return 30 * 24 * 60 * 60;
+            default:
+                throw new IllegalArgumentException("unknown interval " + interval);
+        }
+    }
+
+    /**
+     * Returns the AlphaVantage function that serves bars at the given interval.
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @return the value of the function query parameter
+     */
+    public static String toFunction(final Timeframe interval) {
+        switch (interval) {
+            case DAILY:
+                return "TIME_SERIES_DAILY";
+            case WEEKLY:
+                return "TIME_SERIES_WEEKLY";
+            case MONTHLY:
+                return "TIME_SERIES_MONTHLY";
+            default:
+                return "TIME_SERIES_INTRADAY";
+        }
+    }
+
+    /**
+     * Returns the value AlphaVantage expects in the interval query parameter of intraday requests.
+     * @param interval an intraday interval (ONE_MIN to SIXTY_MIN)
+     * @return the parameter value, e.g. "15min"
+     */
+    public static String toQueryValue(final Timeframe interval) {
+        return toSeconds(interval) / 60 + "min";
+    }
+
+    /**
+     * Returns how long fetched data at the given interval can be served from memory before it is
+     * considered stale. Intraday data goes stale once a new bar could have formed, while daily and
+     * longer bars only move slowly during the trading day, so they are kept for a few hours.
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @return the time to live in milliseconds
+     */
+    public static long timeToLiveMillis(final Timeframe interval) {
+        return Math.min(toSeconds(interval), 4 * 60 * 60) * 1000;
+    }
+}
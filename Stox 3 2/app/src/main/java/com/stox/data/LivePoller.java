@@ -0,0 +1,162 @@
+package com.stox.data;
+
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls one symbol for new bars. Polls are aligned to the interval's bar boundaries (plus a short
+ * grace period for AlphaVantage to publish the bar), and back off exponentially while the data
+ * doesn't change, e.g. outside of trading hours. A sped up replay source is polled correspondingly
+ * more often.
+ */
+public class LivePoller {
+
+    /**
+     * Receives the polled series on the callback executor.
+     */
+    public interface Listener {
+        void onUpdate(TickSeries tickSeries);
+
+        void onError(Throwable throwable);
+    }
+
+    // how long after a bar boundary AlphaVantage has usually published the bar
+    private static final long GRACE_MILLIS = 5000;
+    // while nothing changes we poll every 1, 2, 4, ... up to this many bars
+    private static final int MAX_BACKOFF_BARS = 16;
+    // a replay running as fast as possible is polled back to back, unless it stopped changing
+    private static final long UNTHROTTLED_BACKOFF_MILLIS = 100;
+
+    private final TickFetcher tickFetcher;
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "LivePoller"));
+
+    // everything below is guarded by the poller's lock
+    private ScheduledFuture<?> scheduledPoll;
+    // bumped on every start and stop so that responses for an old subscription are dropped
+    private int generation;
+    private String stockSymbol;
+    private Timeframe interval;
+    private Listener listener;
+    private int backoffBars = 1;
+    private long lastTime = Long.MIN_VALUE;
+    private double lastClose = Double.NaN;
+
+    public LivePoller(final TickFetcher tickFetcher, final Executor callbackExecutor) {
+        this.tickFetcher = tickFetcher;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Starts polling the given symbol, replacing whatever was polled before.
+     * The first poll happens at the next bar boundary.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @param listener receives each polled series
+     */
+    public synchronized void start(final String stockSymbol, final Timeframe interval, final Listener listener) {
+        stop();
+        this.stockSymbol = stockSymbol;
+        this.interval = interval;
+        this.listener = listener;
+        backoffBars = 1;
+        lastTime = Long.MIN_VALUE;
+        lastClose = Double.NaN;
+        schedule(generation);
+    }
+
+    /**
+     * Stops polling. Responses to a poll that is already in flight are dropped.
+     */
+    public synchronized void stop() {
+        generation++;
+        if (scheduledPoll != null) {
+            scheduledPoll.cancel(false);
+            scheduledPoll = null;
+        }
+    }
+
+    /**
+     * Stops polling for good and lets the poller's thread end. The poller can't be started again.
+     */
+    public synchronized void shutdown() {
+        stop();
+        scheduler.shutdownNow();
+    }
+
+    public synchronized boolean isPolling(final String stockSymbol) {
+        return scheduledPoll != null && stockSymbol.equals(this.stockSymbol);
+    }
+
+    private synchronized void schedule(final int pollGeneration) {
+        if (pollGeneration != generation || scheduler.isShutdown()) {
+            return;
+        }
+        final long barMillis = Intervals.toSeconds(interval) * 1000 * backoffBars;
+        final double speed = tickFetcher.getMarketDataSource().getSpeed();
+        final long delay;
+        if (speed == 1) {
+            final long now = System.currentTimeMillis();
+            delay = barMillis - (now % barMillis) + GRACE_MILLIS;
+        } else if (Double.isInfinite(speed)) {
+            delay = backoffBars > 1 ? backoffBars * UNTHROTTLED_BACKOFF_MILLIS : 0;
+        } else {
+            // a replay has no wall-clock bar boundaries to align to
+            delay = (long) (barMillis / speed);
+        }
+        scheduledPoll = scheduler.schedule(() -> poll(pollGeneration), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(final int pollGeneration) {
+        final String symbol;
+        final Timeframe pollInterval;
+        synchronized (this) {
+            if (pollGeneration != generation) {
+                return;
+            }
+            symbol = stockSymbol;
+            pollInterval = interval;
+        }
+
+        tickFetcher.refreshData(symbol, pollInterval, TickFetcher.PRIORITY_VISIBLE).whenComplete((tickSeries, throwable) -> {
+            final Listener pollListener;
+            synchronized (this) {
+                if (pollGeneration != generation) {
+                    return;
+                }
+                pollListener = listener;
+                if (throwable != null || tickSeries.isEmpty()) {
+                    backOff();
+                } else {
+                    final long time = tickSeries.getLastTime();
+                    final double close = tickSeries.getClose(tickSeries.size() - 1);
+                    if (time == lastTime && close == lastClose) {
+                        backOff();
+                    } else {
+                        backoffBars = 1;
+                        lastTime = time;
+                        lastClose = close;
+                    }
+                }
+                schedule(pollGeneration);
+            }
+
+            if (throwable != null) {
+                Log.w("POLLER", "poll failed for " + symbol, throwable);
+                callbackExecutor.execute(() -> pollListener.onError(throwable));
+            } else {
+                callbackExecutor.execute(() -> pollListener.onUpdate(tickSeries));
+            }
+        });
+    }
+
+    private void backOff() {
+        backoffBars = Math.min(backoffBars * 2, MAX_BACKOFF_BARS);
+    }
+}
@@ -0,0 +1,24 @@
+package com.stox.data;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the market data provider answers with an error instead of data, for example for an
+ * unknown symbol or because we went over the API quota.
+ */
+public class MarketDataException extends IOException {
+
+    private final boolean rateLimited;
+
+    public MarketDataException(final String message, final boolean rateLimited) {
+        super(message);
+        this.rateLimited = rateLimited;
+    }
+
+    /**
+     * @return true if the provider turned us away because of its call frequency limits
+     */
+    public boolean isRateLimited() {
+        return rateLimited;
+    }
+}
@@ -0,0 +1,46 @@
+package com.stox.data;
+
+import org.patriques.input.timeseries.OutputSize;
+
+import java.io.IOException;
+
+/**
+ * Where TickFetcher gets its bars from: AlphaVantage in the app, or a ReplaySource that plays back
+ * recorded tick files for load testing without spending API quota.
+ */
+public interface MarketDataSource {
+
+    // number of bars a COMPACT fetch returns at most
+    int COMPACT_SIZE = 100;
+
+    /**
+     * Fetches the bars for the given series. Called on a background thread.
+     * @param key the series to fetch
+     * @param outputSize COMPACT for the latest COMPACT_SIZE bars, FULL for everything available
+     * @param since bars older than this timestamp (TickSeries encoding) are not needed,
+     *              or TimeSeriesParser.ALL
+     * @return the bars sorted by ascending timestamp, empty if nothing changed since the last fetch
+     * @throws MarketDataException if the source doesn't know the series or refused the call
+     * @throws IOException if the fetch failed
+     */
+    TickSeries fetch(SeriesKey key, OutputSize outputSize, long since) throws IOException;
+
+    /**
+     * Makes the next fetch of the given series return its bars even if they haven't changed, for
+     * when the bars of the last fetch could not be stored.
+     * @param key the series to forget
+     */
+    default void forget(final SeriesKey key) {
+    }
+
+    /**
+     * @return true if calls count against a quota and must go through the rate limiter
+     */
+    boolean isRateLimited();
+
+    /**
+     * @return how many bars the source produces in the wall-clock length of one bar: 1 for live
+     *         data, more for a sped up replay, infinity for a replay running as fast as possible
+     */
+    double getSpeed();
+}
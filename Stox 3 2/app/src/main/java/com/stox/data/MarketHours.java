@@ -0,0 +1,82 @@
+package com.stox.data;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * The regular trading session of the US exchanges AlphaVantage quotes, 9:30 to 16:00 New York
+ * time on weekdays. Exchange holidays aren't known, they just look like a session without bars.
+ */
+public final class MarketHours {
+
+    public static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+    public static final LocalTime OPEN = LocalTime.of(9, 30);
+    public static final LocalTime CLOSE = LocalTime.of(16, 0);
+
+    private MarketHours() {
+    }
+
+    /**
+     * @param instant any point in time
+     * @return true if the session is open at that time
+     */
+    public static boolean isOpen(final Instant instant) {
+        final ZonedDateTime exchangeTime = instant.atZone(EXCHANGE_ZONE);
+        final LocalTime time = exchangeTime.toLocalTime();
+        return isTradingDay(exchangeTime.getDayOfWeek()) && !time.isBefore(OPEN) && time.isBefore(CLOSE);
+    }
+
+    /**
+     * @param instant any point in time
+     * @return the end of the most recent session that ended at or before that time
+     */
+    public static Instant lastClose(final Instant instant) {
+        final ZonedDateTime exchangeTime = instant.atZone(EXCHANGE_ZONE);
+        ZonedDateTime close = exchangeTime.with(CLOSE);
+        if (close.isAfter(exchangeTime)) {
+            close = close.minusDays(1);
+        }
+        while (!isTradingDay(close.getDayOfWeek())) {
+            close = close.minusDays(1);
+        }
+        return close.toInstant();
+    }
+
+    /**
+     * Tells whether there can be bars we haven't fetched yet: the session is open, or it has closed
+     * since we last fetched.
+     * @param now the current time
+     * @param lastFetched when we last fetched, Instant.EPOCH if never
+     * @return false overnight and at weekends once the last session's bars have been fetched
+     */
+    public static boolean hasNewBars(final Instant now, final Instant lastFetched) {
+        return isOpen(now) || lastFetched.isBefore(lastClose(now));
+    }
+
+    /**
+     * Tells whether a series may be missing bars: the session is open, or the series' newest bar
+     * is older than the end of the last session.
+     * @param now the current time
+     * @param lastBarTime the newest stored bar's timestamp in TickSeries encoding, -1 if none
+     * @return false overnight and at weekends once the last session's bars are stored
+     */
+    public static boolean isMissingBars(final Instant now, final long lastBarTime) {
+        return isOpen(now) || lastBarTime < toTickTime(lastClose(now));
+    }
+
+    /**
+     * @param instant any point in time
+     * @return the time in TickSeries encoding, the exchange's wall clock time written as UTC
+     */
+    public static long toTickTime(final Instant instant) {
+        return instant.atZone(EXCHANGE_ZONE).toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static boolean isTradingDay(final DayOfWeek day) {
+        return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY;
+    }
+}
@@ -0,0 +1,151 @@
+package com.stox.data;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Timings of the stages a chart goes through on its way to the screen (network, parsing, merging,
+ * storing, drawing), each kept in a Histogram so that percentiles can be compared between builds
+ * and devices.
+ *
+ * Where the platform can count allocated bytes, each timed stage also records how many bytes the
+ * process allocated while it ran. That count includes every other thread's allocations, so it is
+ * exact only for stages that run alone.
+ */
+public final class Metrics {
+
+    private static final Metrics instance = new Metrics();
+
+    // stages by name, sorted so that the dump groups them by prefix
+    private final ConcurrentMap<String, Stage> stages = new ConcurrentSkipListMap<>();
+    // bytes allocated by the process so far, null where we can't tell
+    private volatile LongSupplier allocationCounter;
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param allocationCounter returns the number of bytes the process has allocated so far
+     */
+    public void setAllocationCounter(final LongSupplier allocationCounter) {
+        this.allocationCounter = allocationCounter;
+    }
+
+    /**
+     * Starts timing a stage. Stop the timer when the stage is over; a timer that is never stopped
+     * records nothing.
+     * @param stageName the stage's name, e.g. "fetch.source"
+     * @return the running timer
+     */
+    public Timer start(final String stageName) {
+        final LongSupplier counter = allocationCounter;
+        return new Timer(stage(stageName), counter, counter == null ? 0 : counter.getAsLong());
+    }
+
+    /**
+     * Records a duration measured some other way, e.g. across threads.
+     * @param stageName the stage's name
+     * @param nanos the stage's duration in nanoseconds
+     */
+    public void record(final String stageName, final long nanos) {
+        stage(stageName).latency.record(nanos);
+    }
+
+    /**
+     * @return every stage that has been recorded, sorted by name
+     */
+    public Map<String, Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return a table of every stage's count and latency percentiles in microseconds, plus the mean
+     *         bytes allocated per run where known, as comma separated values
+     */
+    public String dump() {
+        final StringBuilder dump = new StringBuilder("stage,count,p50_us,p95_us,p99_us,max_us,mean_alloc_bytes\n");
+        for (final Map.Entry<String, Stage> entry : stages.entrySet()) {
+            final Histogram latency = entry.getValue().latency;
+            final Histogram allocations = entry.getValue().allocations;
+            dump.append(String.format(Locale.US, "%s,%d,%d,%d,%d,%d,%s\n", entry.getKey(), latency.getCount(),
+                    latency.getPercentile(50) / 1000, latency.getPercentile(95) / 1000,
+                    latency.getPercentile(99) / 1000, latency.getMax() / 1000,
+                    allocations.getCount() == 0 ? "" : String.valueOf(Math.round(allocations.getMean()))));
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void clear() {
+        stages.clear();
+    }
+
+    private Stage stage(final String stageName) {
+        Stage stage = stages.get(stageName);
+        if (stage == null) {
+            final Stage created = new Stage();
+            stage = stages.putIfAbsent(stageName, created);
+            if (stage == null) {
+                stage = created;
+            }
+        }
+        return stage;
+    }
+
+    /**
+     * What has been recorded for one stage.
+     */
+    public static final class Stage {
+        private final Histogram latency = new Histogram();
+        private final Histogram allocations = new Histogram();
+
+        /**
+         * @return the stage's durations in nanoseconds
+         */
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return the bytes allocated while the stage ran, empty where that can't be counted
+         */
+        public Histogram getAllocations() {
+            return allocations;
+        }
+    }
+
+    /**
+     * Times one run of a stage.
+     */
+    public static final class Timer {
+        private final Stage stage;
+        private final LongSupplier allocationCounter;
+        private final long startAllocated;
+        private final long startNanos = System.nanoTime();
+
+        private Timer(final Stage stage, final LongSupplier allocationCounter, final long startAllocated) {
+            this.stage = stage;
+            this.allocationCounter = allocationCounter;
+            this.startAllocated = startAllocated;
+        }
+
+        /**
+         * Records the time since the timer was started.
+         * @return the stage's duration in nanoseconds
+         */
+        public long stop() {
+            final long nanos = System.nanoTime() - startNanos;
+            stage.latency.record(nanos);
+            if (allocationCounter != null) {
+                stage.allocations.record(allocationCounter.getAsLong() - startAllocated);
+            }
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.stox.data;
+
+/**
+ * MACD: the fast EMA of the closes minus the slow one, with the signal line, an EMA of the MACD
+ * itself, as a second line.
+ */
+public class MovingAverageConvergenceDivergence extends Indicator {
+
+    public static final int MACD_LINE = 0;
+    public static final int SIGNAL_LINE = 1;
+
+    private final ExponentialSmoother fast;
+    private final ExponentialSmoother slow;
+    private final ExponentialSmoother signal;
+
+    public MovingAverageConvergenceDivergence(final int fastPeriod, final int slowPeriod, final int signalPeriod) {
+        super("MACD(" + fastPeriod + ", " + slowPeriod + ", " + signalPeriod + ")", false,
+                "MACD", "Signal(" + signalPeriod + ")");
+        fast = ExponentialSmoother.forPeriod(fastPeriod);
+        slow = ExponentialSmoother.forPeriod(slowPeriod);
+        signal = ExponentialSmoother.forPeriod(signalPeriod);
+    }
+
+    @Override
+    void commit(final double close) {
+        fast.commit(close);
+        slow.commit(close);
+        final double macd = fast.getValue() - slow.getValue();
+        if (!Double.isNaN(macd)) {
+            signal.commit(macd);
+        }
+    }
+
+    @Override
+    double value(final int line, final double close) {
+        final double macd = fast.valueWith(close) - slow.valueWith(close);
+        if (line == MACD_LINE || Double.isNaN(macd)) {
+            return macd;
+        }
+        return signal.valueWith(macd);
+    }
+
+    @Override
+    void reset() {
+        fast.reset();
+        slow.reset();
+        signal.reset();
+    }
+}
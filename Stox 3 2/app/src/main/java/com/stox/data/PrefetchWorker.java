@@ -0,0 +1,139 @@
+package com.stox.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Refreshes every favorite into the tick store in the background, so that opening the app can
+ * draw the chart from disk straight away. Runs only on an unmetered network while the battery
+ * isn't low, and skips its turn overnight and at weekends once the last session's bars are stored.
+ * Outside the session only symbols whose last session isn't stored yet are fetched. A run
+ * refreshes no more symbols than the API quota lets it fetch before WorkManager stops it, the
+ * stalest first; the rest are left for the next run.
+ */
+public class PrefetchWorker extends Worker {
+
+    private static final String WORK_NAME = "prefetchFavorites";
+    // how often the favorites are refreshed while the market is open
+    private static final long INTERVAL_MINUTES = 30;
+    // preference with the time the last prefetch that left no favorite behind started, in epoch
+    // milliseconds, so that a session without bars (a holiday) doesn't keep the worker fetching
+    private static final String LAST_PREFETCH = "lastPrefetch";
+    // WorkManager stops a worker after 10 minutes, a run gives up on its fetches a little before
+    private static final long RUN_BUDGET_MINUTES = 8;
+    // at 5 calls a minute, the symbols that fit into a run's budget, with room for the odd symbol
+    // that takes a second call to close a gap
+    private static final int MAX_SYMBOLS_PER_RUN = 35;
+
+    public PrefetchWorker(@NonNull final Context context, @NonNull final WorkerParameters workerParameters) {
+        super(context, workerParameters);
+    }
+
+    /**
+     * Schedules the periodic prefetch, unless it is scheduled already.
+     */
+    public static void schedule() {
+        final Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        final PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(PrefetchWorker.class,
+                INTERVAL_MINUTES, TimeUnit.MINUTES)
+                .setConstraints(constraints)
+                .build();
+        // keep the existing schedule, so that every launch of the app doesn't push the next run back
+        WorkManager.getInstance().enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        final SharedPreferences sharedPreferences = getApplicationContext().getSharedPreferences("Stox", Context.MODE_PRIVATE);
+        final Instant now = Instant.now();
+        if (!MarketHours.hasNewBars(now, Instant.ofEpochMilli(sharedPreferences.getLong(LAST_PREFETCH, 0)))) {
+            Log.d("PREFETCH", "market closed, nothing new to fetch");
+            return Result.success();
+        }
+        final TickFetcher tickFetcher = TickFetcher.getInstance();
+        tickFetcher.initialize(getApplicationContext());
+        // every watchlist's symbols, which also brings their quotes up to date; the watchlists are
+        // read on the fetcher's disk thread, where they are written
+        final List<String> favoriteStocks;
+        try {
+            favoriteStocks = tickFetcher.openWatchlistStore().get().getAllSymbols();
+        } catch (final ExecutionException e) {
+            Log.e("PREFETCH", "could not read the favorites", e);
+            return Result.retry();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+        if (favoriteStocks.isEmpty()) {
+            return Result.success();
+        }
+        // the symbols that may be missing bars, the stalest first, those never stored before all others
+        final List<String> stalest = new ArrayList<>();
+        final Map<String, Long> lastTimes = new HashMap<>();
+        for (final String stockSymbol : favoriteStocks) {
+            final long lastTime = tickFetcher.getStoredLastTime(stockSymbol, Timeframe.ONE_MIN);
+            if (MarketHours.isMissingBars(now, lastTime)) {
+                stalest.add(stockSymbol);
+                lastTimes.put(stockSymbol, lastTime);
+            }
+        }
+        if (stalest.isEmpty()) {
+            Log.d("PREFETCH", "every favorite is up to date");
+            sharedPreferences.edit().putLong(LAST_PREFETCH, now.toEpochMilli()).apply();
+            return Result.success();
+        }
+        stalest.sort(Comparator.comparing(lastTimes::get));
+        final List<String> batch = stalest.subList(0, Math.min(stalest.size(), MAX_SYMBOLS_PER_RUN));
+
+        try {
+            // the fetches are paced to the API quota, so this may take a while; we're on a background thread
+            final Map<String, TickSeries> refreshed = new WatchlistRefresher(tickFetcher)
+                    .refresh(batch, null, Timeframe.ONE_MIN)
+                    .get(RUN_BUDGET_MINUTES, TimeUnit.MINUTES);
+            Log.d("PREFETCH", "refreshed " + refreshed.size() + " of " + stalest.size() + " stale favorites");
+            if (refreshed.isEmpty()) {
+                return Result.retry();
+            }
+            // once every stale favorite was fetched, a session that has no bars isn't asked for again
+            if (refreshed.size() == stalest.size()) {
+                sharedPreferences.edit().putLong(LAST_PREFETCH, now.toEpochMilli()).apply();
+            }
+            return Result.success();
+        } catch (final ExecutionException e) {
+            Log.e("PREFETCH", "could not refresh favorites", e);
+            return Result.retry();
+        } catch (final TimeoutException e) {
+            // the app took part of the quota, the fetches still queued carry on without us
+            Log.w("PREFETCH", "ran out of time refreshing " + batch.size() + " favorites");
+            return Result.retry();
+        } catch (final InterruptedException e) {
+            // the work was stopped, e.g. because the network is metered now
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.stox.data;
+
+/**
+ * The latest price of a symbol and its range for the day, as shown next to it in a watchlist.
+ */
+public final class Quote {
+
+    private final long time;
+    private final double lastPrice;
+    private final double dayOpen;
+    private final double dayLow;
+    private final double dayHigh;
+
+    public Quote(final long time, final double lastPrice, final double dayOpen, final double dayLow, final double dayHigh) {
+        this.time = time;
+        this.lastPrice = lastPrice;
+        this.dayOpen = dayOpen;
+        this.dayLow = dayLow;
+        this.dayHigh = dayHigh;
+    }
+
+    /**
+     * Takes the quote from a series' newest bar and the bars of its day.
+     * @param tickSeries bars sorted by ascending timestamp
+     * @return the quote, or null if the series is empty
+     */
+    public static Quote of(final TickSeries tickSeries) {
+        if (tickSeries.isEmpty()) {
+            return null;
+        }
+        final int last = tickSeries.size() - 1;
+        final long time = tickSeries.getTime(last);
+        // the first bar of the day is the one that ends a minute after midnight, as in BarPyramid
+        final long dayStart = Math.floorDiv(time - 1, TickSeries.SECONDS_PER_DAY) * TickSeries.SECONDS_PER_DAY;
+        final int first = tickSeries.indexAtOrAfter(dayStart + 1);
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        for (int i = first; i <= last; i++) {
+            low = Math.min(low, tickSeries.getLow(i));
+            high = Math.max(high, tickSeries.getHigh(i));
+        }
+        return new Quote(time, tickSeries.getClose(last), tickSeries.getOpen(first), low, high);
+    }
+
+    /**
+     * @return the newest bar's timestamp in TickSeries encoding
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public double getLastPrice() {
+        return lastPrice;
+    }
+
+    public double getDayOpen() {
+        return dayOpen;
+    }
+
+    public double getDayLow() {
+        return dayLow;
+    }
+
+    public double getDayHigh() {
+        return dayHigh;
+    }
+
+    /**
+     * @return the change since the day's open in percent
+     */
+    public double getChangePercent() {
+        return dayOpen == 0 ? 0 : (lastPrice - dayOpen) / dayOpen * 100;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Quote)) {
+            return false;
+        }
+        final Quote other = (Quote) o;
+        return time == other.time && lastPrice == other.lastPrice && dayOpen == other.dayOpen
+                && dayLow == other.dayLow && dayHigh == other.dayHigh;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(time) * 31 + Double.hashCode(lastPrice);
+    }
+
+    @Override
+    public String toString() {
+        return "Quote{time=" + time + ", lastPrice=" + lastPrice + ", dayOpen=" + dayOpen
+                + ", dayLow=" + dayLow + ", dayHigh=" + dayHigh + "}";
+    }
+}
@@ -0,0 +1,119 @@
+package com.stox.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps our calls within AlphaVantage's quotas: at most 5 calls in any 60 seconds, and at most
+ * 500 per calendar day in UTC. The day's count can be kept across restarts, so restarting the app
+ * doesn't hand out another day's worth of calls.
+ */
+public class RateLimiter {
+
+    /**
+     * A source of monotonic nanosecond timestamps, replaceable in tests. The wall clock is only
+     * used to tell which day it is.
+     */
+    public interface Clock {
+        long nanoTime();
+
+        default long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Where the number of calls made on a day is kept between runs of the app.
+     */
+    public interface DailyCount {
+        /**
+         * @param day days since the epoch in UTC
+         * @return the number of calls saved for the day, 0 if none were
+         */
+        int load(long day);
+
+        /**
+         * @param day days since the epoch in UTC
+         * @param count the number of calls made on the day so far
+         */
+        void save(long day, int count);
+    }
+
+    // the free API key's quotas
+    private static final int CALLS_PER_MINUTE = 5;
+    private static final int CALLS_PER_DAY = 500;
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final Clock clock;
+    private final SlidingWindow minute = new SlidingWindow(CALLS_PER_MINUTE, 1, TimeUnit.MINUTES);
+    private DailyCount dailyCount;
+    private long day = Long.MIN_VALUE;
+    private int callsToday;
+
+    private RateLimiter(final Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return a limiter for the free AlphaVantage quotas of 5 calls per minute and 500 per day
+     */
+    public static RateLimiter forAlphaVantage() {
+        return forAlphaVantage(System::nanoTime);
+    }
+
+    static RateLimiter forAlphaVantage(final Clock clock) {
+        return new RateLimiter(clock);
+    }
+
+    /**
+     * Keeps the day's count in the given place from now on, and adds the calls it says were
+     * already made today.
+     * @param dailyCount where to keep the count
+     */
+    public synchronized void setDailyCount(final DailyCount dailyCount) {
+        this.dailyCount = dailyCount;
+        final long today = Math.floorDiv(clock.currentTimeMillis(), MILLIS_PER_DAY);
+        if (today != day) {
+            day = today;
+            callsToday = 0;
+        }
+        callsToday = Math.max(callsToday, dailyCount.load(today));
+    }
+
+    /**
+     * Blocks until a call may go ahead, and counts it against the quotas.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        long wait;
+        while ((wait = tryAcquire()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, wait);
+        }
+    }
+
+    /**
+     * Counts a call against the quotas if it may go ahead right now.
+     * @return 0 if the call may go ahead, otherwise how many nanoseconds to wait before trying again
+     */
+    public synchronized long tryAcquire() {
+        final long now = clock.nanoTime();
+        final long nowMillis = clock.currentTimeMillis();
+        final long today = Math.floorDiv(nowMillis, MILLIS_PER_DAY);
+        if (today != day) {
+            day = today;
+            callsToday = dailyCount == null ? 0 : dailyCount.load(today);
+        }
+        if (callsToday >= CALLS_PER_DAY) {
+            // wait for midnight, at least a millisecond so the caller doesn't spin
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(1, (today + 1) * MILLIS_PER_DAY - nowMillis));
+        }
+        final long wait = minute.nanosUntilAvailable(now);
+        if (wait > 0) {
+            return wait;
+        }
+        minute.take(now);
+        callsToday++;
+        if (dailyCount != null) {
+            dailyCount.save(day, callsToday);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,53 @@
+package com.stox.data;
+
+/**
+ * Wilder's relative strength index, from 0 to 100: the average gain over the average gain plus
+ * loss of the last period changes in close, smoothed by Wilder's 1 / period.
+ */
+public class RelativeStrengthIndex extends Indicator {
+
+    private final ExponentialSmoother gains;
+    private final ExponentialSmoother losses;
+    private double previousClose = Double.NaN;
+
+    public RelativeStrengthIndex(final int period) {
+        super("RSI(" + period + ")", false);
+        gains = new ExponentialSmoother(period, 1.0 / period);
+        losses = new ExponentialSmoother(period, 1.0 / period);
+    }
+
+    @Override
+    void commit(final double close) {
+        if (!Double.isNaN(previousClose)) {
+            final double change = close - previousClose;
+            gains.commit(Math.max(change, 0));
+            losses.commit(Math.max(-change, 0));
+        }
+        previousClose = close;
+    }
+
+    @Override
+    double value(final int line, final double close) {
+        if (Double.isNaN(previousClose)) {
+            return Double.NaN;
+        }
+        final double change = close - previousClose;
+        final double gain = gains.valueWith(Math.max(change, 0));
+        final double loss = losses.valueWith(Math.max(-change, 0));
+        if (Double.isNaN(gain)) {
+            return Double.NaN;
+        }
+        if (gain + loss == 0) {
+            // the price hasn't moved at all
+            return 50;
+        }
+        return 100 * gain / (gain + loss);
+    }
+
+    @Override
+    void reset() {
+        gains.reset();
+        losses.reset();
+        previousClose = Double.NaN;
+    }
+}
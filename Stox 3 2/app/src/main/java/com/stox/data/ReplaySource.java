@@ -0,0 +1,117 @@
+package com.stox.data;
+
+import org.patriques.input.timeseries.OutputSize;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plays back recorded tick files as if they were live data, for load testing the live mode, the
+ * caches and the chart without touching the network.
+ *
+ * Each series starts replaying at the first bar of the last day in its recording; everything before
+ * that is history and is there from the first fetch on. From then on a replay clock running at the
+ * configured speed releases the recorded bars as it passes their timestamps. At
+ * AS_FAST_AS_POSSIBLE every fetch releases the next bar, however quickly fetches come in.
+ */
+public class ReplaySource implements MarketDataSource {
+
+    // a speed at which each fetch releases one more bar
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final TickStore recordings;
+    private final double speed;
+    private final RateLimiter.Clock clock;
+    // guarded by the source's lock
+    private final Map<SeriesKey, Replay> replays = new HashMap<>();
+
+    /**
+     * @param recordings the recorded tick files, a store of their own so the replay never
+     *                   touches the app's real data
+     * @param speed how much faster than real time to replay, 1 for real time, or AS_FAST_AS_POSSIBLE
+     */
+    public ReplaySource(final TickStore recordings, final double speed) {
+        this(recordings, speed, System::nanoTime);
+    }
+
+    ReplaySource(final TickStore recordings, final double speed, final RateLimiter.Clock clock) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+        this.recordings = recordings;
+        this.speed = speed;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized TickSeries fetch(final SeriesKey key, final OutputSize outputSize, final long since) throws IOException {
+        Replay replay = replays.get(key);
+        if (replay == null) {
+            final TickSeries recording = recordings.read(key);
+            if (recording.isEmpty()) {
+                throw new MarketDataException("no recording for " + key, false);
+            }
+            replay = new Replay(recording, clock.nanoTime());
+            replays.put(key, replay);
+        }
+
+        final int released = replay.advance(clock.nanoTime());
+        int from = Math.max(replay.recording.indexAtOrAfter(since), 0);
+        if (outputSize == OutputSize.COMPACT) {
+            from = Math.max(from, released - COMPACT_SIZE);
+        }
+        return replay.recording.slice(Math.min(from, released), released);
+    }
+
+    @Override
+    public boolean isRateLimited() {
+        return false;
+    }
+
+    @Override
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Starts every series over from the beginning of its last recorded day.
+     */
+    public synchronized void rewind() {
+        replays.clear();
+    }
+
+    /**
+     * The playback position in one recording.
+     */
+    private class Replay {
+        final TickSeries recording;
+        final long startNanos;
+        final long startTime;
+        // bars before this index have been released
+        int released;
+
+        Replay(final TickSeries recording, final long startNanos) {
+            this.recording = recording;
+            this.startNanos = startNanos;
+            final long lastDay = Math.floorDiv(recording.getLastTime(), TickSeries.SECONDS_PER_DAY);
+            released = recording.indexAtOrAfter(lastDay * TickSeries.SECONDS_PER_DAY);
+            startTime = recording.getTime(released);
+        }
+
+        /**
+         * Moves the replay clock to the given time and returns the number of bars released so far.
+         */
+        int advance(final long nowNanos) {
+            if (speed == AS_FAST_AS_POSSIBLE) {
+                released = Math.min(released + 1, recording.size());
+            } else {
+                final double elapsedSeconds = (nowNanos - startNanos) / 1e9 * speed;
+                final long replayTime = startTime + (long) Math.min(elapsedSeconds, Long.MAX_VALUE / 2);
+                // a bar is released once the replay clock reaches its timestamp
+                released = Math.max(released, recording.indexAtOrAfter(replayTime + 1));
+            }
+            return released;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.stox.data;
+
+/**
+ * Statistics over the closing prices of a sliding time window of bars, updated in O(1) amortized
+ * time per bar: minimum and maximum (kept in monotonic deques), mean, standard deviation and the
+ * volume weighted average price.
+ *
+ * The newest bar is held apart from the window until a newer one arrives, because AlphaVantage's
+ * most recent bar is still forming and may be revised. Revising it is as cheap as adding a bar.
+ */
+public class RollingStatistics {
+
+    // a window that never drops old bars, for statistics that are cleared explicitly instead
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    private final long windowSeconds;
+
+    // committed bars in the window, addressed by sequence number modulo the capacity
+    private long[] times = new long[64];
+    private double[] closes = new double[64];
+    private long[] volumes = new long[64];
+    private long first;
+    private long next;
+
+    // sequence numbers of committed bars with decreasing (max) and increasing (min) closes
+    private final SequenceDeque maxDeque = new SequenceDeque();
+    private final SequenceDeque minDeque = new SequenceDeque();
+
+    // running sums over the committed bars
+    private double sum;
+    private double sumOfSquares;
+    private double sumOfPriceVolume;
+    private double sumOfVolume;
+
+    // the newest bar, not yet committed
+    private boolean hasPending;
+    private long pendingTime;
+    private double pendingClose;
+    private long pendingVolume;
+
+    /**
+     * @param windowSeconds bars older than the newest bar's time minus this are dropped,
+     *                      or UNBOUNDED to keep every bar until clear() is called
+     */
+    public RollingStatistics(final long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     * Adds a bar, or revises the newest bar if the timestamp matches it.
+     * @param time the bar's timestamp in seconds
+     * @param close the bar's closing price
+     * @param volume the bar's volume
+     * @return false if the bar was older than the newest one and was ignored
+     */
+    public boolean update(final long time, final double close, final long volume) {
+        if (hasPending) {
+            if (time < pendingTime) {
+                return false;
+            }
+            if (time > pendingTime) {
+                commit(pendingTime, pendingClose, pendingVolume);
+            }
+        }
+        hasPending = true;
+        pendingTime = time;
+        pendingClose = close;
+        pendingVolume = volume;
+        evictOlderThan(time);
+        return true;
+    }
+
+    /**
+     * Drops every bar.
+     */
+    public void clear() {
+        first = next;
+        maxDeque.clear();
+        minDeque.clear();
+        sum = 0;
+        sumOfSquares = 0;
+        sumOfPriceVolume = 0;
+        sumOfVolume = 0;
+        hasPending = false;
+    }
+
+    /**
+     * @return the number of bars in the window
+     */
+    public int getCount() {
+        return (int) (next - first) + (hasPending ? 1 : 0);
+    }
+
+    /**
+     * @return the highest close in the window, NaN if it is empty
+     */
+    public double getMax() {
+        if (!hasPending) {
+            return Double.NaN;
+        }
+        return maxDeque.isEmpty() ? pendingClose : Math.max(closes[slot(maxDeque.peekFirst())], pendingClose);
+    }
+
+    /**
+     * @return the lowest close in the window, NaN if it is empty
+     */
+    public double getMin() {
+        if (!hasPending) {
+            return Double.NaN;
+        }
+        return minDeque.isEmpty() ? pendingClose : Math.min(closes[slot(minDeque.peekFirst())], pendingClose);
+    }
+
+    /**
+     * @return the mean close in the window, NaN if it is empty
+     */
+    public double getMean() {
+        final int count = getCount();
+        return count == 0 ? Double.NaN : (sum + pendingClose) / count;
+    }
+
+    /**
+     * @return the population standard deviation of the closes in the window, NaN if it is empty
+     */
+    public double getStandardDeviation() {
+        final int count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        final double mean = (sum + pendingClose) / count;
+        final double variance = (sumOfSquares + pendingClose * pendingClose) / count - mean * mean;
+        // cancellation in the running sums can leave a tiny negative variance
+        return Math.sqrt(Math.max(0, variance));
+    }
+
+    /**
+     * @return the volume weighted average close in the window, the plain mean if there was no volume
+     */
+    public double getVwap() {
+        if (!hasPending) {
+            return Double.NaN;
+        }
+        final double volume = sumOfVolume + pendingVolume;
+        if (volume == 0) {
+            return getMean();
+        }
+        return (sumOfPriceVolume + pendingClose * pendingVolume) / volume;
+    }
+
+    private void commit(final long time, final double close, final long volume) {
+        if (next - first == times.length) {
+            grow();
+        }
+        final long sequence = next++;
+        final int slot = slot(sequence);
+        times[slot] = time;
+        closes[slot] = close;
+        volumes[slot] = volume;
+
+        while (!maxDeque.isEmpty() && closes[slot(maxDeque.peekLast())] <= close) {
+            maxDeque.removeLast();
+        }
+        maxDeque.addLast(sequence);
+        while (!minDeque.isEmpty() && closes[slot(minDeque.peekLast())] >= close) {
+            minDeque.removeLast();
+        }
+        minDeque.addLast(sequence);
+
+        sum += close;
+        sumOfSquares += close * close;
+        sumOfPriceVolume += close * volume;
+        sumOfVolume += volume;
+    }
+
+    private void evictOlderThan(final long newestTime) {
+        if (windowSeconds == UNBOUNDED) {
+            return;
+        }
+        final long oldestKept = newestTime - windowSeconds;
+        while (first < next && times[slot(first)] < oldestKept) {
+            final int slot = slot(first);
+            final double close = closes[slot];
+            sum -= close;
+            sumOfSquares -= close * close;
+            sumOfPriceVolume -= close * volumes[slot];
+            sumOfVolume -= volumes[slot];
+            if (maxDeque.peekFirst() == first) {
+                maxDeque.removeFirst();
+            }
+            if (minDeque.peekFirst() == first) {
+                minDeque.removeFirst();
+            }
+            first++;
+        }
+        if (first == next) {
+            // start the running sums afresh so rounding errors don't pile up across windows
+            sum = 0;
+            sumOfSquares = 0;
+            sumOfPriceVolume = 0;
+            sumOfVolume = 0;
+        }
+    }
+
+    private int slot(final long sequence) {
+        return (int) (sequence & (times.length - 1));
+    }
+
+    private void grow() {
+        final int capacity = times.length * 2;
+        final long[] newTimes = new long[capacity];
+        final double[] newCloses = new double[capacity];
+        final long[] newVolumes = new long[capacity];
+        for (long sequence = first; sequence < next; sequence++) {
+            final int from = slot(sequence);
+            final int to = (int) (sequence & (capacity - 1));
+            newTimes[to] = times[from];
+            newCloses[to] = closes[from];
+            newVolumes[to] = volumes[from];
+        }
+        times = newTimes;
+        closes = newCloses;
+        volumes = newVolumes;
+    }
+
+    /**
+     * A growable double ended queue of sequence numbers backed by a circular array.
+     */
+    private static class SequenceDeque {
+        private long[] elements = new long[64];
+        private int head;
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peekFirst() {
+            return size == 0 ? -1 : elements[head];
+        }
+
+        long peekLast() {
+            return elements[(head + size - 1) & (elements.length - 1)];
+        }
+
+        void addLast(final long sequence) {
+            if (size == elements.length) {
+                final long[] grown = new long[elements.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = elements[(head + i) & (elements.length - 1)];
+                }
+                elements = grown;
+                head = 0;
+            }
+            elements[(head + size) & (elements.length - 1)] = sequence;
+            size++;
+        }
+
+        void removeFirst() {
+            head = (head + 1) & (elements.length - 1);
+            size--;
+        }
+
+        void removeLast() {
+            size--;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.stox.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact binary archive of one or more series, for sharing data and reading it back.
+ *
+ * After a header (magic and version) each series has a marker byte, its symbol and interval, then
+ * blocks of up to BLOCK_SIZE bars and a zero to end it; a zero marker ends the archive. A block is
+ * its bar count, its length in bytes and a bit stream with one column after the other, compressed
+ * the way Facebook's Gorilla compresses time series: timestamps as the difference between
+ * consecutive deltas (one bit per bar at a regular interval), prices as the XOR with the previous
+ * price (only the bits that changed), volumes as the difference to the previous volume. Quotes are
+ * mostly whole cents, whose doubles differ in nearly every mantissa bit, so a price column that is
+ * all cents is written as differences of cents like the volumes instead. Bars are written and read
+ * a block at a time, and archives are read memory mapped.
+ */
+public final class SeriesArchive {
+
+    private static final int MAGIC = 0x53545841; // "STXA"
+    private static final int VERSION = 1;
+    private static final int SERIES = 1;
+    private static final int END = 0;
+    // bars per block, the most that is decoded into memory at once
+    static final int BLOCK_SIZE = 4096;
+    // how a price column is encoded, XOR compressed doubles or differences of whole cents
+    private static final int XOR = 0;
+    private static final int CENTS = 1;
+    // prices from here on can't be converted to cents exactly
+    private static final double MAX_CENTS_PRICE = 1e13;
+
+    private SeriesArchive() {
+    }
+
+    /**
+     * Reads an archive, handing each series to the sink a block at a time. The sink isn't closed.
+     * @param file the archive
+     * @param sink receives the series
+     * @throws IOException if the file can't be read or isn't an archive, or the sink threw
+     */
+    public static void read(final File file, final SeriesSink sink) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            read(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()), sink);
+        }
+    }
+
+    static void read(final ByteBuffer buffer, final SeriesSink sink) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not a series archive");
+            }
+            if (buffer.getInt() != VERSION) {
+                throw new IOException("unsupported series archive version");
+            }
+            while (buffer.get() == SERIES) {
+                final String stockSymbol = readString(buffer);
+                final Timeframe interval;
+                try {
+                    interval = Timeframe.valueOf(readString(buffer));
+                } catch (final IllegalArgumentException e) {
+                    throw new IOException("unknown interval in series archive", e);
+                }
+                sink.beginSeries(stockSymbol, interval);
+                int count;
+                while ((count = buffer.getInt()) > 0) {
+                    final int length = buffer.getInt();
+                    final int end = buffer.position() + length;
+                    sink.addBars(decodeBlock(new BitInput(buffer), count));
+                    buffer.position(end);
+                }
+            }
+        } catch (final java.nio.BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("truncated series archive", e);
+        }
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static TickSeries decodeBlock(final BitInput in, final int count) {
+        final long[] times = new long[count];
+        times[0] = in.read(64);
+        long delta = 0;
+        for (int i = 1; i < count; i++) {
+            delta += readDeltaOfDelta(in);
+            times[i] = times[i - 1] + delta;
+        }
+        final double[] opens = readDoubles(in, count);
+        final double[] highs = readDoubles(in, count);
+        final double[] lows = readDoubles(in, count);
+        final double[] closes = readDoubles(in, count);
+        final TickSeries.Builder builder = new TickSeries.Builder(count);
+        final long[] volumes = readLongs(in, count);
+        for (int i = 0; i < count; i++) {
+            builder.add(times[i], opens[i], highs[i], lows[i], closes[i], volumes[i]);
+        }
+        return builder.build();
+    }
+
+    private static long readDeltaOfDelta(final BitInput in) {
+        if (in.read(1) == 0) {
+            return 0;
+        }
+        if (in.read(1) == 0) {
+            return in.read(7) - 63;
+        }
+        if (in.read(1) == 0) {
+            return in.read(9) - 255;
+        }
+        if (in.read(1) == 0) {
+            return in.read(12) - 2047;
+        }
+        return in.read(64);
+    }
+
+    private static double[] readDoubles(final BitInput in, final int count) {
+        final double[] values = new double[count];
+        if (in.read(1) == CENTS) {
+            final long[] cents = readLongs(in, count);
+            for (int i = 0; i < count; i++) {
+                values[i] = cents[i] / 100.0;
+            }
+            return values;
+        }
+        long previous = in.read(64);
+        values[0] = Double.longBitsToDouble(previous);
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (in.read(1) == 1) {
+                if (in.read(1) == 1) {
+                    leading = (int) in.read(5);
+                    trailing = 64 - leading - ((int) in.read(6) + 1);
+                }
+                previous ^= in.read(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        return values;
+    }
+
+    private static long[] readLongs(final BitInput in, final int count) {
+        final long[] values = new long[count];
+        values[0] = in.read(64);
+        for (int i = 1; i < count; i++) {
+            values[i] = values[i - 1];
+            if (in.read(1) == 1) {
+                final long zigZag = in.read((int) in.read(6) + 1);
+                values[i] += (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes an archive, a block of bars at a time. Closing the writer finishes the archive and
+     * closes the stream.
+     */
+    public static final class Writer implements SeriesSink {
+        private final DataOutputStream out;
+        private boolean inSeries;
+
+        public Writer(final OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+        }
+
+        @Override
+        public void beginSeries(final String stockSymbol, final Timeframe interval) throws IOException {
+            endSeries();
+            out.writeByte(SERIES);
+            writeString(stockSymbol);
+            writeString(interval.name());
+            inSeries = true;
+        }
+
+        @Override
+        public void addBars(final TickSeries bars) throws IOException {
+            if (!inSeries) {
+                throw new IllegalStateException("no series begun");
+            }
+            for (int from = 0; from < bars.size(); from += BLOCK_SIZE) {
+                final int to = Math.min(bars.size(), from + BLOCK_SIZE);
+                final BitOutput block = new BitOutput(to - from);
+                encodeBlock(bars, from, to, block);
+                out.writeInt(to - from);
+                out.writeInt(block.length());
+                out.write(block.bytes(), 0, block.length());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                endSeries();
+                out.writeByte(END);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void endSeries() throws IOException {
+            if (inSeries) {
+                out.writeInt(0);
+                inSeries = false;
+            }
+        }
+
+        private void writeString(final String value) throws IOException {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        private static void encodeBlock(final TickSeries bars, final int from, final int to, final BitOutput out) {
+            out.write(bars.getTime(from), 64);
+            long previousDelta = 0;
+            for (int i = from + 1; i < to; i++) {
+                final long delta = bars.getTime(i) - bars.getTime(i - 1);
+                writeDeltaOfDelta(out, delta - previousDelta);
+                previousDelta = delta;
+            }
+            for (int column = 0; column < 4; column++) {
+                if (isInCents(bars, column, from, to)) {
+                    out.write(CENTS, 1);
+                    final long[] cents = new long[to - from];
+                    for (int i = from; i < to; i++) {
+                        cents[i - from] = Math.round(price(bars, column, i) * 100);
+                    }
+                    writeLongs(out, cents);
+                    continue;
+                }
+                out.write(XOR, 1);
+                long previous = Double.doubleToLongBits(price(bars, column, from));
+                out.write(previous, 64);
+                // the window of meaningful bits that the XORs are written in, none yet
+                int leading = -1;
+                int trailing = 0;
+                for (int i = from + 1; i < to; i++) {
+                    final long bits = Double.doubleToLongBits(price(bars, column, i));
+                    final long xor = bits ^ previous;
+                    previous = bits;
+                    if (xor == 0) {
+                        out.write(0, 1);
+                        continue;
+                    }
+                    final int newLeading = Math.min(31, Long.numberOfLeadingZeros(xor));
+                    final int newTrailing = Long.numberOfTrailingZeros(xor);
+                    if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                        // fits the previous window, no need to say where it is
+                        out.write(0b10, 2);
+                    } else {
+                        leading = newLeading;
+                        trailing = newTrailing;
+                        out.write(0b11, 2);
+                        out.write(leading, 5);
+                        out.write(64 - leading - trailing - 1, 6);
+                    }
+                    out.write(xor >>> trailing, 64 - leading - trailing);
+                }
+            }
+            final long[] volumes = new long[to - from];
+            for (int i = from; i < to; i++) {
+                volumes[i - from] = bars.getVolume(i);
+            }
+            writeLongs(out, volumes);
+            out.finish();
+        }
+
+        /**
+         * Writes the first value, then each difference to the one before in as few bits as it
+         * needs (zigzag encoded, so that small negative differences are short too).
+         */
+        private static void writeLongs(final BitOutput out, final long[] values) {
+            out.write(values[0], 64);
+            for (int i = 1; i < values.length; i++) {
+                final long difference = values[i] - values[i - 1];
+                if (difference == 0) {
+                    out.write(0, 1);
+                } else {
+                    final long zigZag = (difference << 1) ^ (difference >> 63);
+                    final int bits = 64 - Long.numberOfLeadingZeros(zigZag);
+                    out.write(1, 1);
+                    out.write(bits - 1, 6);
+                    out.write(zigZag, bits);
+                }
+            }
+        }
+
+        /**
+         * @return true if every price of the column in [from, to) is a whole number of cents, so
+         * that they can be written as integers that read back as exactly the same doubles
+         */
+        private static boolean isInCents(final TickSeries bars, final int column, final int from, final int to) {
+            for (int i = from; i < to; i++) {
+                final double price = price(bars, column, i);
+                if (Math.abs(price) >= MAX_CENTS_PRICE
+                        || Double.doubleToLongBits(Math.round(price * 100) / 100.0) != Double.doubleToLongBits(price)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void writeDeltaOfDelta(final BitOutput out, final long deltaOfDelta) {
+            if (deltaOfDelta == 0) {
+                out.write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.write(0b10, 2);
+                out.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                out.write(0b110, 3);
+                out.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.write(0b1110, 4);
+                out.write(deltaOfDelta + 2047, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(deltaOfDelta, 64);
+            }
+        }
+
+        private static double price(final TickSeries bars, final int column, final int index) {
+            switch (column) {
+                case 0:
+                    return bars.getOpen(index);
+                case 1:
+                    return bars.getHigh(index);
+                case 2:
+                    return bars.getLow(index);
+                default:
+                    return bars.getClose(index);
+            }
+        }
+    }
+
+    /**
+     * Writes bits most significant first into a growing byte array.
+     */
+    private static final class BitOutput {
+        private byte[] bytes;
+        private int length;
+        private int current;
+        private int used;
+
+        BitOutput(final int bars) {
+            // about three bytes a bar for minute data, more is grown into
+            bytes = new byte[Math.max(64, bars * 4)];
+        }
+
+        /**
+         * Writes the low bits of a value.
+         * @param value the value
+         * @param bits how many of its bits to write, 1 to 64
+         */
+        void write(final long value, int bits) {
+            while (bits > 0) {
+                final int count = Math.min(8 - used, bits);
+                final int chunk = (int) (value >>> (bits - count)) & ((1 << count) - 1);
+                current = (current << count) | chunk;
+                used += count;
+                bits -= count;
+                if (used == 8) {
+                    append(current);
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        /**
+         * Pads the last byte with zeros.
+         */
+        void finish() {
+            if (used > 0) {
+                append(current << (8 - used));
+                current = 0;
+                used = 0;
+            }
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+
+        private void append(final int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Reads bits most significant first from a buffer, starting at its position.
+     */
+    private static final class BitInput {
+        private final ByteBuffer buffer;
+        private int position;
+        private int current;
+        private int available;
+
+        BitInput(final ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.position = buffer.position();
+        }
+
+        /**
+         * @param bits how many bits to read, 0 to 64
+         * @return the bits as the low bits of a long
+         */
+        long read(int bits) {
+            long value = 0;
+            while (bits > 0) {
+                if (available == 0) {
+                    current = buffer.get(position++) & 0xFF;
+                    available = 8;
+                }
+                final int count = Math.min(available, bits);
+                value = (value << count) | ((current >>> (available - count)) & ((1 << count) - 1));
+                available -= count;
+                bits -= count;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.stox.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory, least recently used cache of fetched series. The cache is bounded by the
+ * approximate number of bytes its series occupy rather than by the number of series, and every
+ * series expires after the time to live of its interval.
+ */
+public class SeriesCache {
+
+    private final long maxBytes;
+    // access ordered, so iteration starts at the least recently used series
+    private final LinkedHashMap<SeriesKey, CachedSeries> series = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public SeriesCache(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached series for the given key if it hasn't expired yet.
+     * @param key the series to look up
+     * @param nowMillis the current time on a monotonic clock
+     * @return the cached series, or null on a miss
+     */
+    public synchronized TickSeries get(final SeriesKey key, final long nowMillis) {
+        final CachedSeries cached = series.get(key);
+        if (cached == null || cached.expiresAtMillis <= nowMillis) {
+            if (cached != null) {
+                remove(key);
+            }
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return cached.series;
+    }
+
+    /**
+     * Returns the cached series for the given key even if it has expired, without counting a hit or a miss.
+     * @param key the series to look up
+     * @return the cached series, or null if it isn't cached
+     */
+    public synchronized TickSeries peek(final SeriesKey key) {
+        final CachedSeries cached = series.get(key);
+        return cached == null ? null : cached.series;
+    }
+
+    /**
+     * Caches a series, evicting the least recently used ones until it fits.
+     * A series larger than the whole cache is not cached at all.
+     * @param key the series to cache
+     * @param tickSeries the series' bars
+     * @param nowMillis the current time on a monotonic clock
+     */
+    public synchronized void put(final SeriesKey key, final TickSeries tickSeries, final long nowMillis) {
+        final long sizeBytes = tickSeries.sizeBytes();
+        remove(key);
+        if (sizeBytes > maxBytes) {
+            return;
+        }
+
+        final Iterator<Map.Entry<SeriesKey, CachedSeries>> iterator = series.entrySet().iterator();
+        while (currentBytes + sizeBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().getValue().sizeBytes;
+            iterator.remove();
+            evictionCount++;
+        }
+
+        series.put(key, new CachedSeries(tickSeries, sizeBytes,
+                nowMillis + Intervals.timeToLiveMillis(key.getInterval())));
+        currentBytes += sizeBytes;
+    }
+
+    /**
+     * Drops every series. The counters keep counting.
+     */
+    public synchronized void clear() {
+        series.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getSizeBytes() {
+        return currentBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SeriesCache{hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+                + ", bytes=" + currentBytes + "/" + maxBytes + ", series=" + series.size() + "}";
+    }
+
+    private void remove(final SeriesKey key) {
+        final CachedSeries removed = series.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.sizeBytes;
+        }
+    }
+
+    private static class CachedSeries {
+        final TickSeries series;
+        final long sizeBytes;
+        final long expiresAtMillis;
+
+        CachedSeries(final TickSeries series, final long sizeBytes, final long expiresAtMillis) {
+            this.series = series;
+            this.sizeBytes = sizeBytes;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.stox.data;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Series as CSV, for reading exported data into a spreadsheet or anything else that can't read a
+ * SeriesArchive. One bar per row, labelled with its symbol and interval so that several series
+ * fit in one file: symbol,interval,timestamp,open,high,low,close,volume
+ */
+public final class SeriesCsv {
+
+    private static final String HEADER = "symbol,interval,timestamp,open,high,low,close,volume";
+
+    private SeriesCsv() {
+    }
+
+    /**
+     * Reads series written by a SeriesCsv.Writer, handing each one to the sink in chunks of up to
+     * SeriesArchive.BLOCK_SIZE bars. The sink isn't closed.
+     * @param reader the CSV, closed when done
+     * @param sink receives the series
+     * @throws IOException if the CSV can't be read or has a malformed row, or the sink threw
+     */
+    public static void read(final Reader reader, final SeriesSink sink) throws IOException {
+        try (BufferedReader in = new BufferedReader(reader)) {
+            if (!HEADER.equals(in.readLine())) {
+                throw new IOException("not a series CSV");
+            }
+            String stockSymbol = null;
+            String intervalName = null;
+            TickSeries.Builder chunk = new TickSeries.Builder(SeriesArchive.BLOCK_SIZE);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                final String[] columns = line.split(",", -1);
+                if (columns.length != 8) {
+                    throw new IOException("malformed series CSV row: " + line);
+                }
+                if (!columns[0].equals(stockSymbol) || !columns[1].equals(intervalName)) {
+                    chunk = flush(chunk, sink);
+                    stockSymbol = columns[0];
+                    intervalName = columns[1];
+                    sink.beginSeries(stockSymbol, parseInterval(intervalName));
+                } else if (chunk.size() == SeriesArchive.BLOCK_SIZE) {
+                    chunk = flush(chunk, sink);
+                }
+                try {
+                    chunk.add(TimeSeriesParser.parseTimestamp(columns[2], 0, columns[2].length()),
+                            Double.parseDouble(columns[3]), Double.parseDouble(columns[4]),
+                            Double.parseDouble(columns[5]), Double.parseDouble(columns[6]),
+                            Long.parseLong(columns[7]));
+                } catch (final NumberFormatException e) {
+                    throw new IOException("malformed series CSV row: " + line, e);
+                }
+            }
+            flush(chunk, sink);
+        }
+    }
+
+    /**
+     * Hands the chunk's bars to the sink, if it has any.
+     * @return a builder for the next chunk, built series share their builder's arrays
+     */
+    private static TickSeries.Builder flush(final TickSeries.Builder chunk, final SeriesSink sink) throws IOException {
+        if (chunk.size() == 0) {
+            return chunk;
+        }
+        sink.addBars(chunk.build());
+        return new TickSeries.Builder(SeriesArchive.BLOCK_SIZE);
+    }
+
+    private static Timeframe parseInterval(final String name) throws IOException {
+        try {
+            return Timeframe.valueOf(name);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("unknown interval in series CSV: " + name, e);
+        }
+    }
+
+    /**
+     * Writes series as CSV. Closing the writer closes the underlying writer.
+     */
+    public static final class Writer implements SeriesSink {
+        private final BufferedWriter out;
+        private final SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        private String prefix;
+
+        public Writer(final java.io.Writer out) throws IOException {
+            this.out = new BufferedWriter(out);
+            // TickSeries timestamps are exchange local times encoded as UTC
+            timestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            this.out.write(HEADER);
+            this.out.newLine();
+        }
+
+        @Override
+        public void beginSeries(final String stockSymbol, final Timeframe interval) {
+            prefix = stockSymbol + "," + interval.name() + ",";
+        }
+
+        @Override
+        public void addBars(final TickSeries bars) throws IOException {
+            if (prefix == null) {
+                throw new IllegalStateException("no series begun");
+            }
+            final Date date = new Date();
+            for (int i = 0; i < bars.size(); i++) {
+                date.setTime(bars.getTime(i) * 1000);
+                out.write(prefix);
+                out.write(timestampFormat.format(date));
+                out.write(',');
+                out.write(Double.toString(bars.getOpen(i)));
+                out.write(',');
+                out.write(Double.toString(bars.getHigh(i)));
+                out.write(',');
+                out.write(Double.toString(bars.getLow(i)));
+                out.write(',');
+                out.write(Double.toString(bars.getClose(i)));
+                out.write(',');
+                out.write(Long.toString(bars.getVolume(i)));
+                out.newLine();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
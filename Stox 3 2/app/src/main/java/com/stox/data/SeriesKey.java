@@ -0,0 +1,47 @@
+package com.stox.data;
+
+import java.util.Objects;
+
+/**
+ * Identifies one time series: a stock symbol at a given interval.
+ */
+public final class SeriesKey {
+
+    private final String stockSymbol;
+    private final Timeframe interval;
+
+    public SeriesKey(final String stockSymbol, final Timeframe interval) {
+        this.stockSymbol = stockSymbol;
+        this.interval = interval;
+    }
+
+    public String getStockSymbol() {
+        return stockSymbol;
+    }
+
+    public Timeframe getInterval() {
+        return interval;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeriesKey)) {
+            return false;
+        }
+        final SeriesKey other = (SeriesKey) o;
+        return stockSymbol.equals(other.stockSymbol) && interval == other.interval;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stockSymbol, interval);
+    }
+
+    @Override
+    public String toString() {
+        return stockSymbol + "@" + interval;
+    }
+}
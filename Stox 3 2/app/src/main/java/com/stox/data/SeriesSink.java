@@ -0,0 +1,24 @@
+package com.stox.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives series a chunk of bars at a time, so that exports and imports never need more than
+ * one chunk in memory: the archive writers, and the tick store when an archive is imported.
+ */
+public interface SeriesSink extends Closeable {
+
+    /**
+     * Starts a series, ending the one before.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param interval the series' interval
+     */
+    void beginSeries(String stockSymbol, Timeframe interval) throws IOException;
+
+    /**
+     * Adds the next chunk of the current series' bars, newer than the chunks before it.
+     * @param bars bars sorted by ascending timestamp
+     */
+    void addBars(TickSeries bars) throws IOException;
+}
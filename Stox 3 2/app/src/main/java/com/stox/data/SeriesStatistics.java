@@ -0,0 +1,84 @@
+package com.stox.data;
+
+/**
+ * Day and week statistics for one symbol's series, kept up to date incrementally: each call to
+ * update() only looks at the bars that arrived since the previous call.
+ *
+ * The day is the calendar day of the newest bar in exchange time, the week is the seven days
+ * leading up to the newest bar.
+ */
+public class SeriesStatistics {
+
+    private final RollingStatistics day = new RollingStatistics(RollingStatistics.UNBOUNDED);
+    private final RollingStatistics week = new RollingStatistics(7 * TickSeries.SECONDS_PER_DAY);
+
+    private long lastTime = Long.MIN_VALUE;
+    private long currentDay = Long.MIN_VALUE;
+
+    /**
+     * Feeds the bars of the series that we haven't seen yet, plus the newest bar we have seen since
+     * it may have been revised. If the series doesn't reach as far as what we've seen, for example
+     * because it belongs to another symbol, the statistics are rebuilt from scratch.
+     * @param tickSeries the full series, sorted by ascending timestamp
+     */
+    public void update(final TickSeries tickSeries) {
+        if (tickSeries.isEmpty()) {
+            return;
+        }
+        if (tickSeries.getLastTime() < lastTime) {
+            clear();
+        }
+        final int from = lastTime == Long.MIN_VALUE ? 0 : tickSeries.indexAtOrAfter(lastTime);
+        for (int i = from; i < tickSeries.size(); i++) {
+            update(tickSeries.getTime(i), tickSeries.getClose(i), tickSeries.getVolume(i));
+        }
+    }
+
+    /**
+     * Feeds a single bar.
+     * @param time the bar's timestamp in TickSeries encoding
+     * @param close the bar's closing price
+     * @param volume the bar's volume
+     */
+    public void update(final long time, final double close, final long volume) {
+        if (time < lastTime) {
+            return;
+        }
+        final long dayNumber = Math.floorDiv(time, TickSeries.SECONDS_PER_DAY);
+        if (dayNumber != currentDay) {
+            day.clear();
+            currentDay = dayNumber;
+        }
+        day.update(time, close, volume);
+        week.update(time, close, volume);
+        lastTime = time;
+    }
+
+    public void clear() {
+        day.clear();
+        week.clear();
+        lastTime = Long.MIN_VALUE;
+        currentDay = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return statistics over the newest bar's calendar day
+     */
+    public RollingStatistics getDay() {
+        return day;
+    }
+
+    /**
+     * @return statistics over the seven days leading up to the newest bar
+     */
+    public RollingStatistics getWeek() {
+        return week;
+    }
+
+    /**
+     * @return the newest bar's timestamp, Long.MIN_VALUE if no bar has been fed
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+}
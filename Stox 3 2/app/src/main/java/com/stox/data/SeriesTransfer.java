@@ -0,0 +1,150 @@
+package com.stox.data;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Moves series between the tick store and an archive, a chunk at a time in both directions so
+ * that neither needs a whole series in memory.
+ */
+public class SeriesTransfer {
+
+    // what an imported symbol may look like, anything else could name a file outside the store
+    private static final Pattern STOCK_SYMBOL = Pattern.compile("[A-Z0-9.\\-]{1,12}");
+
+    private final TickStore store;
+    private final BarPyramid barPyramid;
+
+    public SeriesTransfer(final TickStore store) {
+        this.store = store;
+        this.barPyramid = new BarPyramid(store);
+    }
+
+    /**
+     * Writes the stored bars of the given series to a sink, skipping series with nothing stored.
+     * The sink isn't closed.
+     * @param keys the series to export
+     * @param sink receives the series, e.g. a SeriesArchive.Writer
+     * @return the number of bars exported
+     */
+    public long exportTo(final List<SeriesKey> keys, final SeriesSink sink) throws IOException {
+        long exported = 0;
+        for (final SeriesKey key : keys) {
+            final int size = store.size(key);
+            if (size == 0) {
+                continue;
+            }
+            sink.beginSeries(key.getStockSymbol(), key.getInterval());
+            for (int from = 0; from < size; from += SeriesArchive.BLOCK_SIZE) {
+                final TickSeries bars = store.read(key, from, from + SeriesArchive.BLOCK_SIZE);
+                sink.addBars(bars);
+                exported += bars.size();
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Checks that a symbol read from an archive is one we could have stored, before it is used to
+     * name a file.
+     * @param stockSymbol the symbol, already trimmed and upper case
+     * @throws IOException if it isn't a stock symbol
+     */
+    public static void checkStockSymbol(final String stockSymbol) throws IOException {
+        if (!STOCK_SYMBOL.matcher(stockSymbol).matches() || stockSymbol.contains("..")) {
+            throw new IOException("not a stock symbol: " + stockSymbol);
+        }
+    }
+
+    /**
+     * Returns a sink that merges imported series into the store. Where an imported bar and a stored
+     * bar share a timestamp the stored one is kept, since it was fetched rather than shared.
+     * The bars of a series must come in ascending order, as they do from exportTo. A series that
+     * only adds newer bars is appended to the store; one that overlaps what is stored is merged
+     * with it in a single pass into a new file, which replaces the stored one when the series ends.
+     * Imported one minute bars are rolled up into the coarser intervals when their series ends, so
+     * the sink must be closed.
+     */
+    public SeriesSink importer() {
+        return new Importer();
+    }
+
+    private final class Importer implements SeriesSink {
+        private SeriesKey key;
+        // where the current series is merged to once it overlaps the stored bars, null until then
+        private SeriesKey merged;
+        // index of the first stored bar that hasn't been merged yet
+        private int storedNext;
+        // timestamp of the first imported one minute bar of the current series, -1 if none yet
+        private long firstImported = -1;
+
+        @Override
+        public void beginSeries(final String stockSymbol, final Timeframe interval) throws IOException {
+            endSeries();
+            checkStockSymbol(stockSymbol);
+            key = new SeriesKey(stockSymbol, interval);
+        }
+
+        @Override
+        public void addBars(final TickSeries bars) throws IOException {
+            if (bars.isEmpty()) {
+                return;
+            }
+            final long first = bars.getTime(0);
+            if (merged == null && first > store.lastTimestamp(key)) {
+                store.merge(key, bars);
+            } else {
+                if (merged == null) {
+                    // '~' can't be part of an imported symbol, so this never names a real series
+                    merged = new SeriesKey(key.getStockSymbol() + "~import", key.getInterval());
+                    store.delete(merged);
+                    storedNext = 0;
+                }
+                // the stored bars before the chunk go across as they are, the ones within its range
+                // are merged with it, added after it so that build() keeps the stored ones on a tie
+                final int overlapFrom = Math.max(storedNext, store.indexAtOrAfter(key, first));
+                copyStored(overlapFrom);
+                final int overlapTo = Math.max(overlapFrom, store.indexAtOrAfter(key, bars.getLastTime() + 1));
+                final TickSeries stored = store.read(key, overlapFrom, overlapTo);
+                final TickSeries.Builder union = new TickSeries.Builder(bars.size() + stored.size());
+                union.addAll(bars, 0, bars.size());
+                union.addAll(stored, 0, stored.size());
+                store.merge(merged, union.build());
+                storedNext = overlapTo;
+            }
+            if (key.getInterval() == Timeframe.ONE_MIN && (firstImported < 0 || first < firstImported)) {
+                firstImported = first;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            endSeries();
+        }
+
+        /**
+         * Copies the stored bars that haven't been merged yet, up to the given index, a block at a time.
+         */
+        private void copyStored(final int to) throws IOException {
+            while (storedNext < to) {
+                final int end = Math.min(to, storedNext + SeriesArchive.BLOCK_SIZE);
+                store.merge(merged, store.read(key, storedNext, end));
+                storedNext = end;
+            }
+        }
+
+        private void endSeries() throws IOException {
+            if (key != null && merged != null) {
+                copyStored(store.size(key));
+                store.move(merged, key);
+            }
+            if (key != null && firstImported >= 0) {
+                barPyramid.update(key.getStockSymbol(), store.read(key), firstImported);
+            }
+            key = null;
+            merged = null;
+            firstImported = -1;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.stox.data;
+
+/**
+ * The mean close of the last period bars.
+ */
+public class SimpleMovingAverage extends Indicator {
+
+    private final int period;
+    private final ClosingWindow window;
+
+    public SimpleMovingAverage(final int period) {
+        super("SMA(" + period + ")", true);
+        this.period = period;
+        window = new ClosingWindow(period - 1);
+    }
+
+    @Override
+    void commit(final double close) {
+        window.add(close);
+    }
+
+    @Override
+    double value(final int line, final double close) {
+        return window.isFull() ? (window.getSum() + close) / period : Double.NaN;
+    }
+
+    @Override
+    void reset() {
+        window.clear();
+    }
+}
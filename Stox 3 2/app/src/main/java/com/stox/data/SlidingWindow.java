@@ -0,0 +1,43 @@
+package com.stox.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A log of the times of the last few calls, which lets at most a fixed number of calls through
+ * in any window of the given length. Not thread safe, RateLimiter guards it.
+ */
+final class SlidingWindow {
+
+    private final long windowNanos;
+    // the times of the last calls, oldest at next once the log is full
+    private final long[] calls;
+    private int next;
+    private int count;
+
+    /**
+     * Creates an empty window.
+     * @param capacity the most calls allowed in any window
+     * @param window the window's length
+     * @param unit the window's unit
+     */
+    SlidingWindow(final int capacity, final long window, final TimeUnit unit) {
+        this.windowNanos = unit.toNanos(window);
+        this.calls = new long[capacity];
+    }
+
+    /**
+     * @return how long until the oldest call leaves the window, 0 if a call may go ahead now
+     */
+    long nanosUntilAvailable(final long nowNanos) {
+        if (count < calls.length) {
+            return 0;
+        }
+        return Math.max(0, calls[next] + windowNanos - nowNanos);
+    }
+
+    void take(final long nowNanos) {
+        calls[next] = nowNanos;
+        next = (next + 1) % calls.length;
+        count = Math.min(count + 1, calls.length);
+    }
+}
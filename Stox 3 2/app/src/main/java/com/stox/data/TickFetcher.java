@@ -1,24 +1,101 @@
 package com.stox.data;
 
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Debug;
 import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
-import org.patriques.AlphaVantageConnector;
-import org.patriques.TimeSeries;
-import org.patriques.input.timeseries.Interval;
+import com.stox.BuildConfig;
+
 import org.patriques.input.timeseries.OutputSize;
-import org.patriques.output.AlphaVantageException;
-import org.patriques.output.timeseries.IntraDay;
-import org.patriques.output.timeseries.data.StockData;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TickFetcher {
 
+    // priority of fetches for data the user is looking at
+    public static final int PRIORITY_VISIBLE = 10;
+    // priority of fetches that only warm up the cache and store
+    public static final int PRIORITY_BACKGROUND = 0;
+    // the watchlist that favorites go to unless the user picks another
+    public static final String DEFAULT_WATCHLIST = "Favorites";
+
+    // number of fetches that may talk to AlphaVantage at the same time
+    private static final int MAX_CONCURRENT_FETCHES = 3;
+    // number of fetches that may wait for their turn before we start rejecting them
+    private static final int MAX_QUEUED_FETCHES = 64;
+    // connect and read timeout of each call to AlphaVantage
+    private static final int HTTP_TIMEOUT_MILLIS = 3000;
+    // how often a call that failed to connect or got a server error is repeated
+    private static final int HTTP_MAX_RETRIES = 2;
+    // the first retry waits up to this long
+    private static final long HTTP_RETRY_BASE_MILLIS = 1000;
+    // upper bound for the parsed series we keep in memory
+    private static final long MAX_CACHED_BYTES = 8 * 1024 * 1024;
+    // how long the ticker index is used before it is downloaded again, listings change slowly
+    private static final long TICKER_INDEX_MAX_AGE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+    // the preferences that keep the day's call count, so that restarts don't reset the quota
+    private static final String CALL_DAY = "callDay";
+    private static final String CALL_COUNT = "callCount";
+
     // singleton instance
     private static final TickFetcher instance = new TickFetcher();
 
+    // every call to AlphaVantage counts against the same quota
+    private final RateLimiter rateLimiter = RateLimiter.forAlphaVantage();
+    // one HTTP client for every call, so connections are reused
+    private final HttpClient httpClient = new HttpClient(HTTP_TIMEOUT_MILLIS, HTTP_MAX_RETRIES, HTTP_RETRY_BASE_MILLIS);
+    private final AlphaVantageSource alphaVantageSource = new AlphaVantageSource(httpClient, BuildConfig.ALPHAVANTAGE_API_KEY);
+    // where the bars come from, AlphaVantage unless replaced for load testing
+    private volatile MarketDataSource marketDataSource = alphaVantageSource;
+    private final FetchScheduler scheduler;
+    // disk reads get their own thread so that they never queue up behind slow network calls
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(new FetchThreadFactory());
+    // fetches that are currently queued or running, so that duplicate requests can share them
+    private final ConcurrentMap<SeriesKey, FetchRunnable> inFlight = new ConcurrentHashMap<>();
+    // local copy of everything we have fetched so far, null until initialize is called
+    private volatile TickStore tickStore;
+    // recently fetched series, so that flipping between favorites doesn't go back to the network
+    private final SeriesCache seriesCache = new SeriesCache(MAX_CACHED_BYTES);
+    // price alerts, checked against every batch of fetched one minute bars
+    private final AlertEngine alertEngine = new AlertEngine();
+    // where the alerts are kept and how they are announced, null until initialize is called
+    private volatile AlertStore alertStore;
+    private volatile AlertNotifier alertNotifier;
+    // where the ticker index is kept, null until initialize is called
+    private volatile File tickerIndexFile;
+    // the ticker index, while it is opened or downloaded and once it is open
+    private CompletableFuture<TickerIndex> tickerIndex;
+    // where the watchlists are kept and the preferences they used to be kept in, null until initialize is called
+    private volatile File watchlistFile;
+    private volatile SharedPreferences preferences;
+    // the watchlists, null until they are first asked for
+    private volatile WatchlistStore watchlistStore;
+
     private TickFetcher() {
+        scheduler = new FetchScheduler(rateLimiter, MAX_CONCURRENT_FETCHES, MAX_QUEUED_FETCHES, new FetchThreadFactory());
     }
 
     public static TickFetcher getInstance() {
@@ -26,52 +103,701 @@ public class TickFetcher {
     }
 
     /**
-     * Returns the list of data points for the given stock symbol and interval.
+     * Returns the in-memory cache of parsed series, mainly so its hit and miss counters can be inspected.
+     * @return the series cache
+     */
+    public SeriesCache getSeriesCache() {
+        return seriesCache;
+    }
+
+    /**
+     * Returns the shared HTTP client, mainly so its request and byte counters can be inspected.
+     * @return the HTTP client
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Sets up the on-device tick store. Until this is called every fetch downloads the full history.
+     * @param context any context, used to locate the app's files directory
+     */
+    public synchronized void initialize(final Context context) {
+        if (tickStore == null) {
+            tickStore = new TickStore(new File(context.getApplicationContext().getFilesDir(), "ticks"));
+            tickerIndexFile = new File(context.getApplicationContext().getFilesDir(), "tickers.idx");
+            watchlistFile = new File(context.getApplicationContext().getFilesDir(), "watchlists");
+            preferences = context.getApplicationContext().getSharedPreferences("Stox", Context.MODE_PRIVATE);
+            final SharedPreferences callPreferences = preferences;
+            rateLimiter.setDailyCount(new RateLimiter.DailyCount() {
+                @Override
+                public int load(final long day) {
+                    return callPreferences.getLong(CALL_DAY, -1) == day ? callPreferences.getInt(CALL_COUNT, 0) : 0;
+                }
+
+                @Override
+                public void save(final long day, final int count) {
+                    callPreferences.edit().putLong(CALL_DAY, day).putInt(CALL_COUNT, count).apply();
+                }
+            });
+        }
+        // ART counts the bytes the process allocates, which the stage timings report next to their durations
+        if (Debug.getRuntimeStat("art.gc.bytes-allocated") != null) {
+            Metrics.getInstance().setAllocationCounter(() -> Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated")));
+        }
+        if (alertStore == null) {
+            alertStore = new AlertStore(new File(context.getApplicationContext().getFilesDir(), "alerts"));
+            alertNotifier = new AlertNotifier(context);
+            // read on the disk thread, where saveAlerts() writes, so no save can come before the read
+            final AlertStore store = alertStore;
+            diskExecutor.execute(() -> {
+                try {
+                    alertEngine.addAll(store.read());
+                } catch (final IOException e) {
+                    Log.e("FETCHER", "could not read alerts", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces where bars come from, e.g. with a ReplaySource for load testing. The other source's
+     * bars are kept in a store of their own and the in-memory cache starts out empty, so they never
+     * mix with the bars we already have.
+     * @param source the new source of bars
+     * @param store where to keep the source's bars
+     */
+    public synchronized void setMarketDataSource(final MarketDataSource source, final TickStore store) {
+        marketDataSource = source;
+        tickStore = store;
+        seriesCache.clear();
+    }
+
+    /**
+     * Returns the alert engine, to add and remove alerts. Call saveAlerts() after changing them.
+     * @return the alert engine
+     */
+    public AlertEngine getAlertEngine() {
+        return alertEngine;
+    }
+
+    /**
+     * Asynchronously writes the alerts that haven't fired yet to disk.
+     */
+    public void saveAlerts() {
+        final AlertStore store = alertStore;
+        if (store == null) {
+            return;
+        }
+        diskExecutor.execute(() -> {
+            try {
+                store.write(alertEngine.getAlerts());
+            } catch (final IOException e) {
+                Log.e("FETCHER", "could not save alerts", e);
+            }
+        });
+    }
+
+    /**
+     * Asynchronously opens the index of listed symbols, for type-ahead search and to validate
+     * symbols before fetching them. If there is no index yet it is downloaded first. An index older
+     * than a week is used as it is while a newer one downloads in the background, which later
+     * calls get.
+     * @return a future that completes with the index, empty if there is none and it couldn't be downloaded
+     */
+    public synchronized CompletableFuture<TickerIndex> getTickerIndex() {
+        final File file = tickerIndexFile;
+        if (file == null) {
+            return CompletableFuture.completedFuture(TickerIndex.empty());
+        }
+        if (tickerIndex == null) {
+            tickerIndex = CompletableFuture.supplyAsync(() -> readTickerIndex(file), diskExecutor)
+                    .thenCompose(stored -> {
+                        if (stored.isEmpty()) {
+                            return downloadTickerIndex(file);
+                        }
+                        if (System.currentTimeMillis() - file.lastModified() > TICKER_INDEX_MAX_AGE_MILLIS) {
+                            downloadTickerIndex(file);
+                        }
+                        return CompletableFuture.completedFuture(stored);
+                    });
+        }
+        return tickerIndex;
+    }
+
+    /**
+     * Opens the watchlists the first time they are asked for. The favorites that older versions
+     * kept as a string set in the "Stox" preferences become the watchlist DEFAULT_WATCHLIST.
+     * @return the watchlists, kept in memory only if initialize() hasn't been called or the file
+     * couldn't be opened
+     */
+    public synchronized WatchlistStore getWatchlistStore() {
+        if (watchlistStore != null) {
+            return watchlistStore;
+        }
+        final File file = watchlistFile;
+        WatchlistStore store = null;
+        if (file != null) {
+            try {
+                store = WatchlistStore.open(file);
+            } catch (final IOException e) {
+                Log.e("FETCHER", "could not open the watchlists, starting over", e);
+                file.renameTo(new File(file.getPath() + ".bad"));
+            }
+        }
+        try {
+            if (store == null) {
+                store = WatchlistStore.open(file != null ? file
+                        : File.createTempFile("watchlists", null));
+            }
+            migrateFavorites(store);
+        } catch (final IOException e) {
+            throw new IllegalStateException("could not create the watchlists", e);
+        }
+        watchlistStore = store;
+        return store;
+    }
+
+    /**
+     * Asynchronously opens the watchlists on the disk thread, replaying their journal and moving
+     * the old favorites over if need be, see getWatchlistStore().
+     * @return a future that completes with the watchlists
+     */
+    public CompletableFuture<WatchlistStore> openWatchlistStore() {
+        return CompletableFuture.supplyAsync(this::getWatchlistStore, diskExecutor);
+    }
+
+    /**
+     * A change to the watchlists, see changeWatchlists().
+     */
+    public interface WatchlistChange<T> {
+        T apply(WatchlistStore store) throws IOException;
+    }
+
+    /**
+     * Asynchronously changes the watchlists on the disk thread, where the change is written to the
+     * journal and the journal compacted, opening the watchlists first if need be. Listeners hear
+     * about the change on the disk thread.
+     * @param change the change to make
+     * @return a future that completes with the change's result
+     */
+    public <T> CompletableFuture<T> changeWatchlists(final WatchlistChange<T> change) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        diskExecutor.execute(() -> {
+            try {
+                future.complete(change.apply(getWatchlistStore()));
+            } catch (final IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private void migrateFavorites(final WatchlistStore store) throws IOException {
+        final SharedPreferences sharedPreferences = preferences;
+        final Set<String> favorites = sharedPreferences == null ? null : sharedPreferences.getStringSet("favorites", null);
+        if (favorites == null) {
+            return;
+        }
+        // the set had no order, alphabetical is the least surprising one
+        for (final String favorite : new TreeSet<>(favorites)) {
+            store.add(DEFAULT_WATCHLIST, favorite);
+        }
+        sharedPreferences.edit().remove("favorites").apply();
+        Log.d("FETCHER", "moved " + favorites.size() + " favorites to the watchlist store");
+    }
+
+    /**
+     * @return where the bars currently come from
+     */
+    public MarketDataSource getMarketDataSource() {
+        return marketDataSource;
+    }
+
+    /**
+     * Asynchronously reads the bars we already have on disk for the given stock symbol and interval,
+     * without going to the network.
      * @param stockSymbol symbol (AMZN, MSFT, etc.)
      * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
-     * @return list of data points
+     * @return a future that completes with the stored series, empty if nothing is stored
      */
-    public List<StockData> getData(final String stockSymbol, final Interval interval) {
-        final FetchRunnable fetchRunnable = new FetchRunnable(stockSymbol, interval);
-        final Thread thread = new Thread(fetchRunnable);
-        thread.run();
+    public CompletableFuture<TickSeries> getStoredData(final String stockSymbol, final Timeframe interval) {
+        final SeriesKey key = keyFor(stockSymbol, interval);
+        return CompletableFuture.supplyAsync(() -> readStored(key), diskExecutor);
+    }
+
+    /**
+     * Asynchronously exports the stored bars of the given symbols and intervals to a file, as a
+     * compact SeriesArchive or as CSV. Series with nothing stored are skipped.
+     * @param stockSymbols symbols (AMZN, MSFT, etc.)
+     * @param intervals intervals to export of each symbol
+     * @param file the file to write, replaced if it exists
+     * @param csv true to write CSV rather than an archive
+     * @return a future that completes with the number of bars exported
+     */
+    public CompletableFuture<Long> exportSeries(final List<String> stockSymbols, final List<Timeframe> intervals,
+                                                final File file, final boolean csv) {
+        final List<SeriesKey> keys = new ArrayList<>();
+        for (final String stockSymbol : stockSymbols) {
+            for (final Timeframe interval : intervals) {
+                keys.add(keyFor(stockSymbol, interval));
+            }
+        }
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+        diskExecutor.execute(() -> {
+            final TickStore store = tickStore;
+            final Metrics.Timer timer = Metrics.getInstance().start("series.export");
+            try (SeriesSink sink = csv
+                    ? new SeriesCsv.Writer(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))
+                    : new SeriesArchive.Writer(new FileOutputStream(file))) {
+                future.complete(store == null ? 0L : new SeriesTransfer(store).exportTo(keys, sink));
+            } catch (final IOException e) {
+                Log.e("FETCHER", "could not export series to " + file, e);
+                future.completeExceptionally(e);
+            } finally {
+                timer.stop();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Asynchronously writes the stage timings to a CSV file, headed by comment lines describing the
+     * device and the cache and HTTP counters, for comparing runs across devices.
+     * @param file the file to write
+     * @param device a line describing the device and build
+     * @return a future that completes once the file is written
+     */
+    public CompletableFuture<Void> exportMetrics(final File file, final String device) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        diskExecutor.execute(() -> {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                writer.write("# " + device + "\n");
+                writer.write("# " + seriesCache + "\n");
+                writer.write("# HttpClient{requests=" + httpClient.getRequestCount() + ", retries="
+                        + httpClient.getRetryCount() + ", unchanged=" + httpClient.getUnchangedCount()
+                        + ", bytes=" + httpClient.getBytesReceived() + "}\n");
+                writer.write(Metrics.getInstance().dump());
+            } catch (final IOException e) {
+                Log.e("FETCHER", "could not export metrics to " + file, e);
+                future.completeExceptionally(e);
+                return;
+            }
+            future.complete(null);
+        });
+        return future;
+    }
+
+    /**
+     * Asynchronously imports the series in a file written by exportSeries(), read as CSV if its
+     * name ends in .csv. Imported bars are merged into the store, keeping stored bars where both
+     * have one, and the in-memory cache is cleared so that the next request sees them.
+     * @param file the file to read
+     * @return a future that completes with the imported symbols
+     */
+    public CompletableFuture<Set<String>> importSeries(final File file) {
+        final CompletableFuture<Set<String>> future = new CompletableFuture<>();
+        diskExecutor.execute(() -> {
+            final TickStore store = tickStore;
+            if (store == null) {
+                future.completeExceptionally(new IOException("no tick store to import into"));
+                return;
+            }
+            final Metrics.Timer timer = Metrics.getInstance().start("series.import");
+            final Set<String> stockSymbols = new TreeSet<>();
+            try (SeriesSink importer = new SeriesTransfer(store).importer()) {
+                final SeriesSink sink = new SeriesSink() {
+                    @Override
+                    public void beginSeries(final String stockSymbol, final Timeframe interval) throws IOException {
+                        final SeriesKey key = keyFor(stockSymbol, interval);
+                        // the symbol names a file in the tick store, so it must not be able to point elsewhere
+                        SeriesTransfer.checkStockSymbol(key.getStockSymbol());
+                        stockSymbols.add(key.getStockSymbol());
+                        importer.beginSeries(key.getStockSymbol(), interval);
+                    }
+
+                    @Override
+                    public void addBars(final TickSeries bars) throws IOException {
+                        importer.addBars(bars);
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+                if (file.getName().toLowerCase(Locale.US).endsWith(".csv")) {
+                    SeriesCsv.read(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), sink);
+                } else {
+                    SeriesArchive.read(file, sink);
+                }
+            } catch (final IOException e) {
+                Log.e("FETCHER", "could not import series from " + file, e);
+                future.completeExceptionally(e);
+                return;
+            } finally {
+                seriesCache.clear();
+                timer.stop();
+            }
+            future.complete(stockSymbols);
+        });
+        return future;
+    }
+
+    /**
+     * Asynchronously fetches the bars for the given stock symbol and interval.
+     * Series fetched within their interval's time to live are served from memory, and
+     * concurrent requests for the same symbol and interval share a single network call.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @return a future that completes with the series, or exceptionally if the fetch failed
+     */
+    public CompletableFuture<TickSeries> getData(final String stockSymbol, final Timeframe interval) {
+        final SeriesKey key = keyFor(stockSymbol, interval);
+
+        final TickSeries cached = seriesCache.get(key, SystemClock.elapsedRealtime());
+        if (cached != null) {
+            Log.d("FETCHER", "served " + key + " from memory, " + seriesCache);
+            return CompletableFuture.completedFuture(cached);
+        }
+        return fetch(key, PRIORITY_VISIBLE);
+    }
+
+    /**
+     * Asynchronously returns coarser bars for the given stock symbol, rolled up locally from its one
+     * minute bars instead of fetched. Only the one minute bars are fetched, and only if the ones in
+     * memory have expired, so switching between these intervals costs no API calls.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param interval FIVE_MIN, FIFTEEN_MIN, THIRTY_MIN, SIXTY_MIN or DAILY
+     * @return a future that completes with the series, or exceptionally if the fetch failed
+     */
+    public CompletableFuture<TickSeries> getAggregatedData(final String stockSymbol, final Timeframe interval) {
+        if (!BarPyramid.isLevel(interval)) {
+            throw new IllegalArgumentException("not rolled up from one minute bars: " + interval);
+        }
+        final SeriesKey key = keyFor(stockSymbol, interval);
+        return getData(stockSymbol, Timeframe.ONE_MIN)
+                .thenApplyAsync(oneMinute -> readAggregated(key, oneMinute), diskExecutor);
+    }
+
+    /**
+     * Asynchronously fetches the newest bars for the given stock symbol and interval, even if the
+     * series we hold in memory hasn't expired yet.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @param priority PRIORITY_VISIBLE or PRIORITY_BACKGROUND, higher priority fetches get the API quota first
+     * @return a future that completes with the series, or exceptionally if the fetch failed
+     */
+    public CompletableFuture<TickSeries> refreshData(final String stockSymbol, final Timeframe interval, final int priority) {
+        return fetch(keyFor(stockSymbol, interval), priority);
+    }
+
+    /**
+     * Starts a fetch for the given series, or joins the one that is already in flight
+     * and raises its priority if needed.
+     */
+    private CompletableFuture<TickSeries> fetch(final SeriesKey key, final int priority) {
+        final FetchRunnable fetchRunnable = new FetchRunnable(key, priority);
+        final FetchRunnable existing = inFlight.putIfAbsent(key, fetchRunnable);
+        if (existing != null) {
+            // someone already asked for this series, piggyback on their call
+            scheduler.raisePriority(existing, priority);
+            return existing.future;
+        }
+        fetchRunnable.future.whenComplete((tickSeries, throwable) -> inFlight.remove(key, fetchRunnable));
+
         try {
-            thread.join();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            scheduler.submit(fetchRunnable);
+        } catch (final RejectedExecutionException e) {
+            fetchRunnable.future.completeExceptionally(e);
         }
+        return fetchRunnable.future;
+    }
 
-        return fetchRunnable.stockData;
+    private static SeriesKey keyFor(final String stockSymbol, final Timeframe interval) {
+        return new SeriesKey(stockSymbol.trim().toUpperCase(Locale.US), interval);
+    }
+
+    /**
+     * Reads the stored bars for the given series, treating an unreadable store as empty.
+     */
+    private TickSeries readStored(final SeriesKey key) {
+        final TickStore store = tickStore;
+        if (store == null) {
+            return TickSeries.empty();
+        }
+        try {
+            return store.read(key);
+        } catch (final IOException e) {
+            Log.e("FETCHER", "could not read stored ticks for " + key, e);
+            return TickSeries.empty();
+        }
+    }
+
+    /**
+     * Returns the timestamp of the newest stored bar for the given symbol and interval, e.g. to
+     * refresh the stalest symbols first.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @return the newest timestamp in TickSeries encoding, or -1 if nothing is stored or readable
+     */
+    long getStoredLastTime(final String stockSymbol, final Timeframe interval) {
+        final TickStore store = tickStore;
+        if (store == null) {
+            return -1;
+        }
+        final SeriesKey key = keyFor(stockSymbol, interval);
+        try {
+            return store.lastTimestamp(key);
+        } catch (final IOException e) {
+            Log.e("FETCHER", "could not read stored ticks for " + key, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Opens the stored ticker index, treating an unreadable one as empty so that it is downloaded again.
+     */
+    private static TickerIndex readTickerIndex(final File file) {
+        try {
+            return TickerIndex.open(file);
+        } catch (final IOException e) {
+            Log.e("FETCHER", "could not open the ticker index", e);
+            return TickerIndex.empty();
+        }
+    }
+
+    /**
+     * Downloads the listings into a new ticker index, at background priority since it only
+     * matters once the user types. Later calls to getTickerIndex() get the new index, or try
+     * again if the download failed.
+     */
+    private CompletableFuture<TickerIndex> downloadTickerIndex(final File file) {
+        final TickerIndexDownload download = new TickerIndexDownload(file);
+        try {
+            scheduler.submit(download);
+        } catch (final RejectedExecutionException e) {
+            download.future.completeExceptionally(e);
+        }
+        return download.future.handle((index, throwable) -> {
+            synchronized (this) {
+                tickerIndex = throwable == null ? CompletableFuture.completedFuture(index) : null;
+            }
+            return throwable == null ? index : TickerIndex.empty();
+        });
+    }
+
+    /**
+     * Reads a level of the bar pyramid, rolling it up in memory if there is no store to read it from.
+     */
+    private TickSeries readAggregated(final SeriesKey key, final TickSeries oneMinute) {
+        final TickStore store = tickStore;
+        if (store != null) {
+            try {
+                return new BarPyramid(store).read(key.getStockSymbol(), key.getInterval(), oneMinute);
+            } catch (final IOException e) {
+                Log.e("FETCHER", "could not read aggregated ticks for " + key, e);
+            }
+        }
+        return BarPyramid.rollUp(oneMinute, key.getInterval());
     }
 
     /**
      * A job class for the actual data fetch, so that we can run it on a background thread.
+     * If we already hold data for the series only the most recent bars are downloaded and merged in.
+     * The scheduler has already counted the first download against the rate limiter, if the source has one.
+     */
+    private class FetchRunnable extends FetchScheduler.Task {
+        final SeriesKey key;
+        final MarketDataSource source = marketDataSource;
+        final CompletableFuture<TickSeries> future = new CompletableFuture<>();
+        final long createdNanos = System.nanoTime();
+
+        public FetchRunnable(final SeriesKey key, final int priority) {
+            super(priority);
+            this.key = key;
+        }
+
+        @Override
+        boolean isRateLimited() {
+            return source.isRateLimited();
+        }
+
+        @Override
+        public void run() {
+            final Metrics metrics = Metrics.getInstance();
+            // waiting for a thread and for the API quota
+            metrics.record("fetch.queued", System.nanoTime() - createdNanos);
+            final Metrics.Timer totalTimer = metrics.start("fetch.total");
+            // failed fetches are timed under fetch.failed, fetch.total and its stages only cover those that worked
+            final long startNanos = System.nanoTime();
+            try {
+                // the copy in memory, fresh or not, saves reading the whole series back from disk
+                final TickSeries inMemory = seriesCache.peek(key);
+                final Metrics.Timer readTimer = metrics.start(inMemory != null ? "fetch.memory" : "fetch.disk");
+                final TickSeries stored = inMemory != null ? inMemory : readStored(key);
+                readTimer.stop();
+
+                // we only need the bars we don't have yet, plus the newest stored one since it may
+                // have been incomplete, so the parser can stop reading as soon as it gets there
+                final long since = stored.isEmpty() ? TimeSeriesParser.ALL : stored.getLastTime();
+                final Metrics.Timer sourceTimer = metrics.start("fetch.source");
+                TickSeries newer = source.fetch(key, stored.isEmpty() ? OutputSize.FULL : OutputSize.COMPACT, since);
+                if (!stored.isEmpty() && !newer.isEmpty() && newer.getTime(0) > since) {
+                    // the compact response doesn't reach back to what we have, so there would be a gap
+                    if (source.isRateLimited()) {
+                        rateLimiter.acquire();
+                    }
+                    newer = source.fetch(key, OutputSize.FULL, since);
+                }
+                sourceTimer.stop();
+                final Metrics.Timer mergeTimer = metrics.start("fetch.merge");
+                final TickSeries result = stored.merge(newer);
+                mergeTimer.stop();
+                final Metrics.Timer storeTimer = metrics.start("fetch.store");
+                store(newer, result);
+                storeTimer.stop();
+                seriesCache.put(key, result, SystemClock.elapsedRealtime());
+                totalTimer.stop();
+                future.complete(result);
+                if (key.getInterval() == Timeframe.ONE_MIN) {
+                    final Metrics.Timer alertsTimer = metrics.start("fetch.alerts");
+                    checkAlerts(result);
+                    alertsTimer.stop();
+                    updateQuote(result);
+                }
+            } catch (final IOException | RuntimeException e) {
+                // MarketDataException for an unknown symbol, or a network or parse error
+                Log.e("FETCHER", "exception while fetching tick data for " + key, e);
+                if (future.completeExceptionally(e)) {
+                    metrics.record("fetch.failed", System.nanoTime() - startNanos);
+                }
+            } catch (final InterruptedException e) {
+                if (future.completeExceptionally(e)) {
+                    metrics.record("fetch.failed", System.nanoTime() - startNanos);
+                }
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void checkAlerts(final TickSeries result) {
+            final List<Alert> fired = alertEngine.evaluate(key.getStockSymbol(), result);
+            final AlertNotifier notifier = alertNotifier;
+            if (fired.isEmpty() || notifier == null) {
+                return;
+            }
+            Log.d("FETCHER", "fired " + fired);
+            notifier.notify(fired, result);
+            saveAlerts();
+        }
+
+        private void updateQuote(final TickSeries result) {
+            final Quote quote = Quote.of(result);
+            if (watchlistStore == null || quote == null) {
+                return;
+            }
+            // the journal is written on the disk thread only, like every other watchlist change
+            changeWatchlists(store -> store.updateQuote(key.getStockSymbol(), quote)).exceptionally(e -> {
+                Log.e("FETCHER", "could not save the quote of " + key, e);
+                return null;
+            });
+        }
+
+        private void store(final TickSeries newer, final TickSeries result) {
+            final TickStore store = tickStore;
+            if (store == null || newer.isEmpty()) {
+                return;
+            }
+            try {
+                store.merge(key, newer);
+                if (key.getInterval() == Timeframe.ONE_MIN) {
+                    // keep the coarser timeframes in step, so switching to them needs no fetch
+                    new BarPyramid(store).update(key.getStockSymbol(), result, newer.getTime(0));
+                }
+            } catch (final IOException e) {
+                // not fatal, we will just download more next time, as long as the source doesn't
+                // take the same response for one we already have
+                Log.e("FETCHER", "could not store ticks for " + key, e);
+                source.forget(key);
+            }
+        }
+    }
+
+    /**
+     * Downloads AlphaVantage's listings and writes them as the ticker index. It costs one call of
+     * the API quota like any other fetch.
      */
-    private static class FetchRunnable implements Runnable {
-        String stockSymbol;
-        Interval interval;
-        List<StockData> stockData;
+    private class TickerIndexDownload extends FetchScheduler.Task {
+        final File file;
+        final CompletableFuture<TickerIndex> future = new CompletableFuture<>();
 
-        public FetchRunnable(final String stockSymbol, final Interval interval) {
-            this.stockSymbol = stockSymbol;
-            this.interval = interval;
+        TickerIndexDownload(final File file) {
+            super(PRIORITY_BACKGROUND);
+            this.file = file;
         }
 
         @Override
         public void run() {
-            // send this thread to the background
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            // connect to AlphaVantage with our API key
-            final AlphaVantageConnector connector = new AlphaVantageConnector("1NDS61W4M4GFPFJA", 3000);
-            // get and return data
-            final TimeSeries stockTimeSeries = new TimeSeries(connector);
+            final Metrics.Timer timer = Metrics.getInstance().start("tickers.download");
+            try {
+                TickerIndex.Builder listings = alphaVantageSource.fetchListings();
+                if (listings == null) {
+                    // the same listings as last time, the index we have is up to date if it's still there
+                    final TickerIndex index = openUnchanged();
+                    if (index != null) {
+                        file.setLastModified(System.currentTimeMillis());
+                        timer.stop();
+                        future.complete(index);
+                        return;
+                    }
+                    // it isn't, so we need the listings after all
+                    alphaVantageSource.forgetListings();
+                    rateLimiter.acquire();
+                    listings = alphaVantageSource.fetchListings();
+                }
+                if (listings == null || listings.size() == 0) {
+                    throw new IOException("no listings");
+                }
+                listings.writeTo(file);
+                Log.d("FETCHER", "indexed " + listings.size() + " listings");
+                timer.stop();
+                future.complete(TickerIndex.open(file));
+            } catch (final IOException | RuntimeException e) {
+                Log.e("FETCHER", "could not download the ticker index", e);
+                future.completeExceptionally(e);
+            } catch (final InterruptedException e) {
+                future.completeExceptionally(e);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * @return the index written from the last listings, or null if it is missing, empty or unreadable
+         */
+        private TickerIndex openUnchanged() {
             try {
-                final IntraDay response = stockTimeSeries.intraDay(stockSymbol, interval, OutputSize.FULL);
-                stockData = response.getStockData();
-            } catch (final AlphaVantageException e) {
-                Log.e("FETCHER", "exception while fetching tick data", e);
+                final TickerIndex index = TickerIndex.open(file);
+                return index.isEmpty() ? null : index;
+            } catch (final IOException e) {
+                Log.e("FETCHER", "could not open the ticker index", e);
+                return null;
             }
         }
     }
 
+    /**
+     * Creates the fetch scheduler's and the disk executor's threads at background priority.
+     */
+    private static class FetchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(() -> {
+                // send this thread to the background
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "TickFetcher-" + count.incrementAndGet());
+        }
+    }
+
 }
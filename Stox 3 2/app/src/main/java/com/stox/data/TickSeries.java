@@ -0,0 +1,344 @@
+package com.stox.data;
+
+import org.patriques.output.timeseries.data.StockData;
+
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable, column oriented series of bars sorted by ascending timestamp.
+ *
+ * Each column is a primitive array, so reading a bar never allocates. Timestamps are seconds since
+ * the epoch of the exchange's local time encoded as if it were UTC: they round trip to the same
+ * LocalDateTime AlphaVantage gave us, and the calendar day of a bar is simply timestamp / 86400.
+ */
+public final class TickSeries {
+
+    public static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    // bytes of column data per bar: time, open, high, low, close and volume
+    static final int BYTES_PER_BAR = 6 * 8;
+
+    private static final TickSeries EMPTY = new Builder(0).build();
+
+    private final int size;
+    private final long[] times;
+    private final double[] opens;
+    private final double[] highs;
+    private final double[] lows;
+    private final double[] closes;
+    private final long[] volumes;
+
+    private TickSeries(final int size, final long[] times, final double[] opens, final double[] highs,
+                       final double[] lows, final double[] closes, final long[] volumes) {
+        this.size = size;
+        this.times = times;
+        this.opens = opens;
+        this.highs = highs;
+        this.lows = lows;
+        this.closes = closes;
+        this.volumes = volumes;
+    }
+
+    public static TickSeries empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a series from AlphaVantage's data points, which usually arrive newest first.
+     * @param stockData data points in any order, with unique timestamps
+     * @return the series sorted by ascending timestamp
+     */
+    public static TickSeries fromStockData(final List<StockData> stockData) {
+        final int count = stockData.size();
+        final Builder builder = new Builder(count);
+        for (int i = 0; i < count; i++) {
+            final StockData bar = stockData.get(i);
+            builder.add(bar.getDateTime().toEpochSecond(ZoneOffset.UTC),
+                    bar.getOpen(), bar.getHigh(), bar.getLow(), bar.getClose(), bar.getVolume());
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTime(final int index) {
+        return times[index];
+    }
+
+    public double getOpen(final int index) {
+        return opens[index];
+    }
+
+    public double getHigh(final int index) {
+        return highs[index];
+    }
+
+    public double getLow(final int index) {
+        return lows[index];
+    }
+
+    public double getClose(final int index) {
+        return closes[index];
+    }
+
+    public long getVolume(final int index) {
+        return volumes[index];
+    }
+
+    /**
+     * @return the timestamp of the newest bar
+     * @throws IndexOutOfBoundsException if the series is empty
+     */
+    public long getLastTime() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("empty series");
+        }
+        return times[size - 1];
+    }
+
+    /**
+     * Binary searches for the first bar at or after the given timestamp.
+     * @param time timestamp in the series' encoding
+     * @return the bar's index, or size() if every bar is older
+     */
+    public int indexAtOrAfter(final long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns this series with newer bars merged in. Bars at or after the first new timestamp are
+     * replaced by the new ones, since the most recent bar may still have been forming.
+     * @param newer bars to merge in
+     * @return the merged series, this series if there was nothing to merge
+     */
+    public TickSeries merge(final TickSeries newer) {
+        if (newer.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return newer;
+        }
+        final int kept = indexAtOrAfter(newer.times[0]);
+        final Builder builder = new Builder(kept + newer.size);
+        builder.addAll(this, 0, kept);
+        builder.addAll(newer, 0, newer.size);
+        return builder.build();
+    }
+
+    /**
+     * Returns the bars in [from, to) as their own series.
+     */
+    public TickSeries slice(final int from, final int to) {
+        if (from == 0 && to == size) {
+            return this;
+        }
+        final Builder builder = new Builder(to - from);
+        builder.addAll(this, from, to);
+        return builder.build();
+    }
+
+    /**
+     * @return the approximate number of heap bytes the series occupies
+     */
+    public long sizeBytes() {
+        return (long) times.length * BYTES_PER_BAR;
+    }
+
+    /**
+     * Collects bars into a series. Bars may be added in ascending or descending order (or, rarely,
+     * any order); build() puts them in ascending order without boxing.
+     */
+    public static final class Builder {
+        private int size;
+        private long[] times;
+        private double[] opens;
+        private double[] highs;
+        private double[] lows;
+        private double[] closes;
+        private long[] volumes;
+
+        public Builder(final int expectedSize) {
+            final int capacity = Math.max(expectedSize, 16);
+            times = new long[capacity];
+            opens = new double[capacity];
+            highs = new double[capacity];
+            lows = new double[capacity];
+            closes = new double[capacity];
+            volumes = new long[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Builder add(final long time, final double open, final double high, final double low,
+                           final double close, final long volume) {
+            if (size == times.length) {
+                grow();
+            }
+            times[size] = time;
+            opens[size] = open;
+            highs[size] = high;
+            lows[size] = low;
+            closes[size] = close;
+            volumes[size] = volume;
+            size++;
+            return this;
+        }
+
+        Builder addAll(final TickSeries series, final int from, final int to) {
+            final int count = to - from;
+            while (size + count > times.length) {
+                grow();
+            }
+            System.arraycopy(series.times, from, times, size, count);
+            System.arraycopy(series.opens, from, opens, size, count);
+            System.arraycopy(series.highs, from, highs, size, count);
+            System.arraycopy(series.lows, from, lows, size, count);
+            System.arraycopy(series.closes, from, closes, size, count);
+            System.arraycopy(series.volumes, from, volumes, size, count);
+            size += count;
+            return this;
+        }
+
+        public TickSeries build() {
+            if (!isAscending()) {
+                if (isDescending()) {
+                    reverse();
+                } else {
+                    sort();
+                }
+            }
+            return new TickSeries(size, times, opens, highs, lows, closes, volumes);
+        }
+
+        private boolean isAscending() {
+            for (int i = 1; i < size; i++) {
+                if (times[i - 1] >= times[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isDescending() {
+            for (int i = 1; i < size; i++) {
+                if (times[i - 1] <= times[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                swap(i, j);
+            }
+        }
+
+        /**
+         * Sorts the bars by timestamp, keeping the bar added last of each duplicate timestamp. Used
+         * for input that is neither ascending nor descending, which AlphaVantage doesn't normally
+         * send but unions of stored and imported bars are.
+         */
+        private void sort() {
+            final int[] order = sortedOrder();
+
+            final Builder sorted = new Builder(size);
+            for (int i = 0; i < size; i++) {
+                final int index = order[i];
+                if (sorted.size > 0 && sorted.times[sorted.size - 1] == times[index]) {
+                    sorted.size--;
+                }
+                sorted.add(times[index], opens[index], highs[index], lows[index], closes[index], volumes[index]);
+            }
+            size = sorted.size;
+            times = sorted.times;
+            opens = sorted.opens;
+            highs = sorted.highs;
+            lows = sorted.lows;
+            closes = sorted.closes;
+            volumes = sorted.volumes;
+        }
+
+        /**
+         * Merge sorts the bars' indices by timestamp. The sort is stable, so of several bars with
+         * the same timestamp the one added last still comes last, and it works for any number of
+         * bars without boxing them.
+         */
+        private int[] sortedOrder() {
+            int[] order = new int[size];
+            int[] buffer = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            for (int width = 1; width < size; width *= 2) {
+                for (int from = 0; from < size; from += 2 * width) {
+                    final int middle = Math.min(from + width, size);
+                    final int to = Math.min(from + 2 * width, size);
+                    int left = from;
+                    int right = middle;
+                    for (int i = from; i < to; i++) {
+                        if (left < middle && (right >= to || times[order[left]] <= times[order[right]])) {
+                            buffer[i] = order[left++];
+                        } else {
+                            buffer[i] = order[right++];
+                        }
+                    }
+                }
+                final int[] swapped = order;
+                order = buffer;
+                buffer = swapped;
+            }
+            return order;
+        }
+
+        private void swap(final int i, final int j) {
+            final long time = times[i];
+            times[i] = times[j];
+            times[j] = time;
+            final double open = opens[i];
+            opens[i] = opens[j];
+            opens[j] = open;
+            final double high = highs[i];
+            highs[i] = highs[j];
+            highs[j] = high;
+            final double low = lows[i];
+            lows[i] = lows[j];
+            lows[j] = low;
+            final double close = closes[i];
+            closes[i] = closes[j];
+            closes[j] = close;
+            final long volume = volumes[i];
+            volumes[i] = volumes[j];
+            volumes[j] = volume;
+        }
+
+        private void grow() {
+            final int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            opens = Arrays.copyOf(opens, capacity);
+            highs = Arrays.copyOf(highs, capacity);
+            lows = Arrays.copyOf(lows, capacity);
+            closes = Arrays.copyOf(closes, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+        }
+    }
+}
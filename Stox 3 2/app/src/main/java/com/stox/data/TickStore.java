@@ -0,0 +1,211 @@
+package com.stox.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * On-device store of tick data, one append-only binary file per symbol and interval.
+ *
+ * A file starts with a small header followed by fixed size records sorted by timestamp:
+ * epoch second, open, high, low, close and volume. Timestamps use the same encoding as TickSeries.
+ */
+public class TickStore {
+
+    private static final int MAGIC = 0x53544B31; // "STK1"
+    private static final int HEADER_SIZE = 4;
+    static final int RECORD_SIZE = 8 + 4 * 8 + 8;
+
+    private final File directory;
+
+    public TickStore(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads every stored bar for the given series.
+     * @param key the series to read
+     * @return the bars sorted by ascending timestamp, empty if nothing is stored
+     */
+    public TickSeries read(final SeriesKey key) throws IOException {
+        return read(key, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a range of stored bars for the given series, e.g. to stream a long series in chunks.
+     * @param key the series to read
+     * @param from index of the first bar to read
+     * @param to index after the last bar to read, clamped to the number of stored bars
+     * @return the bars sorted by ascending timestamp, empty if none are stored in the range
+     */
+    public synchronized TickSeries read(final SeriesKey key, final int from, final int to) throws IOException {
+        final File file = fileFor(key);
+        if (!file.exists()) {
+            return TickSeries.empty();
+        }
+
+        final int count = Math.min(to, recordCount(file)) - from;
+        if (count <= 0) {
+            return TickSeries.empty();
+        }
+        final TickSeries.Builder builder = new TickSeries.Builder(count);
+        try (FileInputStream stream = new FileInputStream(file)) {
+            // the header is checked unbuffered so the stream can then skip straight to the range
+            if (new DataInputStream(stream).readInt() != MAGIC) {
+                throw new IOException("not a tick file: " + file);
+            }
+            stream.getChannel().position(offsetOf(from));
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            for (int i = 0; i < count; i++) {
+                builder.add(in.readLong(), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(),
+                        in.readLong());
+            }
+        } catch (final EOFException e) {
+            // a torn write at the end of the file, keep what we could read
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of stored bars for the given series.
+     * @param key the series to look at
+     * @return the number of bars, 0 if nothing is stored
+     */
+    public synchronized int size(final SeriesKey key) {
+        final File file = fileFor(key);
+        return file.exists() ? recordCount(file) : 0;
+    }
+
+    /**
+     * Binary searches the stored bars for the first one at or after the given timestamp.
+     * @param key the series to look at
+     * @param epochSecond timestamp in TickSeries encoding
+     * @return the bar's index, or size(key) if every stored bar is older
+     */
+    public synchronized int indexAtOrAfter(final SeriesKey key, final long epochSecond) throws IOException {
+        final File file = fileFor(key);
+        final int count = file.exists() ? recordCount(file) : 0;
+        if (count == 0) {
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return firstIndexAtOrAfter(raf, count, epochSecond);
+        }
+    }
+
+    /**
+     * Returns the timestamp of the newest stored bar for the given series.
+     * @param key the series to look at
+     * @return the newest timestamp, or -1 if nothing is stored
+     */
+    public synchronized long lastTimestamp(final SeriesKey key) throws IOException {
+        final File file = fileFor(key);
+        final int count = file.exists() ? recordCount(file) : 0;
+        if (count == 0) {
+            return -1;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offsetOf(count - 1));
+            return raf.readLong();
+        }
+    }
+
+    /**
+     * Merges newer bars into the store. Stored bars at or after the first new timestamp are replaced
+     * (the most recent bar may still have been forming when it was stored), everything else is
+     * appended to the end of the file.
+     * @param key the series to update
+     * @param newer bars to merge in
+     */
+    public synchronized void merge(final SeriesKey key, final TickSeries newer) throws IOException {
+        if (newer.isEmpty()) {
+            return;
+        }
+        final File file = fileFor(key);
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            directory.mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                out.writeInt(MAGIC);
+            }
+        }
+
+        final long firstNew = newer.getTime(0);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // drop a torn record and anything the new data supersedes
+            raf.setLength(offsetOf(firstIndexAtOrAfter(raf, recordCount(file), firstNew)));
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (int i = 0; i < newer.size(); i++) {
+                out.writeLong(newer.getTime(i));
+                out.writeDouble(newer.getOpen(i));
+                out.writeDouble(newer.getHigh(i));
+                out.writeDouble(newer.getLow(i));
+                out.writeDouble(newer.getClose(i));
+                out.writeLong(newer.getVolume(i));
+            }
+        }
+    }
+
+    /**
+     * Removes every stored bar of the given series.
+     * @param key the series to remove
+     */
+    public synchronized void delete(final SeriesKey key) throws IOException {
+        final File file = fileFor(key);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("could not delete " + file);
+        }
+    }
+
+    /**
+     * Replaces the stored bars of one series with those of another, e.g. one that a merge was
+     * written to, in a single rename. The other series is left empty.
+     * @param from the series whose bars to keep
+     * @param to the series to replace
+     */
+    public synchronized void move(final SeriesKey from, final SeriesKey to) throws IOException {
+        final File source = fileFor(from);
+        final File target = fileFor(to);
+        if (!source.renameTo(target)) {
+            throw new IOException("could not replace " + target + " with " + source);
+        }
+    }
+
+    /**
+     * Binary searches the sorted records for the first one at or after the given timestamp.
+     */
+    private static int firstIndexAtOrAfter(final RandomAccessFile raf, final int count, final long epochSecond) throws IOException {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            raf.seek(offsetOf(mid));
+            if (raf.readLong() < epochSecond) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int recordCount(final File file) {
+        return (int) (Math.max(0, file.length() - HEADER_SIZE) / RECORD_SIZE);
+    }
+
+    private static long offsetOf(final int index) {
+        return HEADER_SIZE + (long) index * RECORD_SIZE;
+    }
+
+    private File fileFor(final SeriesKey key) {
+        return new File(directory, key.getStockSymbol() + "_" + key.getInterval().name() + ".ticks");
+    }
+}
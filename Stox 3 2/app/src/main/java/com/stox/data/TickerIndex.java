@@ -0,0 +1,454 @@
+package com.stox.data;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A read-only index of every listed ticker and its company name, memory mapped from a file so that
+ * opening it costs nothing and searching it allocates only the results.
+ *
+ * The file has a header (magic, symbol count, word count), then the symbols sorted by their bytes,
+ * then the words of every company name sorted by their bytes, then the names. Symbols and words are
+ * fixed size records padded to WIDTH bytes, so they are binary searched in place:
+ * a symbol record is the symbol and the offset of its name, a word record is the (lower case) word
+ * and the index of its symbol. Each name is a two byte length followed by its UTF-8 bytes.
+ */
+public final class TickerIndex {
+
+    private static final int MAGIC = 0x544B5231; // "TKR1"
+    private static final int HEADER_SIZE = 3 * 4;
+    // bytes of a symbol or word in a record, longer words are cut short and longer symbols left out
+    static final int WIDTH = 12;
+    private static final int RECORD_SIZE = WIDTH + 4;
+
+    private static final TickerIndex EMPTY = new TickerIndex(ByteBuffer.allocate(HEADER_SIZE), 0, 0);
+
+    private final ByteBuffer buffer;
+    private final int symbolCount;
+    private final int wordCount;
+    private final int wordsOffset;
+
+    private TickerIndex(final ByteBuffer buffer, final int symbolCount, final int wordCount) {
+        this.buffer = buffer;
+        this.symbolCount = symbolCount;
+        this.wordCount = wordCount;
+        this.wordsOffset = HEADER_SIZE + symbolCount * RECORD_SIZE;
+    }
+
+    public static TickerIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Maps an index file written by Builder.writeTo().
+     * @param file the index file
+     * @return the index, empty if the file doesn't exist
+     * @throws IOException if the file can't be read or isn't an index
+     */
+    public static TickerIndex open(final File file) throws IOException {
+        if (!file.exists()) {
+            return EMPTY;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            // the mapping stays valid after the file is closed, and after it is replaced
+            final ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("not a ticker index: " + file);
+            }
+            final int symbolCount = buffer.getInt(4);
+            final int wordCount = buffer.getInt(8);
+            if (HEADER_SIZE + (long) (symbolCount + wordCount) * RECORD_SIZE > buffer.capacity()) {
+                throw new IOException("truncated ticker index: " + file);
+            }
+            return new TickerIndex(buffer, symbolCount, wordCount);
+        }
+    }
+
+    public int size() {
+        return symbolCount;
+    }
+
+    public boolean isEmpty() {
+        return symbolCount == 0;
+    }
+
+    /**
+     * @param symbol a stock symbol in any case
+     * @return whether the symbol is listed
+     */
+    public boolean contains(final String symbol) {
+        return indexOf(symbol) >= 0;
+    }
+
+    /**
+     * @param symbol a stock symbol in any case
+     * @return the company name of a listed symbol, null if it isn't listed
+     */
+    public String getName(final String symbol) {
+        final int index = indexOf(symbol);
+        return index < 0 ? null : nameAt(index);
+    }
+
+    /**
+     * Type-ahead search. Symbols that start with the query come first, then companies with a word
+     * in their name that starts with the query's first word (and whose name contains the rest of
+     * it). If neither finds anything the query is taken for a mistyped symbol, and symbols one
+     * edit (an insertion, deletion, substitution or swap of neighbours) away from it are returned.
+     * @param query what the user typed so far
+     * @param limit the most listings to return
+     * @return the matching listings, best first
+     */
+    public List<Listing> search(final String query, final int limit) {
+        final List<Listing> results = new ArrayList<>();
+        final String trimmed = query.trim();
+        if (trimmed.isEmpty() || symbolCount == 0) {
+            return results;
+        }
+
+        // symbols starting with the query, shortest first since they sort before their extensions
+        final byte[] symbolPrefix = symbolKey(trimmed);
+        for (int i = lowerBound(HEADER_SIZE, symbolCount, symbolPrefix);
+             i < symbolCount && results.size() < limit && startsWith(symbolOffset(i), symbolPrefix); i++) {
+            results.add(listingAt(i));
+        }
+
+        // companies with a name word starting with the query
+        final String lowerCase = trimmed.toLowerCase(Locale.US);
+        final int space = lowerCase.indexOf(' ');
+        final byte[] wordPrefix = truncate(lowerCase.substring(0, space < 0 ? lowerCase.length() : space)
+                .getBytes(StandardCharsets.UTF_8));
+        final String rest = space < 0 ? "" : lowerCase.substring(space + 1).trim();
+        for (int i = lowerBound(wordsOffset, wordCount, wordPrefix);
+             i < wordCount && results.size() < limit && startsWith(wordOffset(i), wordPrefix); i++) {
+            final int symbolIndex = buffer.getInt(wordOffset(i) + WIDTH);
+            if (!containsSymbol(results, symbolIndex)) {
+                final Listing listing = listingAt(symbolIndex);
+                if (rest.isEmpty() || listing.getName().toLowerCase(Locale.US).contains(rest)) {
+                    results.add(listing);
+                }
+            }
+        }
+
+        if (results.isEmpty() && symbolPrefix.length >= 2) {
+            for (int i = 0; i < symbolCount && results.size() < limit; i++) {
+                if (isOneEditAway(symbolOffset(i), symbolPrefix)) {
+                    results.add(listingAt(i));
+                }
+            }
+        }
+        return results;
+    }
+
+    private int indexOf(final String symbol) {
+        final byte[] key = symbol.trim().toUpperCase(Locale.US).getBytes(StandardCharsets.US_ASCII);
+        if (key.length > WIDTH) {
+            return -1;
+        }
+        final int index = lowerBound(HEADER_SIZE, symbolCount, key);
+        return index < symbolCount && compare(symbolOffset(index), key) == 0 ? index : -1;
+    }
+
+    private static byte[] symbolKey(final String symbol) {
+        return truncate(symbol.trim().toUpperCase(Locale.US).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] truncate(final byte[] bytes) {
+        return bytes.length <= WIDTH ? bytes : Arrays.copyOf(bytes, WIDTH);
+    }
+
+    private int symbolOffset(final int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    private int wordOffset(final int index) {
+        return wordsOffset + index * RECORD_SIZE;
+    }
+
+    /**
+     * Binary searches count records from offset on for the first one not less than the key.
+     */
+    private int lowerBound(final int offset, final int count, final byte[] key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compare(offset + mid * RECORD_SIZE, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the record at offset with the key, by unsigned bytes; padding sorts first.
+     */
+    private int compare(final int offset, final byte[] key) {
+        for (int i = 0; i < WIDTH; i++) {
+            final int a = buffer.get(offset + i) & 0xFF;
+            final int b = i < key.length ? key[i] & 0xFF : 0;
+            if (a != b) {
+                return a - b;
+            }
+            if (a == 0) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private boolean startsWith(final int offset, final byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int recordLength(final int offset) {
+        int length = 0;
+        while (length < WIDTH && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Whether the record at offset can be turned into the key with one insertion, deletion,
+     * substitution or swap of two neighbouring characters.
+     */
+    private boolean isOneEditAway(final int offset, final byte[] key) {
+        final int length = recordLength(offset);
+        if (Math.abs(length - key.length) > 1) {
+            return false;
+        }
+        // skip the common prefix and suffix, what is left has to be a single edit
+        int start = 0;
+        while (start < length && start < key.length && buffer.get(offset + start) == key[start]) {
+            start++;
+        }
+        int recordEnd = length;
+        int keyEnd = key.length;
+        while (recordEnd > start && keyEnd > start && buffer.get(offset + recordEnd - 1) == key[keyEnd - 1]) {
+            recordEnd--;
+            keyEnd--;
+        }
+        final int recordLeft = recordEnd - start;
+        final int keyLeft = keyEnd - start;
+        if (recordLeft <= 1 && keyLeft <= 1) {
+            // an exact match isn't a typo, the prefix search would have found it
+            return recordLeft + keyLeft > 0;
+        }
+        return recordLeft == 2 && keyLeft == 2
+                && buffer.get(offset + start) == key[start + 1] && buffer.get(offset + start + 1) == key[start];
+    }
+
+    private static boolean containsSymbol(final List<Listing> listings, final int symbolIndex) {
+        for (final Listing listing : listings) {
+            if (listing.index == symbolIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Listing listingAt(final int index) {
+        final int offset = symbolOffset(index);
+        final byte[] symbol = new byte[recordLength(offset)];
+        for (int i = 0; i < symbol.length; i++) {
+            symbol[i] = buffer.get(offset + i);
+        }
+        return new Listing(index, new String(symbol, StandardCharsets.US_ASCII), nameAt(index));
+    }
+
+    private String nameAt(final int index) {
+        final int offset = buffer.getInt(symbolOffset(index) + WIDTH);
+        final byte[] name = new byte[buffer.getShort(offset) & 0xFFFF];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A listed symbol and its company name.
+     */
+    public static final class Listing {
+        private final int index;
+        private final String symbol;
+        private final String name;
+
+        private Listing(final int index, final String symbol, final String name) {
+            this.index = index;
+            this.symbol = symbol;
+            this.name = name;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return symbol + "  " + name;
+        }
+    }
+
+    /**
+     * Collects listings and writes them as an index file.
+     */
+    public static final class Builder {
+        private final List<String[]> listings = new ArrayList<>();
+
+        /**
+         * Adds a listing. Symbols that don't fit the index or aren't ASCII are left out.
+         * @param symbol the stock symbol
+         * @param name the company name
+         * @return this builder
+         */
+        public Builder add(final String symbol, final String name) {
+            final String key = symbol.trim().toUpperCase(Locale.US);
+            if (!key.isEmpty() && key.length() <= WIDTH && StandardCharsets.US_ASCII.newEncoder().canEncode(key)) {
+                listings.add(new String[]{key, name.trim()});
+            }
+            return this;
+        }
+
+        /**
+         * Adds every listing of an AlphaVantage LISTING_STATUS response: a CSV file with a header
+         * row and symbol, name, exchange, assetType, ipoDate, delistingDate and status columns.
+         * Names aren't quoted and may contain commas, so the name is whatever lies between the
+         * symbol and the last five columns.
+         * @param csv the response body
+         * @return this builder
+         */
+        public Builder addListingCsv(final Reader csv) throws IOException {
+            final BufferedReader reader = new BufferedReader(csv);
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("symbol,")) {
+                throw new IOException("not a listing: " + line);
+            }
+            while ((line = reader.readLine()) != null) {
+                final String[] columns = line.split(",", -1);
+                if (columns.length < 7) {
+                    continue;
+                }
+                final StringBuilder name = new StringBuilder(columns[1]);
+                for (int i = 2; i < columns.length - 5; i++) {
+                    name.append(',').append(columns[i]);
+                }
+                add(unquote(columns[0]), unquote(name.toString()));
+            }
+            return this;
+        }
+
+        public int size() {
+            return listings.size();
+        }
+
+        /**
+         * Writes the index. The new file is written next to the old one and renamed over it, so a
+         * crash halfway leaves the old index intact, and indexes that are already open keep working.
+         * @param file where to write the index
+         */
+        public void writeTo(final File file) throws IOException {
+            listings.sort((a, b) -> a[0].compareTo(b[0]));
+            // a symbol listed twice keeps its first name
+            final List<String[]> symbols = new ArrayList<>(listings.size());
+            for (final String[] listing : listings) {
+                if (symbols.isEmpty() || !symbols.get(symbols.size() - 1)[0].equals(listing[0])) {
+                    symbols.add(listing);
+                }
+            }
+
+            final List<byte[]> words = new ArrayList<>();
+            final List<Integer> wordSymbols = new ArrayList<>();
+            for (int i = 0; i < symbols.size(); i++) {
+                for (final String word : symbols.get(i)[1].toLowerCase(Locale.US).split("[^\\p{L}\\p{N}]+")) {
+                    if (word.length() >= 2) {
+                        words.add(truncate(word.getBytes(StandardCharsets.UTF_8)));
+                        wordSymbols.add(i);
+                    }
+                }
+            }
+            final Integer[] wordOrder = new Integer[words.size()];
+            for (int i = 0; i < wordOrder.length; i++) {
+                wordOrder[i] = i;
+            }
+            Arrays.sort(wordOrder, (a, b) -> compareBytes(words.get(a), words.get(b)));
+
+            final File temporary = new File(file.getPath() + ".tmp");
+            file.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(symbols.size());
+                out.writeInt(words.size());
+                int nameOffset = HEADER_SIZE + (symbols.size() + words.size()) * RECORD_SIZE;
+                final List<byte[]> names = new ArrayList<>(symbols.size());
+                for (final String[] symbol : symbols) {
+                    writeRecord(out, symbol[0].getBytes(StandardCharsets.US_ASCII), nameOffset);
+                    byte[] name = symbol[1].getBytes(StandardCharsets.UTF_8);
+                    if (name.length > 0xFFFF) {
+                        name = Arrays.copyOf(name, 0xFFFF);
+                    }
+                    names.add(name);
+                    nameOffset += 2 + name.length;
+                }
+                for (final Integer word : wordOrder) {
+                    writeRecord(out, words.get(word), wordSymbols.get(word));
+                }
+                for (final byte[] name : names) {
+                    out.writeShort(name.length);
+                    out.write(name);
+                }
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("could not replace " + file);
+            }
+        }
+
+        private static void writeRecord(final DataOutputStream out, final byte[] key, final int value) throws IOException {
+            out.write(key);
+            for (int i = key.length; i < WIDTH; i++) {
+                out.write(0);
+            }
+            out.writeInt(value);
+        }
+
+        private static int compareBytes(final byte[] a, final byte[] b) {
+            for (int i = 0; i < Math.min(a.length, b.length); i++) {
+                if (a[i] != b[i]) {
+                    return (a[i] & 0xFF) - (b[i] & 0xFF);
+                }
+            }
+            return a.length - b.length;
+        }
+
+        private static String unquote(final String value) {
+            final String trimmed = value.trim();
+            if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+                return trimmed.substring(1, trimmed.length() - 1).replace("\"\"", "\"");
+            }
+            return trimmed;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.stox.data;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Parses AlphaVantage time series responses straight into a TickSeries, token by token, without
+ * building the whole document in memory first.
+ *
+ * AlphaVantage sends the newest bar first, so when we only need the bars from a given time on the
+ * parser stops reading as soon as it reaches an older bar and never looks at the rest of the body.
+ */
+public final class TimeSeriesParser {
+
+    // keep every bar
+    public static final long ALL = Long.MIN_VALUE;
+
+    private TimeSeriesParser() {
+    }
+
+    /**
+     * Parses a JSON time series response (datatype=json).
+     * @param reader the response body
+     * @param since bars older than this timestamp (TickSeries encoding) are not needed, or ALL
+     * @return the bars at or after since
+     * @throws MarketDataException if the response is an error message
+     * @throws IOException if the body can't be read or isn't a time series
+     */
+    public static TickSeries parseJson(final Reader reader, final long since) throws IOException {
+        final JsonReader json = new JsonReader(reader);
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            if (name.startsWith("Time Series")) {
+                return parseBars(json, since);
+            } else if (name.equals("Error Message")) {
+                throw new MarketDataException(json.nextString(), false);
+            } else if (name.equals("Note") || name.equals("Information")) {
+                // AlphaVantage's way of saying we've gone over the call frequency
+                throw new MarketDataException(json.nextString(), true);
+            } else {
+                json.skipValue();
+            }
+        }
+        throw new MarketDataException("no time series in response", false);
+    }
+
+    /**
+     * Parses a CSV time series response (datatype=csv). Errors are still sent as JSON, which is
+     * detected and reported the same way as for parseJson().
+     * @param reader the response body
+     * @param since bars older than this timestamp (TickSeries encoding) are not needed, or ALL
+     * @return the bars at or after since
+     * @throws MarketDataException if the response is an error message
+     * @throws IOException if the body can't be read or isn't a time series
+     */
+    public static TickSeries parseCsv(final Reader reader, final long since) throws IOException {
+        final BufferedReader lines = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        lines.mark(1);
+        final int first = lines.read();
+        lines.reset();
+        if (first == '{') {
+            return parseJson(lines, since);
+        }
+
+        final String header = lines.readLine();
+        if (header == null || !header.startsWith("timestamp")) {
+            throw new IOException("unexpected CSV header: " + header);
+        }
+        final TickSeries.Builder builder = new TickSeries.Builder(128);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            // timestamp,open,high,low,close,volume
+            final int c1 = line.indexOf(',');
+            final int c2 = line.indexOf(',', c1 + 1);
+            final int c3 = line.indexOf(',', c2 + 1);
+            final int c4 = line.indexOf(',', c3 + 1);
+            final int c5 = line.indexOf(',', c4 + 1);
+            if (c5 < 0) {
+                throw new IOException("malformed CSV row: " + line);
+            }
+            final long time = parseTimestamp(line, 0, c1);
+            if (time < since) {
+                break;
+            }
+            builder.add(time,
+                    Double.parseDouble(line.substring(c1 + 1, c2)),
+                    Double.parseDouble(line.substring(c2 + 1, c3)),
+                    Double.parseDouble(line.substring(c3 + 1, c4)),
+                    Double.parseDouble(line.substring(c4 + 1, c5)),
+                    Long.parseLong(line.substring(c5 + 1).trim()));
+        }
+        return builder.build();
+    }
+
+    private static TickSeries parseBars(final JsonReader json, final long since) throws IOException {
+        final TickSeries.Builder builder = new TickSeries.Builder(128);
+        json.beginObject();
+        while (json.hasNext()) {
+            final String timestamp = json.nextName();
+            final long time = parseTimestamp(timestamp, 0, timestamp.length());
+            if (time < since) {
+                // everything from here on is older still, leave the rest of the body unread
+                break;
+            }
+
+            double open = Double.NaN;
+            double high = Double.NaN;
+            double low = Double.NaN;
+            double close = Double.NaN;
+            long volume = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                // keys look like "1. open", the number varies between functions
+                final String key = json.nextName();
+                final String field = key.substring(key.indexOf(' ') + 1);
+                if (json.peek() == JsonToken.NULL) {
+                    json.skipValue();
+                } else if (field.equals("open")) {
+                    open = json.nextDouble();
+                } else if (field.equals("high")) {
+                    high = json.nextDouble();
+                } else if (field.equals("low")) {
+                    low = json.nextDouble();
+                } else if (field.equals("close")) {
+                    close = json.nextDouble();
+                } else if (field.equals("volume")) {
+                    volume = json.nextLong();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            builder.add(time, open, high, low, close, volume);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses "yyyy-MM-dd HH:mm:ss" or "yyyy-MM-dd" into TickSeries encoding without going through
+     * the java.time classes.
+     */
+    static long parseTimestamp(final CharSequence text, final int from, final int to) throws IOException {
+        final int length = to - from;
+        if (length != 10 && length != 19) {
+            throw new IOException("unexpected timestamp: " + text.subSequence(from, to));
+        }
+        final int year = digits(text, from, 4);
+        final int month = digits(text, from + 5, 2);
+        final int day = digits(text, from + 8, 2);
+        long seconds = daysFromCivil(year, month, day) * TickSeries.SECONDS_PER_DAY;
+        if (length == 19) {
+            seconds += digits(text, from + 11, 2) * 3600L + digits(text, from + 14, 2) * 60L + digits(text, from + 17, 2);
+        }
+        return seconds;
+    }
+
+    private static int digits(final CharSequence text, final int from, final int count) throws IOException {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("unexpected timestamp: " + text);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date (Howard Hinnant's days_from_civil).
+     */
+    private static long daysFromCivil(final int year, final int month, final int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,16 @@
+package com.stox.data;
+
+/**
+ * The length of the bars in a time series. AlphaVantage serves the intraday ones through
+ * TIME_SERIES_INTRADAY and the others through a function of their own, see Intervals.
+ */
+public enum Timeframe {
+    ONE_MIN,
+    FIVE_MIN,
+    FIFTEEN_MIN,
+    THIRTY_MIN,
+    SIXTY_MIN,
+    DAILY,
+    WEEKLY,
+    MONTHLY
+}
@@ -0,0 +1,62 @@
+package com.stox.data;
+
+import android.util.Log;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Refreshes every symbol of a watchlist in one go. The fetches share TickFetcher's rate limiter,
+ * so the batch finishes as quickly as the API quota allows without getting throttled, and the
+ * symbol on screen is fetched ahead of the rest.
+ */
+public class WatchlistRefresher {
+
+    private final TickFetcher tickFetcher;
+
+    public WatchlistRefresher(final TickFetcher tickFetcher) {
+        this.tickFetcher = tickFetcher;
+    }
+
+    /**
+     * Refreshes the given symbols.
+     * @param stockSymbols the watchlist's symbols, fetched in this order after the visible one
+     * @param visibleSymbol the symbol on screen, or null
+     * @param interval interval (ONE_MIN, FIFTEEN_MIN, etc.)
+     * @return a future that completes with the refreshed series by symbol once every fetch has
+     * finished; symbols whose fetch failed are left out
+     */
+    public CompletableFuture<Map<String, TickSeries>> refresh(final Collection<String> stockSymbols,
+                                                             final String visibleSymbol,
+                                                             final Timeframe interval) {
+        final Map<String, CompletableFuture<TickSeries>> fetches = new LinkedHashMap<>();
+        if (visibleSymbol != null && stockSymbols.contains(visibleSymbol)) {
+            fetches.put(visibleSymbol, tickFetcher.refreshData(visibleSymbol, interval, TickFetcher.PRIORITY_VISIBLE));
+        }
+        for (final String stockSymbol : stockSymbols) {
+            if (!fetches.containsKey(stockSymbol)) {
+                fetches.put(stockSymbol, tickFetcher.refreshData(stockSymbol, interval, TickFetcher.PRIORITY_BACKGROUND));
+            }
+        }
+
+        // a failed fetch shouldn't fail the whole batch
+        final CompletableFuture<?>[] settled = fetches.values().stream()
+                .map(future -> future.handle((tickSeries, throwable) -> tickSeries))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(settled).thenApply(ignored -> {
+            final Map<String, TickSeries> refreshed = new HashMap<>();
+            for (final Map.Entry<String, CompletableFuture<TickSeries>> fetch : fetches.entrySet()) {
+                final TickSeries tickSeries = fetch.getValue().handle((result, throwable) -> result).join();
+                if (tickSeries != null) {
+                    refreshed.put(fetch.getKey(), tickSeries);
+                } else {
+                    Log.w("WATCHLIST", "could not refresh " + fetch.getKey());
+                }
+            }
+            return refreshed;
+        });
+    }
+}
@@ -0,0 +1,451 @@
+package com.stox.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Named watchlists of symbols in the user's order, with the latest quote of every symbol on them.
+ *
+ * Everything is kept in memory and every change is appended to a journal file as a small record
+ * (a length, an operation and its arguments), so adding a symbol to a long list or updating one
+ * quote writes a few dozen bytes rather than everything. Opening the store replays the journal.
+ * Once superseded records, mostly old quotes, outnumber the live ones the journal is rewritten
+ * with just the current state, next to the old one and renamed over it like AlertStore's file.
+ */
+public class WatchlistStore implements Closeable {
+
+    /**
+     * Hears about changes to the store, on the thread that made them.
+     */
+    public interface Listener {
+        /**
+         * @param name the watchlist that was created, deleted or had its symbols changed
+         */
+        void onWatchlistChanged(String name);
+
+        /**
+         * @param stockSymbol the symbol whose quote changed
+         * @param quote its new quote
+         */
+        void onQuoteChanged(String stockSymbol, Quote quote);
+    }
+
+    private static final int MAGIC = 0x574C5331; // "WLS1"
+    private static final int HEADER_SIZE = 4;
+    private static final byte CREATE = 1;
+    private static final byte DELETE = 2;
+    private static final byte ADD = 3;
+    private static final byte REMOVE = 4;
+    private static final byte MOVE = 5;
+    private static final byte QUOTE = 6;
+    // superseded records tolerated before the journal is compacted, on top of as many as are live
+    private static final int COMPACTION_SLACK = 256;
+
+    private final File file;
+    // watchlists in the order they were created, each with its symbols in the user's order
+    private final Map<String, List<String>> watchlists = new LinkedHashMap<>();
+    private final Map<String, Quote> quotes = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private DataOutputStream journal;
+    private int journalRecords;
+
+    private WatchlistStore(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the store kept in the given file, creating it if it doesn't exist. A record torn by a
+     * crash at the end of the journal is dropped.
+     * @param file the journal file
+     * @return the open store, close it when done
+     * @throws IOException if the file can't be read or isn't a watchlist journal
+     */
+    public static WatchlistStore open(final File file) throws IOException {
+        final WatchlistStore store = new WatchlistStore(file);
+        long validLength = HEADER_SIZE;
+        if (file.length() >= HEADER_SIZE) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("not a watchlist file: " + file);
+                }
+                while (true) {
+                    final byte[] record;
+                    try {
+                        record = new byte[in.readUnsignedShort()];
+                        in.readFully(record);
+                    } catch (final EOFException e) {
+                        break;
+                    }
+                    store.apply(new DataInputStream(new ByteArrayInputStream(record)));
+                    store.journalRecords++;
+                    validLength += 2 + record.length;
+                }
+            } catch (final EOFException e) {
+                throw new IOException("not a watchlist file: " + file, e);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+            store.journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        } else {
+            store.rewrite();
+        }
+        return store;
+    }
+
+    public void addListener(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the watchlists' names in the order they were created
+     */
+    public synchronized List<String> getWatchlistNames() {
+        return new ArrayList<>(watchlists.keySet());
+    }
+
+    /**
+     * @param name the watchlist's name
+     * @return a copy of the watchlist's symbols in the user's order, empty if there is no such watchlist
+     */
+    public synchronized List<String> getSymbols(final String name) {
+        final List<String> symbols = watchlists.get(name);
+        return symbols == null ? Collections.emptyList() : new ArrayList<>(symbols);
+    }
+
+    /**
+     * @return every symbol on any watchlist, once each, in the order of the watchlists
+     */
+    public synchronized List<String> getAllSymbols() {
+        final LinkedHashSet<String> symbols = new LinkedHashSet<>();
+        for (final List<String> watchlist : watchlists.values()) {
+            symbols.addAll(watchlist);
+        }
+        return new ArrayList<>(symbols);
+    }
+
+    /**
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @return the symbol's latest quote, or null if there is none
+     */
+    public synchronized Quote getQuote(final String stockSymbol) {
+        return quotes.get(normalize(stockSymbol));
+    }
+
+    /**
+     * Creates an empty watchlist.
+     * @param name the new watchlist's name
+     * @return false if a watchlist of that name already exists
+     */
+    public boolean createWatchlist(final String name) throws IOException {
+        synchronized (this) {
+            if (watchlists.containsKey(name)) {
+                return false;
+            }
+            append(CREATE, name, null, 0, null);
+        }
+        fireWatchlistChanged(name);
+        return true;
+    }
+
+    /**
+     * Deletes a watchlist and its symbols.
+     * @param name the watchlist's name
+     * @return false if there is no such watchlist
+     */
+    public boolean deleteWatchlist(final String name) throws IOException {
+        synchronized (this) {
+            if (!watchlists.containsKey(name)) {
+                return false;
+            }
+            append(DELETE, name, null, 0, null);
+        }
+        fireWatchlistChanged(name);
+        return true;
+    }
+
+    /**
+     * Adds a symbol to the end of a watchlist, creating the watchlist if it doesn't exist.
+     * @param name the watchlist's name
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @return false if the symbol already is on the watchlist
+     */
+    public boolean add(final String name, final String stockSymbol) throws IOException {
+        final String symbol = normalize(stockSymbol);
+        synchronized (this) {
+            final List<String> symbols = watchlists.get(name);
+            if (symbols != null && symbols.contains(symbol)) {
+                return false;
+            }
+            if (symbols == null) {
+                append(CREATE, name, null, 0, null);
+            }
+            append(ADD, name, symbol, 0, null);
+        }
+        fireWatchlistChanged(name);
+        return true;
+    }
+
+    /**
+     * Removes a symbol from a watchlist.
+     * @param name the watchlist's name
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @return false if the symbol isn't on the watchlist
+     */
+    public boolean remove(final String name, final String stockSymbol) throws IOException {
+        final String symbol = normalize(stockSymbol);
+        synchronized (this) {
+            final List<String> symbols = watchlists.get(name);
+            if (symbols == null || !symbols.contains(symbol)) {
+                return false;
+            }
+            append(REMOVE, name, symbol, 0, null);
+        }
+        fireWatchlistChanged(name);
+        return true;
+    }
+
+    /**
+     * Moves a symbol to another position on its watchlist.
+     * @param name the watchlist's name
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param position the symbol's new position, clamped to the watchlist
+     * @return false if the symbol isn't on the watchlist or already is at that position
+     */
+    public boolean move(final String name, final String stockSymbol, final int position) throws IOException {
+        final String symbol = normalize(stockSymbol);
+        synchronized (this) {
+            final List<String> symbols = watchlists.get(name);
+            final int from = symbols == null ? -1 : symbols.indexOf(symbol);
+            if (from < 0 || from == Math.max(0, Math.min(position, symbols.size() - 1))) {
+                return false;
+            }
+            append(MOVE, name, symbol, position, null);
+        }
+        fireWatchlistChanged(name);
+        return true;
+    }
+
+    /**
+     * Updates the quote of a symbol, if it is on a watchlist and the quote is new.
+     * @param stockSymbol symbol (AMZN, MSFT, etc.)
+     * @param quote the symbol's latest quote
+     * @return true if the quote was updated
+     */
+    public boolean updateQuote(final String stockSymbol, final Quote quote) throws IOException {
+        final String symbol = normalize(stockSymbol);
+        synchronized (this) {
+            if (quote.equals(quotes.get(symbol)) || !isWatched(symbol)) {
+                return false;
+            }
+            append(QUOTE, null, symbol, 0, quote);
+        }
+        for (final Listener listener : listeners) {
+            listener.onQuoteChanged(symbol, quote);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+
+    private boolean isWatched(final String symbol) {
+        for (final List<String> symbols : watchlists.values()) {
+            if (symbols.contains(symbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fireWatchlistChanged(final String name) {
+        for (final Listener listener : listeners) {
+            listener.onWatchlistChanged(name);
+        }
+    }
+
+    /**
+     * Writes a record to the end of the journal, then applies it, compacting the journal if most
+     * of it is superseded by now.
+     */
+    private void append(final byte operation, final String name, final String symbol, final int position,
+                        final Quote quote) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream record = new DataOutputStream(bytes);
+        write(record, operation, name, symbol, position, quote);
+        journal.writeShort(bytes.size());
+        bytes.writeTo(journal);
+        journal.flush();
+        journalRecords++;
+        apply(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        if (journalRecords > 2 * liveRecords() + COMPACTION_SLACK) {
+            try {
+                rewrite();
+            } catch (final IOException e) {
+                // the change is in the journal either way, keep appending to whichever file is in place
+                journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            }
+        }
+    }
+
+    private static void write(final DataOutputStream out, final byte operation, final String name,
+                              final String symbol, final int position, final Quote quote) throws IOException {
+        out.writeByte(operation);
+        switch (operation) {
+            case CREATE:
+            case DELETE:
+                out.writeUTF(name);
+                break;
+            case ADD:
+            case REMOVE:
+                out.writeUTF(name);
+                out.writeUTF(symbol);
+                break;
+            case MOVE:
+                out.writeUTF(name);
+                out.writeUTF(symbol);
+                out.writeInt(position);
+                break;
+            case QUOTE:
+                out.writeUTF(symbol);
+                out.writeLong(quote.getTime());
+                out.writeDouble(quote.getLastPrice());
+                out.writeDouble(quote.getDayOpen());
+                out.writeDouble(quote.getDayLow());
+                out.writeDouble(quote.getDayHigh());
+                break;
+        }
+    }
+
+    /**
+     * Applies one journal record to the state in memory. Records that don't fit the state, which
+     * the methods above never write, are ignored.
+     */
+    private void apply(final DataInputStream in) throws IOException {
+        final byte operation = in.readByte();
+        switch (operation) {
+            case CREATE:
+                watchlists.putIfAbsent(in.readUTF(), new ArrayList<>());
+                break;
+            case DELETE:
+                watchlists.remove(in.readUTF());
+                break;
+            case ADD: {
+                final List<String> symbols = watchlists.get(in.readUTF());
+                final String symbol = in.readUTF();
+                if (symbols != null && !symbols.contains(symbol)) {
+                    symbols.add(symbol);
+                }
+                break;
+            }
+            case REMOVE: {
+                final List<String> symbols = watchlists.get(in.readUTF());
+                final String symbol = in.readUTF();
+                if (symbols != null) {
+                    symbols.remove(symbol);
+                }
+                break;
+            }
+            case MOVE: {
+                final List<String> symbols = watchlists.get(in.readUTF());
+                final String symbol = in.readUTF();
+                final int position = in.readInt();
+                if (symbols != null && symbols.remove(symbol)) {
+                    symbols.add(Math.max(0, Math.min(position, symbols.size())), symbol);
+                }
+                break;
+            }
+            case QUOTE:
+                quotes.put(in.readUTF(), new Quote(in.readLong(), in.readDouble(), in.readDouble(),
+                        in.readDouble(), in.readDouble()));
+                break;
+            default:
+                // an operation this version doesn't know, skip it
+                break;
+        }
+    }
+
+    private int liveRecords() {
+        int count = watchlists.size() + quotes.size();
+        for (final List<String> symbols : watchlists.values()) {
+            count += symbols.size();
+        }
+        return count;
+    }
+
+    /**
+     * Replaces the journal with one that just recreates the current state. Quotes of symbols that
+     * are no longer on any watchlist are dropped.
+     */
+    private void rewrite() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        quotes.keySet().retainAll(new LinkedHashSet<>(getAllSymbols()));
+        final File temporary = new File(file.getPath() + ".tmp");
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        journalRecords = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            final DataOutputStream record = new DataOutputStream(bytes);
+            for (final Map.Entry<String, List<String>> watchlist : watchlists.entrySet()) {
+                write(record, CREATE, watchlist.getKey(), null, 0, null);
+                writeRecord(out, bytes);
+                for (final String symbol : watchlist.getValue()) {
+                    write(record, ADD, watchlist.getKey(), symbol, 0, null);
+                    writeRecord(out, bytes);
+                }
+            }
+            for (final Map.Entry<String, Quote> quote : quotes.entrySet()) {
+                write(record, QUOTE, null, quote.getKey(), 0, quote.getValue());
+                writeRecord(out, bytes);
+            }
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("could not replace " + file);
+        }
+        journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    private void writeRecord(final DataOutputStream out, final ByteArrayOutputStream bytes) throws IOException {
+        out.writeShort(bytes.size());
+        bytes.writeTo(out);
+        bytes.reset();
+        journalRecords++;
+    }
+
+    private static String normalize(final String stockSymbol) {
+        return stockSymbol.trim().toUpperCase(Locale.US);
+    }
+}
@@ -0,0 +1,106 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlertEngineTest {
+
+    // 2019-05-10 09:30 exchange time, a Friday
+    private static final long START = 1557480600L;
+
+    private static TickSeries bars(final long start, final double... closes) {
+        final TickSeries.Builder builder = new TickSeries.Builder(closes.length);
+        for (int i = 0; i < closes.length; i++) {
+            builder.add(start + i * 60, closes[i], closes[i], closes[i], closes[i], 100);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void evaluate_firesLevelsCrossedEitherWay() {
+        final AlertEngine engine = new AlertEngine();
+        final Alert above = engine.add("amzn", Alert.Type.PRICE_CROSS, 105);
+        final Alert below = engine.add("AMZN", Alert.Type.PRICE_CROSS, 95);
+        final Alert untouched = engine.add("AMZN", Alert.Type.PRICE_CROSS, 120);
+        final Alert otherSymbol = engine.add("MSFT", Alert.Type.PRICE_CROSS, 101);
+
+        // the history we already had primes the engine without firing, although it crossed 105
+        assertTrue(engine.evaluate("AMZN", bars(START, 110, 100)).isEmpty());
+        assertEquals(Collections.singletonList(above), engine.evaluate("AMZN", bars(START, 110, 100, 104, 106)));
+        // a revision of the newest bar counts as a move from its previous value
+        assertEquals(Collections.singletonList(below), engine.evaluate("AMZN", bars(START, 110, 100, 104, 106, 90)));
+        assertTrue(engine.evaluate("AMZN", bars(START, 110, 100, 104, 106, 94)).isEmpty());
+
+        assertEquals(Arrays.asList(untouched), engine.getAlerts("AMZN"));
+        assertEquals(Arrays.asList(otherSymbol), engine.getAlerts("msft"));
+        assertTrue(engine.remove(untouched));
+        assertFalse(engine.remove(above));
+        assertEquals(1, engine.getAlerts().size());
+    }
+
+    @Test
+    public void evaluate_percentMovesAreRelativeToPreviousClose() {
+        final AlertEngine engine = new AlertEngine();
+        final Alert up = engine.add("AMZN", Alert.Type.PERCENT_MOVE, 2);
+        final Alert down = engine.add("AMZN", Alert.Type.PERCENT_MOVE, -2);
+
+        // the previous session closes at 100
+        engine.evaluate("AMZN", bars(START, 90, 100));
+        final long nextDay = START + TickSeries.SECONDS_PER_DAY;
+        final TickSeries.Builder builder = new TickSeries.Builder(4);
+        builder.add(START, 90, 90, 90, 90, 100).add(START + 60, 100, 100, 100, 100, 100)
+                .add(nextDay, 101, 101, 101, 101, 100).add(nextDay + 60, 102.5, 102.5, 102.5, 102.5, 100);
+        assertEquals(Collections.singletonList(up), engine.evaluate("AMZN", builder.build()));
+        assertEquals(Collections.singletonList(down), engine.getAlerts("AMZN"));
+    }
+
+    @Test
+    public void evaluate_firesNewHighsAndLows() {
+        final AlertEngine engine = new AlertEngine();
+        final Alert dayHigh = engine.add("AMZN", Alert.Type.NEW_DAY_HIGH, 0);
+        final Alert weekLow = engine.add("AMZN", Alert.Type.NEW_WEEK_LOW, 0);
+
+        engine.evaluate("AMZN", bars(START, 100, 102, 98));
+        assertTrue(engine.evaluate("AMZN", bars(START, 100, 102, 98, 101)).isEmpty());
+        assertEquals(Collections.singletonList(dayHigh), engine.evaluate("AMZN", bars(START, 100, 102, 98, 101, 103)));
+        assertEquals(Collections.singletonList(weekLow), engine.evaluate("AMZN", bars(START, 100, 102, 98, 101, 103, 97)));
+        assertTrue(engine.getAlerts().isEmpty());
+    }
+
+    @Test
+    public void store_roundTripsAlerts() throws IOException {
+        final File file = new File(Files.createTempDirectory("alerts").toFile(), "alerts");
+        final AlertStore store = new AlertStore(file);
+        assertTrue(store.read().isEmpty());
+
+        final AlertEngine engine = new AlertEngine();
+        engine.add("AMZN", Alert.Type.PRICE_CROSS, 1850.5);
+        engine.add("MSFT", Alert.Type.NEW_WEEK_HIGH, 0);
+        store.write(engine.getAlerts());
+
+        final List<Alert> read = store.read();
+        assertEquals(2, read.size());
+        final AlertEngine restored = new AlertEngine();
+        restored.addAll(read);
+        assertEquals(1850.5, restored.getAlerts("AMZN").get(0).getValue(), 0.0);
+        assertEquals(Alert.Type.NEW_WEEK_HIGH, restored.getAlerts("MSFT").get(0).getType());
+        // new alerts don't reuse the ids of the restored ones
+        assertEquals(3, restored.add("AMZN", Alert.Type.PRICE_CROSS, 1900).getId());
+
+        // an alert added before the stored ones were read back keeps its id, the stored one moves
+        final AlertEngine early = new AlertEngine();
+        final Alert added = early.add("AMZN", Alert.Type.PRICE_CROSS, 1900);
+        early.addAll(read);
+        assertEquals(3, early.getAlerts().size());
+        assertTrue(early.remove(added));
+        assertEquals(2, early.getAlerts().size());
+    }
+}
@@ -0,0 +1,90 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class BarPyramidTest {
+
+    // 2019-05-10 09:30 exchange time
+    private static final long OPEN = 1557480600L;
+
+    /**
+     * One minute bars from 09:31 on, closing at 1, 2, 3, ...
+     */
+    private static TickSeries minutes(final long dayOffset, final int count) {
+        final TickSeries.Builder builder = new TickSeries.Builder(count);
+        for (int i = 1; i <= count; i++) {
+            builder.add(OPEN + dayOffset * TickSeries.SECONDS_PER_DAY + i * 60, i - 0.5, i + 1, i - 1, i, 10);
+        }
+        return builder.build();
+    }
+
+    private static void assertSameBars(final TickSeries expected, final TickSeries actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getTime(i), actual.getTime(i));
+            assertEquals(expected.getOpen(i), actual.getOpen(i), 0);
+            assertEquals(expected.getHigh(i), actual.getHigh(i), 0);
+            assertEquals(expected.getLow(i), actual.getLow(i), 0);
+            assertEquals(expected.getClose(i), actual.getClose(i), 0);
+            assertEquals(expected.getVolume(i), actual.getVolume(i));
+        }
+    }
+
+    @Test
+    public void aggregate_rollsUpOhlcvIntoEndLabelledBuckets() {
+        final TickSeries fiveMinutes = BarPyramid.aggregate(minutes(0, 12), Timeframe.FIVE_MIN);
+        assertEquals(3, fiveMinutes.size());
+        // 09:31 to 09:35
+        assertEquals(OPEN + 5 * 60, fiveMinutes.getTime(0));
+        assertEquals(0.5, fiveMinutes.getOpen(0), 0);
+        assertEquals(6, fiveMinutes.getHigh(0), 0);
+        assertEquals(0, fiveMinutes.getLow(0), 0);
+        assertEquals(5, fiveMinutes.getClose(0), 0);
+        assertEquals(50, fiveMinutes.getVolume(0));
+        // 09:41 and 09:42 are the start of a bucket that is still forming
+        assertEquals(OPEN + 15 * 60, fiveMinutes.getTime(2));
+        assertEquals(12, fiveMinutes.getClose(2), 0);
+        assertEquals(20, fiveMinutes.getVolume(2));
+    }
+
+    @Test
+    public void rollUp_putsAWholeSessionInOneDailyBar() {
+        final TickSeries days = BarPyramid.rollUp(minutes(-1, 390).merge(minutes(0, 390)), Timeframe.DAILY);
+        assertEquals(2, days.size());
+        assertEquals(OPEN - 9 * 3600 - 30 * 60, days.getTime(1));
+        assertEquals(390, days.getClose(1), 0);
+        assertEquals(3900, days.getVolume(1));
+    }
+
+    @Test
+    public void update_matchesRollingUpFromScratch() throws IOException {
+        final TickStore store = new TickStore(Files.createTempDirectory("ticks").toFile());
+        final BarPyramid pyramid = new BarPyramid(store);
+        final TickSeries yesterday = minutes(-1, 390);
+        TickSeries oneMinute = yesterday.merge(minutes(0, 100));
+        pyramid.update("AMZN", oneMinute, oneMinute.getTime(0));
+
+        // the newest bar is revised and more arrive
+        final TickSeries newer = minutes(0, 250).slice(99, 250);
+        oneMinute = oneMinute.merge(newer);
+        pyramid.update("AMZN", oneMinute, newer.getTime(0));
+
+        for (final Timeframe level : new Timeframe[]{Timeframe.FIVE_MIN, Timeframe.SIXTY_MIN, Timeframe.DAILY}) {
+            assertSameBars(BarPyramid.rollUp(oneMinute, level), store.read(new SeriesKey("AMZN", level)));
+        }
+    }
+
+    @Test
+    public void read_rollsUpLevelsThatAreMissing() throws IOException {
+        final TickStore store = new TickStore(Files.createTempDirectory("ticks").toFile());
+        final TickSeries oneMinute = minutes(0, 60);
+        final TickSeries thirtyMinutes = new BarPyramid(store).read("AMZN", Timeframe.THIRTY_MIN, oneMinute);
+        assertSameBars(BarPyramid.rollUp(oneMinute, Timeframe.THIRTY_MIN), thirtyMinutes);
+        assertEquals(2, thirtyMinutes.size());
+    }
+}
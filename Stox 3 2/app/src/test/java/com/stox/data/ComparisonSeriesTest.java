@@ -0,0 +1,42 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ComparisonSeriesTest {
+
+    // 2019-05-10 09:30 exchange time
+    private static final long OPEN = 1557480600L;
+
+    private static TickSeries bars(final int[] minutes, final double... closes) {
+        final TickSeries.Builder builder = new TickSeries.Builder(closes.length);
+        for (int i = 0; i < closes.length; i++) {
+            builder.add(OPEN + minutes[i] * 60, closes[i], closes[i], closes[i], closes[i], 100);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void percentChangeAt_joinsOntoTheGridAndFillsGaps() {
+        // no bar at minute 2, one between grid points at minute 4
+        final ComparisonSeries comparison = new ComparisonSeries(bars(new int[]{1, 3, 4, 5}, 50, 55, 60, 45));
+        assertTrue(Double.isNaN(comparison.percentChangeAt(OPEN)));
+        assertEquals(0, comparison.percentChangeAt(OPEN + 60), 1e-9);
+        assertEquals(0, comparison.percentChangeAt(OPEN + 2 * 60), 1e-9);
+        assertEquals(10, comparison.percentChangeAt(OPEN + 3 * 60), 1e-9);
+        assertEquals(-10, comparison.percentChangeAt(OPEN + 5 * 60), 1e-9);
+        // past the last bar the last close carries on
+        assertEquals(-10, comparison.percentChangeAt(OPEN + 6 * 60), 1e-9);
+    }
+
+    @Test
+    public void reset_startsOverWithANewReference() {
+        final ComparisonSeries comparison = new ComparisonSeries(bars(new int[]{1, 2, 3}, 100, 200, 300));
+        assertEquals(0, comparison.percentChangeAt(OPEN + 60), 1e-9);
+        assertEquals(200, comparison.percentChangeAt(OPEN + 3 * 60), 1e-9);
+        comparison.reset();
+        assertEquals(0, comparison.percentChangeAt(OPEN + 2 * 60), 1e-9);
+        assertEquals(50, comparison.percentChangeAt(OPEN + 3 * 60), 1e-9);
+    }
+}
@@ -0,0 +1,45 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DownsamplerTest {
+
+    private static TickSeries sine(final int size) {
+        final TickSeries.Builder builder = new TickSeries.Builder(size);
+        for (int i = 0; i < size; i++) {
+            final double close = 100 + Math.sin(i / 50.0);
+            builder.add(i * 60L, close, close, close, close, 1);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void largestTriangleThreeBuckets_keepsEndsAndPeaks() {
+        final TickSeries tickSeries = sine(10_000);
+        final int[] indices = new int[200];
+        final int count = Downsampler.largestTriangleThreeBuckets(tickSeries, 0, tickSeries.size(), 200, indices, 0);
+
+        assertEquals(200, count);
+        assertEquals(0, indices[0]);
+        assertEquals(9_999, indices[count - 1]);
+        double max = -Double.MAX_VALUE;
+        for (int i = 1; i < count; i++) {
+            assertTrue(indices[i] > indices[i - 1]);
+            max = Math.max(max, tickSeries.getClose(indices[i]));
+        }
+        assertEquals(101.0, max, 1e-3);
+    }
+
+    @Test
+    public void largestTriangleThreeBuckets_keepsShortRangesWhole() {
+        final TickSeries tickSeries = sine(100);
+        final int[] indices = new int[60];
+        final int count = Downsampler.largestTriangleThreeBuckets(tickSeries, 10, 60, 200, indices, 5);
+
+        assertEquals(55, count);
+        assertEquals(10, indices[5]);
+        assertEquals(59, indices[54]);
+    }
+}
@@ -0,0 +1,64 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketOf_isWithinSixPercent() {
+        final Random random = new Random(3);
+        for (int i = 0; i < 10000; i++) {
+            final long value = random.nextLong() >>> (1 + random.nextInt(63));
+            final long lowest = Histogram.lowestOf(Histogram.bucketOf(value));
+            assertTrue(lowest <= value);
+            assertTrue(value - lowest <= lowest / 16);
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.lowestOf(Histogram.bucketOf(Long.MAX_VALUE)) | ((1L << 58) - 1));
+    }
+
+    @Test
+    public void percentiles_matchSortedValues() {
+        final Histogram histogram = new Histogram();
+        final Random random = new Random(5);
+        final long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // log-normal, like real latencies: mostly around a millisecond with a long tail
+            values[i] = (long) (1_000_000 * Math.exp(random.nextGaussian()));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (final double percentile : new double[] {50, 95, 99}) {
+            final long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertEquals(expected, histogram.getPercentile(percentile), expected * 0.07);
+        }
+        histogram.clear();
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void metrics_dumpsEveryStage() {
+        final Metrics metrics = Metrics.getInstance();
+        metrics.clear();
+        metrics.record("fetch.source", 2_000_000);
+        metrics.record("fetch.source", 4_000_000);
+        metrics.start("chart.draw").stop();
+
+        final String[] lines = metrics.dump().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].startsWith("chart.draw,1,"));
+        // without an allocation counter the last column stays empty
+        assertTrue(lines[1].endsWith(","));
+        assertTrue(lines[2].startsWith("fetch.source,2,"));
+        // p50 is the 2ms run, reported as the middle of its bucket
+        assertEquals(2000, Long.parseLong(lines[2].split(",")[2]), 2000 * 0.07);
+        metrics.clear();
+    }
+}
@@ -0,0 +1,177 @@
+package com.stox.data;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.patriques.input.timeseries.OutputSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class HttpClientTest {
+
+    private static final SeriesKey KEY = new SeriesKey("MSFT", Timeframe.ONE_MIN);
+    // 2019-05-10 16:00 exchange time
+    private static final long CLOSE = 1557504000L;
+
+    private HttpServer server;
+    private String url;
+    private byte[] payload;
+    private final AtomicInteger hits = new AtomicInteger();
+    // responses left to fail with 503 before serving the payload
+    private volatile int failures;
+    private volatile String etag;
+    private volatile boolean gzip;
+
+    @Before
+    public void setUp() throws IOException {
+        payload = fixture("intraday_1min_compact.json");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/query", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/query";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        if (failures > 0) {
+            failures--;
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+        byte[] body = payload;
+        final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(payload);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    public void fetch_decompressesGzipResponses() throws IOException {
+        gzip = true;
+        final HttpClient httpClient = new HttpClient(1000, 0, 1);
+        final TickSeries series = new AlphaVantageSource(httpClient, url, "demo").fetch(KEY, OutputSize.COMPACT, TimeSeriesParser.ALL);
+        assertEquals(4, series.size());
+        assertEquals(CLOSE, series.getLastTime());
+        assertTrue(httpClient.getBytesReceived() > 0);
+        assertTrue(httpClient.getBytesReceived() < payload.length);
+    }
+
+    @Test
+    public void fetch_skipsResponsesWithTheSameEtag() throws IOException {
+        etag = "\"v1\"";
+        final HttpClient httpClient = new HttpClient(1000, 0, 1);
+        final AlphaVantageSource client = new AlphaVantageSource(httpClient, url, "demo");
+        assertEquals(4, client.fetch(KEY, OutputSize.COMPACT, TimeSeriesParser.ALL).size());
+        assertTrue(client.fetch(KEY, OutputSize.COMPACT, TimeSeriesParser.ALL).isEmpty());
+        assertEquals(1, httpClient.getUnchangedCount());
+        // a different output size is a different URL, with nothing to compare against yet
+        assertEquals(4, client.fetch(KEY, OutputSize.FULL, TimeSeriesParser.ALL).size());
+    }
+
+    @Test
+    public void getIfChanged_skipsBodiesWithTheSameHash() throws IOException {
+        final HttpClient httpClient = new HttpClient(1000, 0, 1);
+        final AtomicInteger reads = new AtomicInteger();
+        final HttpClient.BodyReader<Integer> reader = body -> reads.incrementAndGet();
+        assertEquals(Integer.valueOf(1), httpClient.getIfChanged(url, reader));
+        // the body is read as it streams in, but the result is dropped once it hashes the same
+        assertNull(httpClient.getIfChanged(url, reader));
+        assertEquals(1, httpClient.getUnchangedCount());
+
+        payload = fixture("intraday_1min_compact.csv");
+        assertEquals(Integer.valueOf(3), httpClient.getIfChanged(url, reader));
+    }
+
+    @Test
+    public void getIfChanged_rereadsAfterAFailedRead() throws IOException {
+        final HttpClient httpClient = new HttpClient(1000, 0, 1);
+        try {
+            httpClient.getIfChanged(url, body -> {
+                throw new MarketDataException("rate limited", true);
+            });
+            fail();
+        } catch (final MarketDataException e) {
+            // expected
+        }
+        assertEquals(Integer.valueOf(1), httpClient.getIfChanged(url, body -> 1));
+    }
+
+    @Test
+    public void fetch_rereadsAForgottenSeries() throws IOException {
+        etag = "\"v1\"";
+        final HttpClient httpClient = new HttpClient(1000, 0, 1);
+        final AlphaVantageSource client = new AlphaVantageSource(httpClient, url, "demo");
+        assertEquals(4, client.fetch(KEY, OutputSize.COMPACT, TimeSeriesParser.ALL).size());
+        // as when the bars couldn't be stored
+        client.forget(KEY);
+        assertEquals(4, client.fetch(KEY, OutputSize.COMPACT, TimeSeriesParser.ALL).size());
+        assertEquals(0, httpClient.getUnchangedCount());
+    }
+
+    @Test
+    public void getIfChanged_retriesServerErrors() throws IOException {
+        failures = 2;
+        final HttpClient httpClient = new HttpClient(1000, 2, 1);
+        assertEquals(Integer.valueOf(1), httpClient.getIfChanged(url, body -> 1));
+        assertEquals(2, httpClient.getRetryCount());
+        assertEquals(3, hits.get());
+    }
+
+    @Test
+    public void getIfChanged_givesUpAfterMaxRetries() {
+        failures = 3;
+        final HttpClient httpClient = new HttpClient(1000, 2, 1);
+        try {
+            httpClient.getIfChanged(url, body -> 1);
+            fail();
+        } catch (final IOException e) {
+            assertEquals(3, hits.get());
+        }
+    }
+
+    private static byte[] fixture(final String name) throws IOException {
+        try (InputStream in = HttpClientTest.class.getResourceAsStream("/" + name)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
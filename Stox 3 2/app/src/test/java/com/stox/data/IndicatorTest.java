@@ -0,0 +1,114 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndicatorTest {
+
+    @Test
+    public void movingAverages_matchFullRecomputation() {
+        final Random random = new Random(7);
+        final double[] closes = new double[300];
+        final SimpleMovingAverage sma = new SimpleMovingAverage(20);
+        final ExponentialMovingAverage ema = new ExponentialMovingAverage(10);
+        final BollingerBands bands = new BollingerBands(20, 2);
+
+        for (int i = 0; i < closes.length; i++) {
+            closes[i] = 100 + 5 * random.nextGaussian();
+            sma.update(i * 60, closes[i]);
+            ema.update(i * 60, closes[i]);
+            bands.update(i * 60, closes[i]);
+
+            if (i < 19) {
+                assertTrue(Double.isNaN(sma.getValue(0)));
+                assertTrue(Double.isNaN(bands.getValue(BollingerBands.UPPER_BAND)));
+            } else {
+                double sum = 0;
+                for (int j = i - 19; j <= i; j++) {
+                    sum += closes[j];
+                }
+                final double mean = sum / 20;
+                double squares = 0;
+                for (int j = i - 19; j <= i; j++) {
+                    squares += (closes[j] - mean) * (closes[j] - mean);
+                }
+                final double deviation = Math.sqrt(squares / 20);
+                assertEquals(mean, sma.getValue(0), 1e-9);
+                assertEquals(mean, bands.getValue(BollingerBands.MIDDLE_BAND), 1e-9);
+                assertEquals(mean + 2 * deviation, bands.getValue(BollingerBands.UPPER_BAND), 1e-9);
+                assertEquals(mean - 2 * deviation, bands.getValue(BollingerBands.LOWER_BAND), 1e-9);
+            }
+
+            if (i < 9) {
+                assertTrue(Double.isNaN(ema.getValue(0)));
+            } else {
+                double expected = 0;
+                for (int j = 0; j < 10; j++) {
+                    expected += closes[j];
+                }
+                expected /= 10;
+                for (int j = 10; j <= i; j++) {
+                    expected += 2.0 / 11 * (closes[j] - expected);
+                }
+                assertEquals(expected, ema.getValue(0), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void relativeStrengthIndex_followsWilder() {
+        final RelativeStrengthIndex rsi = new RelativeStrengthIndex(2);
+        rsi.update(0, 10);
+        rsi.update(60, 12);
+        assertTrue(Double.isNaN(rsi.getValue(0)));
+        rsi.update(120, 11);
+        // average gain (2 + 0) / 2 = 1, average loss (0 + 1) / 2 = 0.5
+        assertEquals(100 * 1 / 1.5, rsi.getValue(0), 1e-9);
+        rsi.update(180, 14);
+        // gain 1 / 2 + 3 / 2 = 2, loss 0.5 / 2 + 0 = 0.25
+        assertEquals(100 * 2 / 2.25, rsi.getValue(0), 1e-9);
+
+        final RelativeStrengthIndex flat = new RelativeStrengthIndex(2);
+        for (int i = 0; i < 5; i++) {
+            flat.update(i * 60, 10);
+        }
+        assertEquals(50, flat.getValue(0), 0.0);
+    }
+
+    @Test
+    public void update_revisingNewestBarMatchesFreshIndicator() {
+        final Random random = new Random(11);
+        final IndicatorPipeline revised = new IndicatorPipeline();
+        final MovingAverageConvergenceDivergence revisedMacd = new MovingAverageConvergenceDivergence(3, 6, 4);
+        final RelativeStrengthIndex revisedRsi = new RelativeStrengthIndex(5);
+        revised.add(revisedMacd);
+        revised.add(revisedRsi);
+        final MovingAverageConvergenceDivergence freshMacd = new MovingAverageConvergenceDivergence(3, 6, 4);
+        final RelativeStrengthIndex freshRsi = new RelativeStrengthIndex(5);
+
+        for (int i = 0; i < 100; i++) {
+            final double close = 50 + random.nextGaussian();
+            // the forming bar is seen a few times before it settles
+            revised.update(i * 60, close + 1);
+            revised.update(i * 60, close - 1);
+            revised.update(i * 60, close);
+            freshMacd.update(i * 60, close);
+            freshRsi.update(i * 60, close);
+
+            assertEquals(freshMacd.getValue(MovingAverageConvergenceDivergence.MACD_LINE),
+                    revisedMacd.getValue(MovingAverageConvergenceDivergence.MACD_LINE), 0.0);
+            assertEquals(freshMacd.getValue(MovingAverageConvergenceDivergence.SIGNAL_LINE),
+                    revisedMacd.getValue(MovingAverageConvergenceDivergence.SIGNAL_LINE), 0.0);
+            assertEquals(freshRsi.getValue(0), revisedRsi.getValue(0), 0.0);
+        }
+        // the slow EMA and then the signal line have warmed up
+        assertFalse(Double.isNaN(revisedMacd.getValue(MovingAverageConvergenceDivergence.SIGNAL_LINE)));
+
+        assertFalse(revised.update(0, 1));
+        revised.clear();
+        assertTrue(Double.isNaN(revisedRsi.getValue(0)));
+    }
+}
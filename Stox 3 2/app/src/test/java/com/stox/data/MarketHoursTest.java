@@ -0,0 +1,55 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.*;
+
+public class MarketHoursTest {
+
+    private static Instant newYork(final String localDateTime) {
+        return LocalDateTime.parse(localDateTime).atZone(MarketHours.EXCHANGE_ZONE).toInstant();
+    }
+
+    @Test
+    public void isOpen_onlyDuringWeekdaySession() {
+        // Friday 12 April 2019
+        assertFalse(MarketHours.isOpen(newYork("2019-04-12T09:29:59")));
+        assertTrue(MarketHours.isOpen(newYork("2019-04-12T09:30:00")));
+        assertTrue(MarketHours.isOpen(newYork("2019-04-12T15:59:59")));
+        assertFalse(MarketHours.isOpen(newYork("2019-04-12T16:00:00")));
+        assertFalse(MarketHours.isOpen(newYork("2019-04-13T12:00:00")));
+    }
+
+    @Test
+    public void lastClose_skipsWeekends() {
+        assertEquals(newYork("2019-04-12T16:00:00"), MarketHours.lastClose(newYork("2019-04-12T16:00:00")));
+        assertEquals(newYork("2019-04-11T16:00:00"), MarketHours.lastClose(newYork("2019-04-12T15:00:00")));
+        // from Monday morning back to Friday
+        assertEquals(newYork("2019-04-12T16:00:00"), MarketHours.lastClose(newYork("2019-04-15T08:00:00")));
+    }
+
+    @Test
+    public void hasNewBars_onceAfterClose() {
+        final Instant saturday = newYork("2019-04-13T10:00:00");
+        assertTrue(MarketHours.hasNewBars(saturday, newYork("2019-04-12T15:45:00")));
+        assertFalse(MarketHours.hasNewBars(saturday, newYork("2019-04-12T16:05:00")));
+        assertTrue(MarketHours.hasNewBars(newYork("2019-04-15T10:00:00"), newYork("2019-04-15T09:45:00")));
+        assertTrue(MarketHours.hasNewBars(saturday, Instant.EPOCH));
+    }
+
+    @Test
+    public void isMissingBars_untilTheLastSessionsCloseIsStored() {
+        final Instant saturday = newYork("2019-04-13T10:00:00");
+        // Friday's 16:00 bar, in TickSeries encoding
+        final long fridayClose = 1555084800L;
+        assertEquals(fridayClose, MarketHours.toTickTime(newYork("2019-04-12T16:00:00")));
+        assertFalse(MarketHours.isMissingBars(saturday, fridayClose));
+        assertTrue(MarketHours.isMissingBars(saturday, fridayClose - 60));
+        assertTrue(MarketHours.isMissingBars(saturday, -1));
+        // while the session is open there can always be a newer bar
+        assertTrue(MarketHours.isMissingBars(newYork("2019-04-15T10:00:00"), fridayClose + 3 * 86400));
+    }
+}
@@ -0,0 +1,110 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterTest {
+
+    // 2019-05-10 13:30 UTC
+    private static final long START_MILLIS = 1557495000000L;
+
+    private long now;
+
+    private final RateLimiter.Clock clock = new RateLimiter.Clock() {
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return START_MILLIS + TimeUnit.NANOSECONDS.toMillis(now);
+        }
+    };
+
+    private static final class MemoryDailyCount implements RateLimiter.DailyCount {
+        long day = -1;
+        int count;
+
+        @Override
+        public int load(final long day) {
+            return this.day == day ? count : 0;
+        }
+
+        @Override
+        public void save(final long day, final int count) {
+            this.day = day;
+            this.count = count;
+        }
+    }
+
+    private List<Long> acquireAll(final RateLimiter rateLimiter, final int calls) {
+        final List<Long> times = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            long wait;
+            while ((wait = rateLimiter.tryAcquire()) > 0) {
+                now += wait;
+            }
+            times.add(now);
+        }
+        return times;
+    }
+
+    @Test
+    public void tryAcquire_allowsFiveCallsInAnyMinute() {
+        final RateLimiter rateLimiter = RateLimiter.forAlphaVantage(clock);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rateLimiter.tryAcquire());
+            now += TimeUnit.SECONDS.toNanos(10);
+        }
+        // the sixth call has to wait until the first one is a minute old
+        assertEquals(TimeUnit.SECONDS.toNanos(10), rateLimiter.tryAcquire());
+        now += TimeUnit.SECONDS.toNanos(10);
+        assertEquals(0, rateLimiter.tryAcquire());
+        assertEquals(TimeUnit.SECONDS.toNanos(10), rateLimiter.tryAcquire());
+
+        final List<Long> times = acquireAll(rateLimiter, 100);
+        for (int i = 5; i < times.size(); i++) {
+            assertTrue(times.get(i) - times.get(i - 5) >= TimeUnit.MINUTES.toNanos(1));
+        }
+    }
+
+    @Test
+    public void tryAcquire_allowsFiveHundredCallsPerDay() {
+        final RateLimiter rateLimiter = RateLimiter.forAlphaVantage(clock);
+        final List<Long> times = acquireAll(rateLimiter, 500);
+        // a hundred minutes of five calls each, well before midnight
+        assertTrue(times.get(499) < TimeUnit.MINUTES.toNanos(100));
+
+        // the next call waits for midnight, 10 hours and 30 minutes after the start
+        final long wait = rateLimiter.tryAcquire();
+        assertEquals(TimeUnit.MINUTES.toNanos(630), now + wait);
+        now += wait;
+        assertEquals(0, rateLimiter.tryAcquire());
+    }
+
+    @Test
+    public void tryAcquire_keepsTheDailyCountAcrossRestarts() {
+        final MemoryDailyCount dailyCount = new MemoryDailyCount();
+        final RateLimiter first = RateLimiter.forAlphaVantage(clock);
+        first.setDailyCount(dailyCount);
+        acquireAll(first, 300);
+        assertEquals(300, dailyCount.count);
+
+        final RateLimiter second = RateLimiter.forAlphaVantage(clock);
+        second.setDailyCount(dailyCount);
+        acquireAll(second, 200);
+        assertTrue(second.tryAcquire() > TimeUnit.HOURS.toNanos(1));
+
+        // a count saved on another day doesn't count
+        dailyCount.day--;
+        final RateLimiter third = RateLimiter.forAlphaVantage(clock);
+        third.setDailyCount(dailyCount);
+        assertEquals(0, third.tryAcquire());
+    }
+}
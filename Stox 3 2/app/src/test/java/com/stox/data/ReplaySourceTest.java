@@ -0,0 +1,86 @@
+package com.stox.data;
+
+import org.junit.Test;
+import org.patriques.input.timeseries.OutputSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReplaySourceTest {
+
+    private static final SeriesKey KEY = new SeriesKey("AMZN", Timeframe.ONE_MIN);
+    // 2019-05-10 09:30 exchange time
+    private static final long OPEN = 1557480600L;
+
+    private long now;
+
+    /**
+     * A recording of 200 bars the day before and 10 bars on the replayed day.
+     */
+    private static TickStore recording() throws IOException {
+        final TickSeries.Builder builder = new TickSeries.Builder(210);
+        for (int i = 0; i < 200; i++) {
+            builder.add(OPEN - TickSeries.SECONDS_PER_DAY + i * 60, i, i, i, i, 100);
+        }
+        for (int i = 0; i < 10; i++) {
+            builder.add(OPEN + i * 60, 1000 + i, 1000 + i, 1000 + i, 1000 + i, 100);
+        }
+        final TickStore store = new TickStore(Files.createTempDirectory("replay").toFile());
+        store.merge(KEY, builder.build());
+        return store;
+    }
+
+    @Test
+    public void fetch_releasesBarsAsTheReplayClockPassesThem() throws IOException {
+        final ReplaySource source = new ReplaySource(recording(), 60, () -> now);
+        // the history and the replayed day's first bar
+        final TickSeries first = source.fetch(KEY, OutputSize.FULL, TimeSeriesParser.ALL);
+        assertEquals(201, first.size());
+        assertEquals(OPEN, first.getLastTime());
+
+        // at 60x a one minute bar takes a second
+        now += TimeUnit.MILLISECONDS.toNanos(2500);
+        final TickSeries second = source.fetch(KEY, OutputSize.COMPACT, OPEN);
+        assertEquals(3, second.size());
+        assertEquals(OPEN, second.getTime(0));
+        assertEquals(OPEN + 120, second.getLastTime());
+
+        now += TimeUnit.HOURS.toNanos(1);
+        assertEquals(OPEN + 9 * 60, source.fetch(KEY, OutputSize.COMPACT, OPEN).getLastTime());
+    }
+
+    @Test
+    public void fetch_compactReturnsTheNewestBarsOnly() throws IOException {
+        final ReplaySource source = new ReplaySource(recording(), 1, () -> now);
+        final TickSeries compact = source.fetch(KEY, OutputSize.COMPACT, TimeSeriesParser.ALL);
+        assertEquals(MarketDataSource.COMPACT_SIZE, compact.size());
+        assertEquals(OPEN, compact.getLastTime());
+    }
+
+    @Test
+    public void fetch_asFastAsPossibleReleasesABarPerFetch() throws IOException {
+        final ReplaySource source = new ReplaySource(recording(), ReplaySource.AS_FAST_AS_POSSIBLE, () -> now);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(OPEN + i * 60, source.fetch(KEY, OutputSize.COMPACT, OPEN).getLastTime());
+        }
+        // the recording is over, nothing changes any more
+        assertEquals(OPEN + 9 * 60, source.fetch(KEY, OutputSize.COMPACT, OPEN).getLastTime());
+
+        source.rewind();
+        assertEquals(OPEN, source.fetch(KEY, OutputSize.COMPACT, OPEN).getLastTime());
+    }
+
+    @Test
+    public void fetch_failsWithoutARecording() throws IOException {
+        final ReplaySource source = new ReplaySource(recording(), 1, () -> now);
+        try {
+            source.fetch(new SeriesKey("MSFT", Timeframe.ONE_MIN), OutputSize.FULL, TimeSeriesParser.ALL);
+            fail();
+        } catch (final MarketDataException e) {
+            assertFalse(e.isRateLimited());
+        }
+    }
+}
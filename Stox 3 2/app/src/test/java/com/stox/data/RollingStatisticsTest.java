@@ -0,0 +1,77 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RollingStatisticsTest {
+
+    @Test
+    public void slidingWindow_matchesFullScan() {
+        final RollingStatistics statistics = new RollingStatistics(1000);
+        final Random random = new Random(42);
+        final double[] closes = new double[1000];
+        final long[] volumes = new long[1000];
+
+        for (int i = 0; i < closes.length; i++) {
+            closes[i] = 100 + random.nextGaussian();
+            volumes[i] = random.nextInt(1000);
+            statistics.update(i * 10, closes[i], volumes[i]);
+
+            // bars in [time - 1000, time]
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            double sum = 0;
+            double priceVolume = 0;
+            long volume = 0;
+            int count = 0;
+            for (int j = Math.max(0, i - 100); j <= i; j++) {
+                min = Math.min(min, closes[j]);
+                max = Math.max(max, closes[j]);
+                sum += closes[j];
+                priceVolume += closes[j] * volumes[j];
+                volume += volumes[j];
+                count++;
+            }
+            assertEquals(count, statistics.getCount());
+            assertEquals(min, statistics.getMin(), 0.0);
+            assertEquals(max, statistics.getMax(), 0.0);
+            assertEquals(sum / count, statistics.getMean(), 1e-9);
+            if (volume > 0) {
+                assertEquals(priceVolume / volume, statistics.getVwap(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void update_revisesNewestBar() {
+        final RollingStatistics statistics = new RollingStatistics(RollingStatistics.UNBOUNDED);
+        statistics.update(0, 5, 1);
+        statistics.update(60, 3, 1);
+        statistics.update(120, 10, 1);
+        // the forming bar settles lower, the earlier maximum must come back
+        statistics.update(120, 4, 1);
+
+        assertEquals(3, statistics.getCount());
+        assertEquals(5.0, statistics.getMax(), 0.0);
+        assertEquals(3.0, statistics.getMin(), 0.0);
+        assertEquals(4.0, statistics.getMean(), 1e-12);
+        assertEquals(Math.sqrt(2.0 / 3.0), statistics.getStandardDeviation(), 1e-12);
+        assertFalse(statistics.update(60, 1, 1));
+    }
+
+    @Test
+    public void seriesStatistics_resetsDayAcrossYearBoundary() {
+        final SeriesStatistics statistics = new SeriesStatistics();
+        // 2018-12-31 15:59 and 2019-01-02 09:30 exchange time
+        statistics.update(1546271940L, 100, 1);
+        statistics.update(1546421400L, 90, 1);
+
+        assertEquals(1, statistics.getDay().getCount());
+        assertEquals(90.0, statistics.getDay().getMax(), 0.0);
+        assertEquals(100.0, statistics.getWeek().getMax(), 0.0);
+        assertEquals(2, statistics.getWeek().getCount());
+    }
+}
@@ -0,0 +1,224 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SeriesArchiveTest {
+
+    // 2019-05-10 09:30 exchange time
+    private static final long START = 1557480600L;
+
+    /**
+     * Minute bars of a few trading days, prices in cents like AlphaVantage's, with gaps overnight.
+     */
+    private static TickSeries minutes(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final TickSeries.Builder builder = new TickSeries.Builder(count);
+        double close = 1900;
+        for (int i = 0; i < count; i++) {
+            final long time = START + (i / 390) * TickSeries.SECONDS_PER_DAY + (i % 390 + 1) * 60;
+            final double open = close;
+            close = Math.round((close + random.nextGaussian()) * 100) / 100.0;
+            builder.add(time, open, Math.max(open, close) + 0.25, Math.min(open, close) - 0.25, close,
+                    1000 + random.nextInt(5000));
+        }
+        return builder.build();
+    }
+
+    private static void assertSameBars(final TickSeries expected, final TickSeries actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getTime(i), actual.getTime(i));
+            assertEquals(expected.getOpen(i), actual.getOpen(i), 0.0);
+            assertEquals(expected.getHigh(i), actual.getHigh(i), 0.0);
+            assertEquals(expected.getLow(i), actual.getLow(i), 0.0);
+            assertEquals(expected.getClose(i), actual.getClose(i), 0.0);
+            assertEquals(expected.getVolume(i), actual.getVolume(i));
+        }
+    }
+
+    /**
+     * Collects what it receives, one merged series per symbol and interval.
+     */
+    private static final class Collector implements SeriesSink {
+        final List<SeriesKey> keys = new ArrayList<>();
+        final List<TickSeries> series = new ArrayList<>();
+
+        @Override
+        public void beginSeries(final String stockSymbol, final Timeframe interval) {
+            keys.add(new SeriesKey(stockSymbol, interval));
+            series.add(TickSeries.empty());
+        }
+
+        @Override
+        public void addBars(final TickSeries bars) {
+            series.set(series.size() - 1, series.get(series.size() - 1).merge(bars));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void archive_roundTripsExactlyAndCompresses() throws IOException {
+        // more than a block, so that the series spans two
+        final TickSeries amzn = minutes(SeriesArchive.BLOCK_SIZE + 500, 1);
+        // split adjusted daily closes aren't whole cents, so they're XOR compressed
+        final TickSeries.Builder adjusted = new TickSeries.Builder(10);
+        final TickSeries daily = minutes(10, 2);
+        for (int i = 0; i < daily.size(); i++) {
+            adjusted.add(daily.getTime(i), daily.getOpen(i) / 3, daily.getHigh(i) / 3, daily.getLow(i) / 3,
+                    daily.getClose(i) / 3, daily.getVolume(i) * 3);
+        }
+        final TickSeries msft = adjusted.build();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SeriesArchive.Writer writer = new SeriesArchive.Writer(bytes)) {
+            writer.beginSeries("AMZN", Timeframe.ONE_MIN);
+            writer.addBars(amzn);
+            writer.beginSeries("MSFT", Timeframe.DAILY);
+            writer.addBars(msft.slice(0, 4));
+            writer.addBars(msft.slice(4, 10));
+        }
+
+        final Collector collector = new Collector();
+        SeriesArchive.read(ByteBuffer.wrap(bytes.toByteArray()), collector);
+        assertEquals(Arrays.asList(new SeriesKey("AMZN", Timeframe.ONE_MIN), new SeriesKey("MSFT", Timeframe.DAILY)),
+                collector.keys);
+        assertSameBars(amzn, collector.series.get(0));
+        assertSameBars(msft, collector.series.get(1));
+
+        // a fraction of the tick store's 48 bytes a bar
+        final int stored = (amzn.size() + msft.size()) * TickStore.RECORD_SIZE;
+        assertTrue(bytes.size() + " bytes", bytes.size() < stored / 4);
+    }
+
+    @Test
+    public void csv_roundTrips() throws IOException {
+        final TickSeries amzn = minutes(20, 3);
+        final StringWriter text = new StringWriter();
+        try (SeriesCsv.Writer writer = new SeriesCsv.Writer(text)) {
+            writer.beginSeries("AMZN", Timeframe.FIVE_MIN);
+            writer.addBars(amzn);
+        }
+        assertTrue(text.toString().contains("\nAMZN,FIVE_MIN,2019-05-10 09:31:00,1900.0,"));
+
+        final Collector collector = new Collector();
+        SeriesCsv.read(new StringReader(text.toString()), collector);
+        assertEquals(Arrays.asList(new SeriesKey("AMZN", Timeframe.FIVE_MIN)), collector.keys);
+        assertSameBars(amzn, collector.series.get(0));
+    }
+
+    @Test
+    public void transfer_importKeepsStoredBarsAndRollsUp() throws IOException {
+        final TickSeries exported = minutes(100, 4);
+        final TickStore source = new TickStore(Files.createTempDirectory("ticks").toFile());
+        final SeriesKey key = new SeriesKey("AMZN", Timeframe.ONE_MIN);
+        source.merge(key, exported);
+        final File file = new File(Files.createTempDirectory("export").toFile(), "amzn.stxa");
+        try (SeriesArchive.Writer writer = new SeriesArchive.Writer(new FileOutputStream(file))) {
+            assertEquals(100, new SeriesTransfer(source).exportTo(Arrays.asList(key,
+                    new SeriesKey("MSFT", Timeframe.ONE_MIN)), writer));
+        }
+
+        // the importing device already fetched the last 40 of the bars, with a revised close
+        final TickStore target = new TickStore(Files.createTempDirectory("ticks").toFile());
+        final TickSeries.Builder fetched = new TickSeries.Builder(40);
+        for (int i = 60; i < 100; i++) {
+            fetched.add(exported.getTime(i), exported.getOpen(i), exported.getHigh(i), exported.getLow(i),
+                    exported.getClose(i) + 1, exported.getVolume(i));
+        }
+        target.merge(key, fetched.build());
+        try (SeriesSink importer = new SeriesTransfer(target).importer()) {
+            SeriesArchive.read(file, importer);
+        }
+
+        final TickSeries merged = target.read(key);
+        assertEquals(100, merged.size());
+        assertEquals(exported.getClose(59), merged.getClose(59), 0.0);
+        assertEquals(exported.getClose(60) + 1, merged.getClose(60), 0.0);
+        // 09:31 to 11:10 rolled up into 5 minute bars ending 09:35 to 11:10
+        assertEquals(20, target.size(new SeriesKey("AMZN", Timeframe.FIVE_MIN)));
+        assertEquals(1, target.size(new SeriesKey("AMZN", Timeframe.DAILY)));
+    }
+
+    @Test
+    public void transfer_importMergesInterleavedBarsInOnePass() throws IOException {
+        // every other minute is stored, the import brings the ones in between and a few newer ones
+        final TickSeries all = minutes(3 * SeriesArchive.BLOCK_SIZE, 4);
+        final TickStore target = new TickStore(Files.createTempDirectory("ticks").toFile());
+        // filed as daily bars, which aren't rolled up any further
+        final SeriesKey key = new SeriesKey("AMZN", Timeframe.DAILY);
+        final TickSeries.Builder stored = new TickSeries.Builder(all.size() / 2);
+        final TickSeries.Builder imported = new TickSeries.Builder(all.size() / 2);
+        for (int i = 0; i < all.size(); i++) {
+            (i % 2 == 0 && i < all.size() - 10 ? stored : imported).add(all.getTime(i), all.getOpen(i),
+                    all.getHigh(i), all.getLow(i), all.getClose(i), all.getVolume(i));
+        }
+        target.merge(key, stored.build());
+        final TickSeries importedBars = imported.build();
+        try (SeriesSink importer = new SeriesTransfer(target).importer()) {
+            importer.beginSeries("AMZN", Timeframe.DAILY);
+            for (int from = 0; from < importedBars.size(); from += 1000) {
+                final TickSeries.Builder chunk = new TickSeries.Builder(1000);
+                chunk.addAll(importedBars, from, Math.min(importedBars.size(), from + 1000));
+                importer.addBars(chunk.build());
+            }
+        }
+        assertSameBars(all, target.read(key));
+        assertEquals(0, target.size(new SeriesKey("AMZN~import", Timeframe.DAILY)));
+    }
+
+    @Test
+    public void transfer_importRejectsSymbolsThatAreNotSymbols() throws IOException {
+        final TickStore target = new TickStore(Files.createTempDirectory("ticks").toFile());
+        for (final String stockSymbol : Arrays.asList("../../X", "..", "", "AMZN/X", "amzn", "ABCDEFGHIJKLM")) {
+            try (SeriesSink importer = new SeriesTransfer(target).importer()) {
+                importer.beginSeries(stockSymbol, Timeframe.ONE_MIN);
+                fail(stockSymbol);
+            } catch (final IOException e) {
+                // expected
+            }
+        }
+        SeriesTransfer.checkStockSymbol("BRK.B");
+        SeriesTransfer.checkStockSymbol("RDS-A");
+    }
+
+    @Test
+    public void read_rejectsForeignFiles() throws IOException {
+        try {
+            SeriesArchive.read(ByteBuffer.wrap("symbol,interval".getBytes(StandardCharsets.UTF_8)), new Collector());
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+        try {
+            SeriesCsv.read(new StringReader("timestamp,open,high,low,close,volume\n"), new Collector());
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+        try {
+            SeriesCsv.read(new StringReader("symbol,interval,timestamp,open,high,low,close,volume\n"
+                    + "AMZN,FORTNIGHTLY,2019-05-10,1,1,1,1,1\n"), new Collector());
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SeriesCacheTest {
+
+    private static TickSeries series(final int size) {
+        final TickSeries.Builder builder = new TickSeries.Builder(size);
+        for (int i = 0; i < size; i++) {
+            builder.add(1557480600L + i * 60, 1, 1, 1, 1, 1);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void get_expiresAfterIntervalTimeToLive() {
+        final SeriesCache cache = new SeriesCache(1024 * 1024);
+        final SeriesKey key = new SeriesKey("AMZN", Timeframe.ONE_MIN);
+        final TickSeries tickSeries = series(10);
+        cache.put(key, tickSeries, 0);
+
+        assertSame(tickSeries, cache.get(key, 59_999));
+        assertNull(cache.get(key, 60_000));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedByBytes() {
+        // room for exactly two series
+        final SeriesCache cache = new SeriesCache(2 * series(10).sizeBytes());
+        final SeriesKey amzn = new SeriesKey("AMZN", Timeframe.DAILY);
+        final SeriesKey msft = new SeriesKey("MSFT", Timeframe.DAILY);
+        final SeriesKey goog = new SeriesKey("GOOG", Timeframe.DAILY);
+        cache.put(amzn, series(10), 0);
+        cache.put(msft, series(10), 0);
+        // touch AMZN so that MSFT becomes the eldest
+        assertNotNull(cache.get(amzn, 1));
+        cache.put(goog, series(10), 2);
+
+        assertNotNull(cache.get(amzn, 3));
+        assertNull(cache.get(msft, 3));
+        assertNotNull(cache.get(goog, 3));
+        assertEquals(1, cache.getEvictionCount());
+    }
+}
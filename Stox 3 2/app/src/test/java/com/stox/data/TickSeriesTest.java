@@ -0,0 +1,79 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TickSeriesTest {
+
+    @Test
+    public void build_reversesNewestFirstInput() {
+        final TickSeries series = new TickSeries.Builder(3)
+                .add(300, 3, 3, 3, 3, 3)
+                .add(200, 2, 2, 2, 2, 2)
+                .add(100, 1, 1, 1, 1, 1)
+                .build();
+
+        assertEquals(3, series.size());
+        assertEquals(100, series.getTime(0));
+        assertEquals(3.0, series.getClose(2), 0.0);
+        assertEquals(2, series.getVolume(1));
+    }
+
+    @Test
+    public void build_sortsShuffledInputAndDropsDuplicates() {
+        final TickSeries series = new TickSeries.Builder(4)
+                .add(200, 2, 2, 2, 2, 2)
+                .add(300, 3, 3, 3, 3, 3)
+                .add(100, 1, 1, 1, 1, 1)
+                .add(200, 2, 2, 2, 2, 2)
+                .build();
+
+        assertEquals(3, series.size());
+        assertEquals(100, series.getTime(0));
+        assertEquals(200, series.getTime(1));
+        assertEquals(300, series.getLastTime());
+    }
+
+    @Test
+    public void build_sortsMoreBarsThanFitAPackedIndex() {
+        // two ascending halves out of order, more than 2^20 bars in all
+        final int half = (1 << 20) / 2 + 100;
+        final TickSeries.Builder builder = new TickSeries.Builder(2 * half);
+        for (int i = 0; i < half; i++) {
+            builder.add(1557480600L + (half + i) * 60L, half + i, half + i, half + i, half + i, half + i);
+        }
+        for (int i = 0; i < half; i++) {
+            builder.add(1557480600L + i * 60L, i, i, i, i, i);
+        }
+        // a later revision of the first bar wins
+        builder.add(1557480600L, -1, -1, -1, -1, -1);
+        final TickSeries series = builder.build();
+
+        assertEquals(2 * half, series.size());
+        assertEquals(-1.0, series.getClose(0), 0.0);
+        for (int i = 1; i < series.size(); i++) {
+            assertEquals(1557480600L + i * 60L, series.getTime(i));
+            assertEquals(i, series.getVolume(i));
+        }
+    }
+
+    @Test
+    public void merge_replacesOverlappingBars() {
+        final TickSeries older = new TickSeries.Builder(3)
+                .add(100, 1, 1, 1, 1, 1)
+                .add(200, 2, 2, 2, 2, 2)
+                .add(300, 3, 3, 3, 3, 3)
+                .build();
+        final TickSeries newer = new TickSeries.Builder(2)
+                .add(300, 4, 4, 4, 4, 4)
+                .add(400, 5, 5, 5, 5, 5)
+                .build();
+
+        final TickSeries merged = older.merge(newer);
+        assertEquals(4, merged.size());
+        assertEquals(4.0, merged.getClose(2), 0.0);
+        assertEquals(400, merged.getLastTime());
+        assertEquals(2, merged.indexAtOrAfter(250));
+    }
+}
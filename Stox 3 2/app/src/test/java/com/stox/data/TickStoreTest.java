@@ -0,0 +1,46 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class TickStoreTest {
+
+    private static final SeriesKey KEY = new SeriesKey("AMZN", Timeframe.ONE_MIN);
+    // 2019-05-10 09:30 exchange time
+    private static final long START = 1557480600L;
+
+    private static TickSeries bars(final int firstMinute, final double... closes) {
+        final TickSeries.Builder builder = new TickSeries.Builder(closes.length);
+        for (int i = 0; i < closes.length; i++) {
+            builder.add(START + (firstMinute + i) * 60, closes[i], closes[i], closes[i], closes[i], 100);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void read_isEmptyWhenNothingStored() throws IOException {
+        final TickStore store = new TickStore(Files.createTempDirectory("ticks").toFile());
+        assertTrue(store.read(KEY).isEmpty());
+        assertEquals(-1, store.lastTimestamp(KEY));
+    }
+
+    @Test
+    public void merge_appendsAndReplacesOverlappingBars() throws IOException {
+        final File directory = Files.createTempDirectory("ticks").toFile();
+        final TickStore store = new TickStore(directory);
+        store.merge(KEY, bars(0, 1, 2, 3));
+        // the last stored bar was still forming, the delta brings its final value
+        store.merge(KEY, bars(2, 4, 5));
+
+        final TickSeries stored = new TickStore(directory).read(KEY);
+        assertEquals(4, stored.size());
+        assertEquals(START + 3 * 60, stored.getTime(3));
+        assertEquals(4.0, stored.getClose(2), 0.0);
+        assertEquals(START + 3 * 60, store.lastTimestamp(KEY));
+    }
+}
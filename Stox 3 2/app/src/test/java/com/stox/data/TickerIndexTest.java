@@ -0,0 +1,97 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TickerIndexTest {
+
+    private static TickerIndex open() throws IOException {
+        final File file = new File(Files.createTempDirectory("tickers").toFile(), "tickers.idx");
+        new TickerIndex.Builder()
+                .addListingCsv(new InputStreamReader(TickerIndexTest.class.getResourceAsStream("/listing_status.csv"),
+                        StandardCharsets.UTF_8))
+                .writeTo(file);
+        return TickerIndex.open(file);
+    }
+
+    private static List<String> symbols(final List<TickerIndex.Listing> listings) {
+        final List<String> symbols = new ArrayList<>();
+        for (final TickerIndex.Listing listing : listings) {
+            symbols.add(listing.getSymbol());
+        }
+        return symbols;
+    }
+
+    @Test
+    public void contains_validatesSymbolsInAnyCase() throws IOException {
+        final TickerIndex index = open();
+        assertEquals(10, index.size());
+        assertTrue(index.contains("AAPL"));
+        assertTrue(index.contains(" brk-b "));
+        assertTrue(index.contains("A"));
+        assertFalse(index.contains("AAP"));
+        assertFalse(index.contains("AAPLX"));
+        assertFalse(index.contains("ZZZZ"));
+        assertEquals("Apple Inc", index.getName("aapl"));
+        // a comma in the name doesn't shift the columns
+        assertEquals("Invesco QQQ Trust, Series 1", index.getName("QQQ"));
+        assertNull(index.getName("ZZZZ"));
+    }
+
+    @Test
+    public void search_findsSymbolPrefixesThenNameWords() throws IOException {
+        final TickerIndex index = open();
+        assertEquals(Arrays.asList("AA", "AAPL"), symbols(index.search("aa", 10)));
+        assertEquals(Arrays.asList("GOOG", "GOOGL"), symbols(index.search("GOOG", 10)));
+        // "A" starts four symbols, then the name words Agilent, Alcoa, Alphabet and Amazon
+        assertEquals(Arrays.asList("A", "AA", "AAPL", "AMZN", "GOOG", "GOOGL"), symbols(index.search("a", 10)));
+        assertEquals(Arrays.asList("A", "AA"), symbols(index.search("a", 2)));
+        assertEquals(Arrays.asList("MSFT"), symbols(index.search("micro", 10)));
+        assertEquals(Arrays.asList("GOOGL"), symbols(index.search("alphabet class a", 10)));
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void search_fallsBackToSymbolsOneEditAway() throws IOException {
+        final TickerIndex index = open();
+        // a swap, a substitution, a missing and an extra letter
+        assertEquals(Arrays.asList("AAPL"), symbols(index.search("APAL", 10)));
+        assertEquals(Arrays.asList("MSFT"), symbols(index.search("MSFY", 10)));
+        assertEquals(Arrays.asList("AMZN"), symbols(index.search("AZN", 10)));
+        assertEquals(Arrays.asList("QQQ"), symbols(index.search("QQQQ", 10)));
+        assertTrue(index.search("XYZW", 10).isEmpty());
+    }
+
+    @Test
+    public void open_handlesMissingAndForeignFiles() throws IOException {
+        final File directory = Files.createTempDirectory("tickers").toFile();
+        assertTrue(TickerIndex.open(new File(directory, "missing.idx")).isEmpty());
+
+        final File foreign = new File(directory, "foreign.idx");
+        Files.write(foreign.toPath(), "symbol,name".getBytes(StandardCharsets.UTF_8));
+        try {
+            TickerIndex.open(foreign);
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+
+        try {
+            new TickerIndex.Builder().addListingCsv(new StringReader("{\"Information\": \"rate limited\"}"));
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+}
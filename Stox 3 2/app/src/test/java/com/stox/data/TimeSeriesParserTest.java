@@ -0,0 +1,81 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TimeSeriesParserTest {
+
+    // 2019-05-10 16:00 exchange time
+    private static final long CLOSE = 1557504000L;
+
+    private static Reader fixture(final String name) {
+        return new InputStreamReader(TimeSeriesParserTest.class.getResourceAsStream("/" + name), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void parseJson_readsBarsInAscendingOrder() throws IOException {
+        final TickSeries series = TimeSeriesParser.parseJson(fixture("intraday_1min_compact.json"), TimeSeriesParser.ALL);
+        assertEquals(4, series.size());
+        assertEquals(CLOSE - 3 * 60, series.getTime(0));
+        assertEquals(126.98, series.getOpen(0), 0);
+        assertEquals(127.05, series.getHigh(0), 0);
+        assertEquals(126.97, series.getLow(0), 0);
+        assertEquals(127.03, series.getClose(0), 0);
+        assertEquals(178010, series.getVolume(0));
+        assertEquals(CLOSE, series.getLastTime());
+        assertEquals(1253398, series.getVolume(3));
+    }
+
+    @Test
+    public void parseJson_stopsAtBarsWeAlreadyHave() throws IOException {
+        final TickSeries series = TimeSeriesParser.parseJson(fixture("intraday_1min_compact.json"), CLOSE - 60);
+        assertEquals(2, series.size());
+        assertEquals(CLOSE - 60, series.getTime(0));
+        assertEquals(CLOSE, series.getTime(1));
+    }
+
+    @Test
+    public void parseCsv_matchesJson() throws IOException {
+        final TickSeries json = TimeSeriesParser.parseJson(fixture("intraday_1min_compact.json"), CLOSE - 2 * 60);
+        final TickSeries csv = TimeSeriesParser.parseCsv(fixture("intraday_1min_compact.csv"), CLOSE - 2 * 60);
+        assertEquals(json.size(), csv.size());
+        for (int i = 0; i < json.size(); i++) {
+            assertEquals(json.getTime(i), csv.getTime(i));
+            assertEquals(json.getClose(i), csv.getClose(i), 0);
+            assertEquals(json.getVolume(i), csv.getVolume(i));
+        }
+    }
+
+    @Test
+    public void parseJson_reportsRateLimiting() throws IOException {
+        try {
+            TimeSeriesParser.parseJson(fixture("rate_limited.json"), TimeSeriesParser.ALL);
+            fail();
+        } catch (final MarketDataException e) {
+            assertTrue(e.isRateLimited());
+        }
+    }
+
+    @Test
+    public void parseCsv_reportsJsonErrors() throws IOException {
+        try {
+            TimeSeriesParser.parseCsv(fixture("invalid_symbol.json"), TimeSeriesParser.ALL);
+            fail();
+        } catch (final MarketDataException e) {
+            assertFalse(e.isRateLimited());
+        }
+    }
+
+    @Test
+    public void parseTimestamp_handlesDatesAndLeapYears() throws IOException {
+        assertEquals(0, TimeSeriesParser.parseTimestamp("1970-01-01", 0, 10));
+        assertEquals(CLOSE, TimeSeriesParser.parseTimestamp("2019-05-10 16:00:00", 0, 19));
+        assertEquals(951782400L, TimeSeriesParser.parseTimestamp("2000-02-29", 0, 10));
+    }
+}
@@ -0,0 +1,138 @@
+package com.stox.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WatchlistStoreTest {
+
+    private static File newFile() throws IOException {
+        return new File(Files.createTempDirectory("watchlists").toFile(), "watchlists");
+    }
+
+    @Test
+    public void changes_surviveReopening() throws IOException {
+        final File file = newFile();
+        try (WatchlistStore store = WatchlistStore.open(file)) {
+            assertTrue(store.getWatchlistNames().isEmpty());
+            assertTrue(store.add("Tech", "msft"));
+            assertTrue(store.add("Tech", "AAPL"));
+            assertTrue(store.add("Tech", " amzn "));
+            assertFalse(store.add("Tech", "MSFT"));
+            assertTrue(store.add("Energy", "XOM"));
+            assertTrue(store.move("Tech", "AMZN", 0));
+            assertFalse(store.move("Tech", "AMZN", 0));
+            assertTrue(store.remove("Tech", "AAPL"));
+            assertFalse(store.remove("Energy", "AAPL"));
+            assertTrue(store.updateQuote("MSFT", new Quote(60, 127.5, 126, 125.5, 128)));
+            // only symbols on a watchlist have quotes
+            assertFalse(store.updateQuote("AAPL", new Quote(60, 197, 196, 195, 198)));
+        }
+
+        try (WatchlistStore store = WatchlistStore.open(file)) {
+            assertEquals(Arrays.asList("Tech", "Energy"), store.getWatchlistNames());
+            assertEquals(Arrays.asList("AMZN", "MSFT"), store.getSymbols("Tech"));
+            assertEquals(Arrays.asList("AMZN", "MSFT", "XOM"), store.getAllSymbols());
+            assertEquals(new Quote(60, 127.5, 126, 125.5, 128), store.getQuote("msft"));
+            assertNull(store.getQuote("AAPL"));
+            assertTrue(store.deleteWatchlist("Energy"));
+            assertEquals(Collections.emptyList(), store.getSymbols("Energy"));
+        }
+    }
+
+    @Test
+    public void changes_areAppendedAndCompacted() throws IOException {
+        final File file = newFile();
+        final List<String> quoted = new ArrayList<>();
+        try (WatchlistStore store = WatchlistStore.open(file)) {
+            store.addListener(new WatchlistStore.Listener() {
+                @Override
+                public void onWatchlistChanged(final String name) {
+                }
+
+                @Override
+                public void onQuoteChanged(final String stockSymbol, final Quote quote) {
+                    quoted.add(stockSymbol);
+                }
+            });
+            for (int i = 0; i < 200; i++) {
+                store.add("Big", "S" + i);
+            }
+            // adding one more symbol to a long watchlist appends a single small record
+            final long before = file.length();
+            store.add("Big", "LAST");
+            assertTrue(file.length() - before < 32);
+
+            // a day of quotes for the whole list gets compacted down to the latest ones
+            for (int minute = 1; minute <= 20; minute++) {
+                for (int i = 0; i < 200; i++) {
+                    store.updateQuote("S" + i, new Quote(minute * 60, 100 + minute, 100, 99, 100 + minute));
+                }
+            }
+            assertEquals(4000, quoted.size());
+            assertTrue(file.length() + " bytes", file.length() < 64 * 1024);
+        }
+
+        try (WatchlistStore store = WatchlistStore.open(file)) {
+            assertEquals(201, store.getSymbols("Big").size());
+            assertEquals(120.0, store.getQuote("S199").getLastPrice(), 0.0);
+        }
+    }
+
+    @Test
+    public void open_dropsTornRecordAndRejectsForeignFiles() throws IOException {
+        final File file = newFile();
+        try (WatchlistStore store = WatchlistStore.open(file)) {
+            store.add("Tech", "MSFT");
+            store.add("Tech", "AAPL");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        try (WatchlistStore store = WatchlistStore.open(file)) {
+            assertEquals(Arrays.asList("MSFT"), store.getSymbols("Tech"));
+            store.add("Tech", "AMZN");
+        }
+        try (WatchlistStore store = WatchlistStore.open(file)) {
+            assertEquals(Arrays.asList("MSFT", "AMZN"), store.getSymbols("Tech"));
+        }
+
+        final File foreign = newFile();
+        Files.write(foreign.toPath(), "favorites".getBytes(StandardCharsets.UTF_8));
+        try {
+            WatchlistStore.open(foreign);
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void quote_coversTheNewestBarsDay() {
+        assertNull(Quote.of(TickSeries.empty()));
+        // 2019-05-09 16:00, then 2019-05-10 09:31 and 09:32
+        final long day = 1557446400L;
+        final TickSeries series = new TickSeries.Builder(3)
+                .add(day - 8 * 3600, 10, 12, 9, 11, 100)
+                .add(day + 9 * 3600 + 31 * 60, 11, 13, 10.5, 12, 100)
+                .add(day + 9 * 3600 + 32 * 60, 12, 12.5, 11.5, 12.1, 100)
+                .build();
+        final Quote quote = Quote.of(series);
+        assertEquals(day + 9 * 3600 + 32 * 60, quote.getTime());
+        assertEquals(12.1, quote.getLastPrice(), 0.0);
+        assertEquals(11, quote.getDayOpen(), 0.0);
+        assertEquals(10.5, quote.getDayLow(), 0.0);
+        assertEquals(13, quote.getDayHigh(), 0.0);
+        assertEquals(10, quote.getChangePercent(), 1e-9);
+    }
+}
@@ -0,0 +1,32 @@
+package com.stox.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reducing a series to the points a 1080 pixel wide chart can show.
+ */
+@State(Scope.Benchmark)
+public class DownsamplerBenchmark {
+
+    private static final int POINTS = 540;
+
+    @Param({"1000", "10000", "50000"})
+    public int bars;
+
+    private TickSeries series;
+    private final int[] indices = new int[POINTS];
+
+    @Setup
+    public void setUp() {
+        series = Fixtures.series(bars);
+    }
+
+    @Benchmark
+    public int largestTriangleThreeBuckets() {
+        return Downsampler.largestTriangleThreeBuckets(series, 0, series.size(), POINTS, indices, 0);
+    }
+}
@@ -0,0 +1,94 @@
+package com.stox.data;
+
+import org.patriques.output.timeseries.data.StockData;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic one minute series and AlphaVantage payloads of any size, shaped like the recorded
+ * fixtures in app/src/test/resources: 390 bars per trading day, newest bar first in the payload.
+ */
+final class Fixtures {
+
+    // 2019-05-10 16:00 exchange time, the newest bar of every fixture
+    static final long NEWEST = 1557504000L;
+
+    private static final int BARS_PER_DAY = 390;
+    private static final long OPEN_SECOND_OF_DAY = 9 * 60 * 60 + 30 * 60;
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return a random walk of the given number of one minute bars during trading hours
+     */
+    static TickSeries series(final int bars) {
+        final Random random = new Random(bars);
+        final TickSeries.Builder builder = new TickSeries.Builder(bars);
+        final long newestDay = NEWEST / TickSeries.SECONDS_PER_DAY;
+        double close = 120;
+        for (int i = bars - 1; i >= 0; i--) {
+            // bar i counted back from the close, the newest bar being the last of its day
+            final long day = newestDay - i / BARS_PER_DAY;
+            final int minute = BARS_PER_DAY - i % BARS_PER_DAY;
+            final long time = day * TickSeries.SECONDS_PER_DAY + OPEN_SECOND_OF_DAY + minute * 60L;
+            final double open = close;
+            close = Math.max(1, open + random.nextGaussian() * 0.05);
+            builder.add(time, open, Math.max(open, close) + 0.01, Math.min(open, close) - 0.01, close,
+                    1000 + random.nextInt(100000));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the series as an AlphaVantage TIME_SERIES_INTRADAY JSON response
+     */
+    static String json(final TickSeries series) {
+        final StringBuilder json = new StringBuilder(series.size() * 160);
+        json.append("{\n    \"Meta Data\": {\n        \"2. Symbol\": \"MSFT\",\n        \"4. Interval\": \"1min\"\n    },\n");
+        json.append("    \"Time Series (1min)\": {\n");
+        for (int i = series.size() - 1; i >= 0; i--) {
+            json.append("        \"").append(timestamp(series.getTime(i))).append("\": {\n")
+                    .append(String.format(Locale.US, "            \"1. open\": \"%.4f\",\n", series.getOpen(i)))
+                    .append(String.format(Locale.US, "            \"2. high\": \"%.4f\",\n", series.getHigh(i)))
+                    .append(String.format(Locale.US, "            \"3. low\": \"%.4f\",\n", series.getLow(i)))
+                    .append(String.format(Locale.US, "            \"4. close\": \"%.4f\",\n", series.getClose(i)))
+                    .append("            \"5. volume\": \"").append(series.getVolume(i)).append("\"\n")
+                    .append(i > 0 ? "        },\n" : "        }\n");
+        }
+        return json.append("    }\n}\n").toString();
+    }
+
+    /**
+     * @return the series as alphavantage4j's data points, newest first like the library returned them
+     */
+    static List<StockData> stockData(final TickSeries series) {
+        final List<StockData> stockData = new ArrayList<>(series.size());
+        for (int i = series.size() - 1; i >= 0; i--) {
+            stockData.add(new StockData(LocalDateTime.ofEpochSecond(series.getTime(i), 0, ZoneOffset.UTC),
+                    series.getOpen(i), series.getHigh(i), series.getLow(i), series.getClose(i), series.getVolume(i)));
+        }
+        return stockData;
+    }
+
+    /**
+     * @return the timestamps as AlphaVantage writes them, "yyyy-MM-dd HH:mm:ss"
+     */
+    static String[] timestamps(final TickSeries series) {
+        final String[] timestamps = new String[series.size()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = timestamp(series.getTime(i));
+        }
+        return timestamps;
+    }
+
+    private static String timestamp(final long time) {
+        // LocalDateTime leaves out zero seconds, and every bar starts on a whole minute
+        return LocalDateTime.ofEpochSecond(time, 0, ZoneOffset.UTC).toString().replace('T', ' ') + ":00";
+    }
+}
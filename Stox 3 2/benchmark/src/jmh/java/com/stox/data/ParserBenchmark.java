@@ -0,0 +1,70 @@
+package com.stox.data;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.patriques.output.timeseries.data.StockData;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsing an intraday response: the streaming parser, with and without stopping at the bars we
+ * already hold, against materialising the whole document the way alphavantage4j did.
+ */
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Param({"1000", "10000", "50000"})
+    public int bars;
+
+    private String json;
+    private long newest100;
+
+    @Setup
+    public void setUp() {
+        final TickSeries series = Fixtures.series(bars);
+        json = Fixtures.json(series);
+        newest100 = series.getTime(series.size() - 100);
+    }
+
+    @Benchmark
+    public TickSeries streaming() throws IOException {
+        return TimeSeriesParser.parseJson(new StringReader(json), TimeSeriesParser.ALL);
+    }
+
+    @Benchmark
+    public TickSeries streamingNewest100() throws IOException {
+        return TimeSeriesParser.parseJson(new StringReader(json), newest100);
+    }
+
+    @Benchmark
+    public TickSeries documentTree() {
+        final JsonObject root = new JsonParser().parse(json).getAsJsonObject();
+        final JsonObject timeSeries = root.getAsJsonObject("Time Series (1min)");
+        final List<StockData> stockData = new ArrayList<>(timeSeries.size());
+        for (final Map.Entry<String, JsonElement> entry : timeSeries.entrySet()) {
+            final JsonObject bar = entry.getValue().getAsJsonObject();
+            stockData.add(new StockData(LocalDateTime.parse(entry.getKey(), FORMATTER),
+                    bar.get("1. open").getAsDouble(),
+                    bar.get("2. high").getAsDouble(),
+                    bar.get("3. low").getAsDouble(),
+                    bar.get("4. close").getAsDouble(),
+                    bar.get("5. volume").getAsLong()));
+        }
+        return TickSeries.fromStockData(stockData);
+    }
+}
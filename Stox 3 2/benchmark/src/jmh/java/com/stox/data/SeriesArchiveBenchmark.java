@@ -0,0 +1,58 @@
+package com.stox.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writing and reading an archive of two months of one minute bars, about what a symbol's export holds.
+ */
+@State(Scope.Benchmark)
+public class SeriesArchiveBenchmark {
+
+    private static final int BARS = 390 * 42;
+
+    private TickSeries series;
+    private ByteBuffer archive;
+
+    @Setup
+    public void setUp() throws IOException {
+        series = Fixtures.series(BARS);
+        archive = ByteBuffer.wrap(write().toByteArray());
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream write() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SeriesArchive.Writer writer = new SeriesArchive.Writer(bytes)) {
+            writer.beginSeries("AMZN", Timeframe.ONE_MIN);
+            writer.addBars(series);
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+        final int[] count = new int[1];
+        SeriesArchive.read(archive.duplicate(), new SeriesSink() {
+            @Override
+            public void beginSeries(final String stockSymbol, final Timeframe interval) {
+            }
+
+            @Override
+            public void addBars(final TickSeries bars) {
+                count[0] += bars.size();
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,55 @@
+package com.stox.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.patriques.output.timeseries.data.StockData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Putting newest-first bars in ascending order: the comparator sort populateChart used to run on
+ * every draw, against building a TickSeries, which only reverses its columns.
+ */
+@State(Scope.Benchmark)
+public class SeriesBuildBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int bars;
+
+    private List<StockData> stockData;
+    private TickSeries descending;
+
+    @Setup
+    public void setUp() {
+        final TickSeries series = Fixtures.series(bars);
+        stockData = Fixtures.stockData(series);
+        descending = series;
+    }
+
+    @Benchmark
+    public List<StockData> comparatorSort() {
+        final List<StockData> sorted = new ArrayList<>(stockData);
+        Collections.sort(sorted, (stockData, t1) -> stockData.getDateTime().compareTo(t1.getDateTime()));
+        return sorted;
+    }
+
+    @Benchmark
+    public TickSeries fromStockData() {
+        return TickSeries.fromStockData(stockData);
+    }
+
+    @Benchmark
+    public TickSeries builderReverse() {
+        final TickSeries.Builder builder = new TickSeries.Builder(bars);
+        for (int i = descending.size() - 1; i >= 0; i--) {
+            builder.add(descending.getTime(i), descending.getOpen(i), descending.getHigh(i),
+                    descending.getLow(i), descending.getClose(i), descending.getVolume(i));
+        }
+        return builder.build();
+    }
+}
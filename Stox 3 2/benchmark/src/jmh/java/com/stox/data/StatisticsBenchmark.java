@@ -0,0 +1,76 @@
+package com.stox.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.patriques.output.timeseries.data.StockData;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Day and week high/low: the full scan populateChart used to run on every draw, against
+ * SeriesStatistics over a whole series and for a single revised bar.
+ */
+@State(Scope.Benchmark)
+public class StatisticsBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int bars;
+
+    private TickSeries series;
+    private List<StockData> stockData;
+    private SeriesStatistics upToDate;
+    private int revision;
+
+    @Setup
+    public void setUp() {
+        series = Fixtures.series(bars);
+        stockData = Fixtures.stockData(series);
+        upToDate = new SeriesStatistics();
+        upToDate.update(series);
+    }
+
+    @Benchmark
+    public float scan() {
+        final LocalDateTime newest = stockData.get(0).getDateTime();
+        final int dayOfYear = newest.getDayOfYear();
+        // populateChart went back from now, which for the fixtures would leave the week empty
+        final LocalDateTime weekAgo = newest.minusDays(7);
+        float dayLow = Float.MAX_VALUE;
+        float dayHigh = 0.0f;
+        float weekLow = Float.MAX_VALUE;
+        float weekHigh = 0.0f;
+        for (final StockData bar : stockData) {
+            final float close = (float) bar.getClose();
+            if (bar.getDateTime().compareTo(weekAgo) >= 0) {
+                weekLow = Math.min(weekLow, close);
+                weekHigh = Math.max(weekHigh, close);
+            }
+            if (bar.getDateTime().getDayOfYear() == dayOfYear) {
+                dayLow = Math.min(dayLow, close);
+                dayHigh = Math.max(dayHigh, close);
+            }
+        }
+        return dayLow + dayHigh + weekLow + weekHigh;
+    }
+
+    @Benchmark
+    public double wholeSeries() {
+        final SeriesStatistics statistics = new SeriesStatistics();
+        statistics.update(series);
+        return statistics.getDay().getMin() + statistics.getWeek().getMax();
+    }
+
+    /**
+     * A live update that revises the newest bar.
+     */
+    @Benchmark
+    public double reviseNewestBar() {
+        final int last = series.size() - 1;
+        upToDate.update(series.getTime(last), series.getClose(last) + (revision++ & 1), series.getVolume(last));
+        return upToDate.getDay().getMin() + upToDate.getWeek().getMax();
+    }
+}
@@ -0,0 +1,60 @@
+package com.stox.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Type-ahead searches in an index the size of AlphaVantage's listings, one per keystroke.
+ */
+@State(Scope.Benchmark)
+public class TickerIndexBenchmark {
+
+    private static final int LISTINGS = 12000;
+
+    private TickerIndex index;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        final TickerIndex.Builder builder = new TickerIndex.Builder();
+        for (int i = 0; i < LISTINGS; i++) {
+            final StringBuilder symbol = new StringBuilder();
+            for (int length = 1 + random.nextInt(4); length >= 0; length--) {
+                symbol.append((char) ('A' + random.nextInt(26)));
+            }
+            builder.add(symbol.toString(), "Company " + symbol + " Holdings Inc");
+        }
+        final File file = new File(Files.createTempDirectory("tickers").toFile(), "tickers.idx");
+        builder.writeTo(file);
+        index = TickerIndex.open(file);
+    }
+
+    @Benchmark
+    public List<TickerIndex.Listing> symbolPrefix() {
+        return index.search("AM", 8);
+    }
+
+    @Benchmark
+    public List<TickerIndex.Listing> nameWord() {
+        return index.search("holdi", 8);
+    }
+
+    @Benchmark
+    public List<TickerIndex.Listing> typo() {
+        // nothing starts with a digit, so this falls through to the one edit scan over every symbol
+        return index.search("1BCD", 8);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return index.contains("MSFT");
+    }
+}
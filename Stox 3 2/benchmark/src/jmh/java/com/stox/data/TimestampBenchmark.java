@@ -0,0 +1,76 @@
+package com.stox.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Turning AlphaVantage's timestamps into chart x values, per series.
+ */
+@State(Scope.Benchmark)
+public class TimestampBenchmark {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Param({"1000", "10000", "50000"})
+    public int bars;
+
+    private String[] timestamps;
+    private LocalDateTime[] dateTimes;
+
+    @Setup
+    public void setUp() {
+        timestamps = Fixtures.timestamps(Fixtures.series(bars));
+        dateTimes = new LocalDateTime[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            dateTimes[i] = LocalDateTime.parse(timestamps[i], FORMATTER);
+        }
+    }
+
+    /**
+     * What populateChart used to do for every bar it drew.
+     */
+    @Benchmark
+    public long systemZone() {
+        long sum = 0;
+        for (final LocalDateTime dateTime : dateTimes) {
+            sum += dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long utcOffset() {
+        long sum = 0;
+        for (final LocalDateTime dateTime : dateTimes) {
+            sum += dateTime.toEpochSecond(ZoneOffset.UTC);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long formatterParse() {
+        long sum = 0;
+        for (final String timestamp : timestamps) {
+            sum += LocalDateTime.parse(timestamp, FORMATTER).toEpochSecond(ZoneOffset.UTC);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long digitParse() throws IOException {
+        long sum = 0;
+        for (final String timestamp : timestamps) {
+            sum += TimeSeriesParser.parseTimestamp(timestamp, 0, timestamp.length());
+        }
+        return sum;
+    }
+}